@@ -39,8 +39,11 @@ import de.dks.utils.options.OptionsCont;
 import de.dks.utils.options.OptionsIO;
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.NearestEdgeFinder;
+import de.dlr.ivf.urmo.router.algorithms.overlay.CellOverlay;
 import de.dlr.ivf.urmo.router.algorithms.routing.AbstractRouteWeightFunction;
+import de.dlr.ivf.urmo.router.algorithms.routing.BoundBackwardDijkstra;
 import de.dlr.ivf.urmo.router.algorithms.routing.BoundDijkstra;
+import de.dlr.ivf.urmo.router.algorithms.routing.BoundSingleModeDijkstra;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.algorithms.routing.RouteWeightFunction_ExpInterchange_TT;
 import de.dlr.ivf.urmo.router.algorithms.routing.RouteWeightFunction_MaxInterchange_TT;
@@ -49,8 +52,10 @@ import de.dlr.ivf.urmo.router.algorithms.routing.RouteWeightFunction_TT_Modes;
 import de.dlr.ivf.urmo.router.gtfs.GTFSData;
 import de.dlr.ivf.urmo.router.io.GTFSReader;
 import de.dlr.ivf.urmo.router.io.InputReader;
+import de.dlr.ivf.urmo.router.io.NetCache;
 import de.dlr.ivf.urmo.router.io.NetLoader;
 import de.dlr.ivf.urmo.router.io.OutputBuilder;
+import de.dlr.ivf.urmo.router.io.Utils;
 import de.dlr.ivf.urmo.router.modes.EntrainmentMap;
 import de.dlr.ivf.urmo.router.modes.Mode;
 import de.dlr.ivf.urmo.router.modes.Modes;
@@ -111,6 +116,12 @@ public class UrMoAccessibilityComputer implements IDGiver {
 	long seenODs = 0;
 	/// @brief Whether an error occurred
 	boolean hadError = false;
+	/// @brief Whether the routes are computed backwards, starting at the destinations
+	boolean backward = false;
+	/// @brief The optional customized overlay used for routing
+	CellOverlay overlay = null;
+	/// @brief The mode to use if routing with a single mode only and without public transport, null otherwise
+	Mode singleMode = null;
 
 	
 	
@@ -194,7 +205,24 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		 */
 		public void run() {
 			try {
-				if(parent.connections==null) {
+				if(parent.connections==null&&parent.backward) {
+					HashSet<DBEdge> starts = new HashSet<>(parent.nearestFromEdges.keySet());
+					DBEdge e = null;
+					do {
+						e = parent.getNextStartingEdge();
+						if(e==null) {
+							continue;
+						}
+						DijkstraResult ret = BoundBackwardDijkstra.run(measure, time, e, initMode, modes, starts, boundTT, boundDist);
+						for(DBEdge fromEdge : ret.edgeMap.keySet()) {
+							DijkstraResult fret = BoundBackwardDijkstra.buildForwardResult(measure, ret, fromEdge);
+							Vector<MapResult> fromObjects = parent.nearestFromEdges.get(fromEdge);
+							for(MapResult mr : fromObjects) {
+								resultsProcessor.process(mr, fret, needsPT, -1);
+							}
+						}
+					} while(e!=null&&!parent.hadError);
+				} else if(parent.connections==null) {
 					DBEdge e = null;
 					do {
 						e = parent.getNextStartingEdge();
@@ -202,7 +230,7 @@ public class UrMoAccessibilityComputer implements IDGiver {
 							continue;
 						}
 						/// TODO: recheck whether routing is needed per source
-						DijkstraResult ret = BoundDijkstra.run(measure, time, e, initMode, modes, parent.nearestToEdges.keySet(), boundNumber, boundTT, boundDist, boundVar, shortestOnly);
+						DijkstraResult ret = route(e, parent.nearestToEdges.keySet());
 						Vector<MapResult> fromObjects = parent.nearestFromEdges.get(e);
 						for(MapResult mr : fromObjects) {
 							resultsProcessor.process(mr, ret, needsPT, -1);
@@ -218,7 +246,7 @@ public class UrMoAccessibilityComputer implements IDGiver {
 						/// TODO: recheck whether routing is needed per source
 						Set<DBEdge> destinations = new HashSet<>();
 						destinations.add(od.toEdge);
-						DijkstraResult ret = BoundDijkstra.run(measure, time, od.fromEdge, initMode, modes, destinations, boundNumber, boundTT, boundDist, boundVar, shortestOnly);
+						DijkstraResult ret = route(od.fromEdge, destinations);
 						resultsProcessor.process(od.fromMR, ret, needsPT, od.destination);
 					} while(od!=null&&!parent.hadError);
 				}
@@ -226,6 +254,22 @@ public class UrMoAccessibilityComputer implements IDGiver {
 				e.printStackTrace();
 			}
 		}
+		
+		
+		/**
+		 * @brief Computes the paths from the given edge
+		 * 
+		 * Uses the single mode router if only one mode and no public transport are used.
+		 * @param startEdge The edge to start routing at
+		 * @param ends The destination edges
+		 * @return The computed paths
+		 */
+		private DijkstraResult route(DBEdge startEdge, Set<DBEdge> ends) {
+			if(parent.singleMode!=null) {
+				return BoundSingleModeDijkstra.run(measure, time, startEdge, parent.singleMode, ends, boundNumber, boundTT, boundDist, boundVar, shortestOnly, parent.overlay);
+			}
+			return BoundDijkstra.run(measure, time, startEdge, initMode, modes, ends, boundNumber, boundTT, boundDist, boundVar, shortestOnly, parent.overlay);
+		}
 	}
 	
 
@@ -300,10 +344,22 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		options.setDescription("to-agg.id", "Defines the column name of the destination aggregation areas' ids.");
 		options.add("to-agg.geom", new Option_String("the_geom"));
 		options.setDescription("to-agg.geom", "Defines the column name of the destination aggregation areas' geometries.");
+		options.add("from-agg.cache", new Option_String());
+		options.setDescription("from-agg.cache", "Defines a binary file to store the assignment of origins to aggregation areas in and to read it from in later runs.");
+		options.add("to-agg.cache", new Option_String());
+		options.setDescription("to-agg.cache", "Defines a binary file to store the assignment of destinations to aggregation areas in and to read it from in later runs.");
 		options.add("net.vmax", new Option_String("vmax"));
 		options.setDescription("net.vmax", "Defines the column name of networks's vmax attribute.");
 		options.add("subnets", new Option_Bool());
 		options.setDescription("subnets", "When set, unconnected network parts are not removed.");
+		options.add("net-cache", new Option_String());
+		options.setDescription("net-cache", "Defines a binary file to store the prepared network in and to read it from in later runs.");
+		options.add("db-fetch-size", new Option_Integer(10000));
+		options.setDescription("db-fetch-size", "Defines the number of rows fetched at once when reading from a database.");
+		options.add("db-copy", new Option_Bool());
+		options.setDescription("db-copy", "When set, PostgreSQL inputs are read using binary COPY.");
+		options.add("db-partitions", new Option_Integer(1));
+		options.setDescription("db-partitions", "Defines the number of connections used in parallel for reading PostgreSQL layers.");
 		
 		options.beginSection("Weighting Options");
 		options.add("weight", 'W', new Option_String(""));
@@ -322,6 +378,8 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		options.setDescription("max-variable-sum", "The maximum sum of variable's values to collect.");
 		options.add("shortest", new Option_Bool());
 		options.setDescription("shortest", "Searches only one destination per origin.");
+		options.add("backward", new Option_Bool());
+		options.setDescription("backward", "When set, routes are computed backwards from the destinations; the time is the arrival time.");
 		options.add("requirespt", new Option_Bool());
 		options.setDescription("requirespt", "When set, only information that contains a PT part are stored.");
 		options.add("clip-to-net", new Option_Bool());
@@ -332,6 +390,8 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		options.setDescription("measure-param1", "First parameter of the chosen weight function.");
 		options.add("measure-param2", new Option_Double());
 		options.setDescription("measure-param2", "Second parameter of the chosen weight function.");
+		options.add("overlay", new Option_Double());
+		options.setDescription("overlay", "When set, a customized overlay with cells of the given size (in m) is used for single-mode routing.");
 		
 		options.beginSection("Public Transport Options");
 		options.add("pt-boundary", new Option_String());
@@ -342,6 +402,8 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		options.setDescription("entrainment", "Data source for entrainment description.");
 		options.add("pt-restriction", new Option_String());
 		options.setDescription("pt-restriction", "Restrictions to usable GTFS carriers.");
+		options.add("pt-cache", new Option_String());
+		options.setDescription("pt-cache", "Defines a binary file to store the prepared public transport layer in and to read it from in later runs.");
 		
 		options.beginSection("Custom Mode Options");
 		options.add("custom.vmax", new Option_Double());
@@ -362,6 +424,8 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		options.setDescription("ext-nm-output", "Defines the extended n:m output.");
 		options.add("stat-nm-output", new Option_String());
 		options.setDescription("stat-nm-output", "Defines the n:m statistics output.");
+		options.add("stat-percentiles", new Option_String("15,85"));
+		options.setDescription("stat-percentiles", "Defines the percentiles (comma separated, 0-100) written into the n:m statistics output.");
 		options.add("interchanges-output", 'i', new Option_String());
 		options.setDescription("interchanges-output", "Defines the interchanges output.");
 		options.add("edges-output", 'e', new Option_String());
@@ -370,14 +434,28 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		options.setDescription("pt-output", "Defines the public transport output.");
 		options.add("direct-output", 'd', new Option_String());
 		options.setDescription("direct-output", "Defines the direct output.");
+		options.add("direct-tree-output", new Option_String());
+		options.setDescription("direct-tree-output", "Defines the direct output written as shortest path trees.");
+		options.add("direct-edge-geometries", new Option_Bool());
+		options.setDescription("direct-edge-geometries", "When set, the direct output references edges by id; their geometries are written once into an own output.");
 		options.add("origins-to-road-output", new Option_String());
 		options.setDescription("origins-to-road-output", "Defines output of the mapping between sources and the network.");
 		options.add("destinations-to-road-output", new Option_String());
 		options.setDescription("destinations-to-road-output", "Defines output of the mapping between destinations and the network.");
 		options.add("dropprevious", new Option_Bool());
 		options.setDescription("dropprevious", "When set, previous output with the same name is replaced.");
+		options.add("db-copy-output", new Option_Bool());
+		options.setDescription("db-copy-output", "When set, results are written into PostgreSQL using COPY.");
+		options.add("db-unlogged", new Option_Bool());
+		options.setDescription("db-unlogged", "When set, PostgreSQL output tables are created unlogged.");
+		options.add("db-index", new Option_Bool());
+		options.setDescription("db-index", "When set, an index on the ids is built after writing database outputs.");
+		options.add("sqlite-bulk", new Option_Bool());
+		options.setDescription("sqlite-bulk", "When set, SQLite outputs are written unsynchronised using multi-row inserts.");
 		options.add("precision", new Option_Integer(2));
 		options.setDescription("precision", "Defines the number of positions after the decimal point.");
+		options.add("compression-threads", new Option_Integer(1));
+		options.setDescription("compression-threads", "Defines the number of threads used to compress outputs ending with '.gz'.");
 		
 		options.beginSection("Process Options");
 		options.add("threads", new Option_Integer(1));
@@ -479,6 +557,36 @@ public class UrMoAccessibilityComputer implements IDGiver {
 				check = false;
 			}
 		}
+		//
+		if(options.isSet("direct-output")&&options.isSet("direct-tree-output")) {
+			System.err.println("Error: The options 'direct-output' and 'direct-tree-output' can not be used together.");
+			check = false;
+		}
+		if(options.getBool("backward")) {
+			if(options.isSet("max-number")||options.isSet("max-variable-sum")||options.getBool("shortest")) {
+				System.err.println("Error: The backward routing can not be used with 'max-number', 'max-variable-sum', or 'shortest'.");
+				check = false;
+			}
+			if(options.isSet("od-connections")) {
+				System.err.println("Error: The backward routing can not be used with 'od-connections'.");
+				check = false;
+			}
+			if(options.isSet("direct-tree-output")) {
+				System.err.println("Error: The backward routing can not be used with 'direct-tree-output'.");
+				check = false;
+			}
+		}
+		if(options.isSet("overlay")) {
+			if(options.getBool("backward") || options.isSet("pt") || (options.isSet("mode")&&options.getString("mode").contains(";"))
+					|| (options.isSet("measure")&&!"tt_mode".equals(options.getString("measure")))) {
+				System.err.println("Error: The overlay can only be used for forward routing with a single mode by travel time ('tt_mode') without public transport.");
+				check = false;
+			}
+			if(options.getDouble("overlay")<=0) {
+				System.err.println("Error: The cell size of the overlay must be positive.");
+				check = false;
+			}
+		}
 		if (!check) {
 			return null;
 		}
@@ -563,6 +671,9 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		}
 		modes = Modes.getCombinedModeIDs(modesV);
 		initMode = modesV.get(0).id;
+		if(Long.bitCount(modes)==1 && !options.isSet("pt")) {
+			singleMode = modesV.get(0);
+		}
 		// ------ reset custom mode if used
 		if((modes&Modes.getMode("custom").id)!=0) { // 
 			double custom_vmax = options.isSet("custom.vmax") ? options.getDouble("custom.vmax") : -1;
@@ -606,6 +717,9 @@ public class UrMoAccessibilityComputer implements IDGiver {
 			}
 		}
 		// -------- loading
+		Utils.setDBReadOptions(options.getInteger("db-fetch-size"), options.getBool("db-copy"), options.getInteger("db-partitions"));
+		Utils.setDBWriteOptions(options.getBool("db-copy-output"), options.getBool("db-unlogged"), options.getBool("db-index"), options.getBool("sqlite-bulk"));
+		Utils.setCompressionThreads(options.getInteger("compression-threads"));
 		boolean dismissWeight = !options.isSet("from-agg");
 		if(dismissWeight && !options.isDefault("weight")) {
 			System.out.println("Warning: the weight option is not used as no aggregation takes place.");
@@ -615,14 +729,27 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		if (!options.isSet("net")) {
 			throw new IOException("A network must be given.");
 		}
-		if (verbose) System.out.println("Reading the road network");
-		DBNet net = NetLoader.loadNet(this, options.getString("net"), options.getString("net.vmax"), epsg, modes);
-		if (verbose) System.out.println(" " + net.getNumEdges() + " edges loaded (" + net.getNodes().size() + " nodes)");
-		net.pruneForModes(modes); // TODO (implement, add message)
-		if(!options.getBool("subnets")) {
-			if (verbose) System.out.println("Checking for connectivity...");
-			net.dismissUnconnectedEdges(false);
-			if (verbose) System.out.println(" " + net.getNumEdges() + " remaining after removing unconnected ones.");
+		DBNet net = null;
+		String netCacheKey = null;
+		if (options.isSet("net-cache")) {
+			netCacheKey = NetCache.buildKey(options.getString("net"), options.getString("net.vmax"), epsg, modes, options.getBool("subnets"));
+			net = NetCache.read(this, options.getString("net-cache"), netCacheKey);
+			if (verbose && net!=null) System.out.println("Read the road network from '" + options.getString("net-cache") + "'; " + net.getNumEdges() + " edges (" + net.getNodes().size() + " nodes)");
+		}
+		if (net==null) {
+			if (verbose) System.out.println("Reading the road network");
+			net = NetLoader.loadNet(this, options.getString("net"), options.getString("net.vmax"), epsg, modes);
+			if (verbose) System.out.println(" " + net.getNumEdges() + " edges loaded (" + net.getNodes().size() + " nodes)");
+			net.pruneForModes(modes); // TODO (implement, add message)
+			if(!options.getBool("subnets")) {
+				if (verbose) System.out.println("Checking for connectivity...");
+				net.dismissUnconnectedEdges(false);
+				if (verbose) System.out.println(" " + net.getNumEdges() + " remaining after removing unconnected ones.");
+			}
+			if (netCacheKey!=null) {
+				if (verbose) System.out.println("Writing the road network to '" + options.getString("net-cache") + "'");
+				NetCache.write(net, options.getString("net-cache"), netCacheKey);
+			}
 		}
 		Geometry bounds = null;
 		if(options.getBool("clip-to-net")) {
@@ -665,7 +792,7 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		// travel times
 		if (options.isSet("traveltimes")) {
 			if (verbose) System.out.println("Reading the roads' travel times");
-			NetLoader.loadTravelTimes(net, options.getString("traveltimes"), verbose);
+			loadTravelTimes(net, options.getString("traveltimes"));
 		}
 		
 		// entrainment
@@ -682,6 +809,9 @@ public class UrMoAccessibilityComputer implements IDGiver {
 			gtfs = GTFSReader.load(options, bounds, net, entrainmentMap, epsg, verbose);
 			if (verbose) System.out.println(" loaded");
 		}
+		
+		// static travel times
+		net.precomputeTravelTimes(modes);
 
 		// explicit O/D-connections
 		if (options.isSet("od-connections")) {
@@ -710,7 +840,8 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		Vector<Aggregator> aggregators = OutputBuilder.buildOutputs(options, fromLayer, fromAggLayer, toLayer, toAggLayer, epsg);
 		DirectWriter dw = OutputBuilder.buildDirectOutput(options, epsg, nearestToEdges);
 		time = options.getInteger("time");
-		resultsProcessor = new DijkstraResultsProcessor(time, dw, aggregators, nearestFromEdges, nearestToEdges); 
+		backward = options.getBool("backward");
+		resultsProcessor = new DijkstraResultsProcessor(time, dw, aggregators, nearestFromEdges, nearestToEdges, connections==null&&!backward); 
 
 		// -------- measure
 		measure = new RouteWeightFunction_TT_Modes();
@@ -735,11 +866,44 @@ public class UrMoAccessibilityComputer implements IDGiver {
 				hadError = true;
 			}
 		}
+		
+		// -------- overlay
+		if(options.isSet("overlay")) {
+			if (verbose) System.out.println("Building the overlay");
+			overlay = new CellOverlay(net, options.getDouble("overlay"));
+			customizeOverlay();
+		}
 		// done everything
 		return !hadError;
 	}
 	
 	
+	/**
+	 * @brief Loads the roads' travel times
+	 * 
+	 * If an overlay is used, it is customized for the new travel times.
+	 * @param net The road network
+	 * @param def The definition of the travel times source
+	 * @throws IOException When accessing the source failed
+	 */
+	protected void loadTravelTimes(DBNet net, String def) throws IOException {
+		NetLoader.loadTravelTimes(net, def, verbose);
+		if(overlay!=null) {
+			customizeOverlay();
+		}
+	}
+	
+	
+	/**
+	 * @brief Customizes the overlay for the current travel times and destinations
+	 */
+	private void customizeOverlay() {
+		if (verbose) System.out.println("Customizing the overlay");
+		overlay.customize(Modes.getMode(initMode));
+		if (verbose) System.out.println(" " + overlay.getNumPassableCells() + " of " + overlay.getNumCells() + " cells are passable, " + overlay.getNumSlots() + " time slots");
+	}
+	
+	
 	
 	/**
 	 * @brief Performs the computation
@@ -770,7 +934,7 @@ public class UrMoAccessibilityComputer implements IDGiver {
 		
 		// initialise threads
 		int numThreads = options.getInteger("threads");
-		nextEdgePointer = nearestFromEdges.keySet().iterator();
+		nextEdgePointer = backward ? nearestToEdges.keySet().iterator() : nearestFromEdges.keySet().iterator();
 		seenEdges = 0;
 		Vector<Thread> threads = new Vector<>();
 		for (int i=0; i<numThreads; ++i) {
@@ -787,7 +951,7 @@ public class UrMoAccessibilityComputer implements IDGiver {
 			}
 		}
 		System.out.println(""); // progress ends
-		resultsProcessor.finish();
+		resultsProcessor.finish(numThreads);
 		return true;
 	}
 	
@@ -795,6 +959,8 @@ public class UrMoAccessibilityComputer implements IDGiver {
 	
 	/**
 	 * @brief Returns the next starting edge to process
+	 * 
+	 * When routing backwards, the destination edges are returned.
 	 * @return The next edge to start routing from
 	 */
 	public synchronized DBEdge getNextStartingEdge() {
@@ -806,7 +972,7 @@ public class UrMoAccessibilityComputer implements IDGiver {
 			nextEdge = nextEdgePointer.next();
 		}
 		++seenEdges;
-		if (verbose) System.out.print("\r " + seenEdges + " of " + nearestFromEdges.size() + " edges");
+		if (verbose) System.out.print("\r " + seenEdges + " of " + (backward ? nearestToEdges.size() : nearestFromEdges.size()) + " edges");
 		return nextEdge;
 	}
 
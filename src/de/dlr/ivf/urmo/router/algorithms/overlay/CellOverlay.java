@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.algorithms.overlay;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+import de.dlr.ivf.urmo.router.modes.Mode;
+import de.dlr.ivf.urmo.router.shapes.DBNet;
+import de.dlr.ivf.urmo.router.shapes.DBNode;
+
+/**
+ * @class CellOverlay
+ * @brief A customizable overlay over a partition of the road network
+ *
+ * The network's nodes are partitioned into square cells of a given size. The
+ * partition does not depend on the travel times. Customizing the overlay
+ * computes the fastest paths between the boundary nodes of each cell for the
+ * currently loaded travel times. When new travel times are loaded, only
+ * the customization has to be redone.
+ *
+ * The router uses the customized paths to pass cells without destinations
+ * instead of visiting all of their inner nodes. Time-dependent speeds (see
+ * NetLoader.loadTravelTimes) are regarded by customizing each cell per time
+ * slot; a customized path is only used if the cell is left within the slot
+ * it was entered in, otherwise the cell is explored as usual.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class CellOverlay {
+	/// @brief The cells of the partition
+	private Vector<OverlayCell> cells = new Vector<>();
+	/// @brief A map from nodes to the cells they are located in
+	private HashMap<DBNode, OverlayCell> node2cell = new HashMap<>();
+
+
+	/**
+	 * @brief Constructor, partitions the network
+	 * @param net The network to partition
+	 * @param cellSize The size of the cells in m
+	 */
+	public CellOverlay(DBNet net, double cellSize) {
+		HashMap<Long, OverlayCell> key2cell = new HashMap<>();
+		for(DBNode n : net.getNodes().values()) {
+			long x = (long) Math.floor(n.pos.x / cellSize);
+			long y = (long) Math.floor(n.pos.y / cellSize);
+			long key = (x << 32) ^ (y & 0xffffffffL);
+			OverlayCell cell = key2cell.get(key);
+			if(cell==null) {
+				cell = new OverlayCell();
+				key2cell.put(key, cell);
+				cells.add(cell);
+			}
+			cell.addNode(n);
+			node2cell.put(n, cell);
+		}
+		for(OverlayCell cell : cells) {
+			cell.buildBoundary();
+		}
+	}
+
+
+	/**
+	 * @brief Computes the paths through the cells for the current travel times
+	 *
+	 * Has to be called again when the travel times or the destinations change.
+	 * @param mode The mode of transport to customize the overlay for
+	 */
+	public void customize(Mode mode) {
+		for(OverlayCell cell : cells) {
+			cell.customize(mode);
+		}
+	}
+
+
+	/**
+	 * @brief Returns the passable cell the given node is an entry of
+	 * @param n The node to get the cell for
+	 * @return The cell the node is an entry node of, null if the node is no entry or the cell is not passable
+	 */
+	public OverlayCell getEntryCell(DBNode n) {
+		OverlayCell cell = node2cell.get(n);
+		if(cell==null || !cell.isPassable() || cell.getEntryIndex(n)<0) {
+			return null;
+		}
+		return cell;
+	}
+
+
+	/**
+	 * @brief Returns the number of cells
+	 * @return The number of cells
+	 */
+	public int getNumCells() {
+		return cells.size();
+	}
+
+
+	/**
+	 * @brief Returns the number of time slots of all cells
+	 * @return The summed number of time slots the cells were customized for
+	 */
+	public int getNumSlots() {
+		int ret = 0;
+		for(OverlayCell cell : cells) {
+			ret += cell.getNumSlots();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @brief Returns the number of cells that may be passed using the customized paths
+	 * @return The number of passable cells
+	 */
+	public int getNumPassableCells() {
+		int ret = 0;
+		for(OverlayCell cell : cells) {
+			if(cell.isPassable()) {
+				++ret;
+			}
+		}
+		return ret;
+	}
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.algorithms.overlay;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import de.dlr.ivf.urmo.router.modes.Mode;
+import de.dlr.ivf.urmo.router.shapes.DBEdge;
+import de.dlr.ivf.urmo.router.shapes.DBNode;
+
+/**
+ * @class OverlayCell
+ * @brief A cell of the network partition used by the CellOverlay
+ *
+ * The cell knows its nodes and the nodes at its boundary (entries and exits).
+ * After being customized, it stores the fastest paths through the cell's
+ * inner edges from each entry node as a predecessor tree, together with the
+ * travel times and distances to the exits.
+ *
+ * The day is split into time slots at the times the speed of an inner edge
+ * changes (see DBEdge.addSpeedReduction); a cell without time-dependent
+ * speeds has a single slot. The paths are computed per slot. A path is
+ * exact for a departure within the slot if the exit is reached before the
+ * slot ends, as all inner edges keep their speeds until then.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class OverlayCell {
+	/// @brief The nodes within this cell
+	private Vector<DBNode> nodes = new Vector<>();
+	/// @brief A map from nodes to their index within this cell
+	private HashMap<DBNode, Integer> node2index = new HashMap<>();
+	/// @brief A map from entry nodes to their index within the entries list
+	private HashMap<DBNode, Integer> entry2index = new HashMap<>();
+	/// @brief A map from exit nodes to their index within the exits list
+	private HashMap<DBNode, Integer> exit2index = new HashMap<>();
+	/// @brief The nodes with edges leaving the cell
+	private Vector<DBNode> exits = new Vector<>();
+	/// @brief Whether the cell may be passed using the customized paths
+	private boolean passable = false;
+	/// @brief The begins of the time slots (the first one begins at -Double.MAX_VALUE)
+	private double[] slotBegins = null;
+	/// @brief The incoming (inner) edge of each node per slot and entry (the customized predecessor trees)
+	private DBEdge[][][] pred = null;
+	/// @brief The travel time from each entry to each exit per slot along the customized paths
+	private double[][][] tts = null;
+	/// @brief The distance from each entry to each exit per slot along the customized paths
+	private double[][][] dists = null;
+
+
+	/**
+	 * @brief Adds a node to this cell
+	 * @param n The node to add
+	 */
+	void addNode(DBNode n) {
+		node2index.put(n, nodes.size());
+		nodes.add(n);
+	}
+
+
+	/**
+	 * @brief Determines the entry and exit nodes of this cell
+	 *
+	 * Has to be called after all nodes were added.
+	 */
+	void buildBoundary() {
+		for(DBNode n : nodes) {
+			for(DBEdge e : n.getIncoming()) {
+				if(!contains(e.getFromNode())) {
+					entry2index.put(n, entry2index.size());
+					break;
+				}
+			}
+			for(DBEdge e : n.getOutgoing()) {
+				if(!contains(e.getToNode())) {
+					exit2index.put(n, exits.size());
+					exits.add(n);
+					break;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @brief Returns whether the given node is a part of this cell
+	 * @param n The node to check
+	 * @return Whether the node is located within this cell
+	 */
+	public boolean contains(DBNode n) {
+		return node2index.containsKey(n);
+	}
+
+
+	/**
+	 * @brief Returns whether the given edge is an inner edge of this cell
+	 * @param e The edge to check
+	 * @return Whether both nodes of the edge are located within this cell
+	 */
+	public boolean isInner(DBEdge e) {
+		return contains(e.getFromNode()) && contains(e.getToNode());
+	}
+
+
+	/**
+	 * @brief Returns whether the cell can be passed using the customized paths
+	 * @return Whether the cell was customized and contains no destinations
+	 */
+	public boolean isPassable() {
+		return passable;
+	}
+
+
+	/**
+	 * @brief Returns the index of the given entry node
+	 * @param n The node to get the entry index of
+	 * @return The entry index of the node, -1 if the node is no entry node of this cell
+	 */
+	public int getEntryIndex(DBNode n) {
+		Integer index = entry2index.get(n);
+		return index==null ? -1 : index;
+	}
+
+
+	/**
+	 * @brief Returns the nodes with edges leaving the cell
+	 * @return The exit nodes of this cell
+	 */
+	public Vector<DBNode> getExits() {
+		return exits;
+	}
+
+
+	/**
+	 * @brief Returns the number of time slots the cell was customized for
+	 * @return The number of time slots
+	 */
+	public int getNumSlots() {
+		return slotBegins!=null ? slotBegins.length : 0;
+	}
+
+
+	/**
+	 * @brief Computes the fastest paths through the cell from each entry node
+	 *
+	 * Only the cell's inner edges are used. The paths are computed for each
+	 * time slot, evaluating the travel times at the slot's begin. Cells with
+	 * inner edges that have destinations attached are not passable, as the
+	 * destinations must be visited by the router.
+	 * @param mode The mode of transport to customize the cell for
+	 */
+	void customize(Mode mode) {
+		slotBegins = null;
+		pred = null;
+		tts = null;
+		dists = null;
+		passable = false;
+		TreeSet<Float> changes = new TreeSet<>();
+		for(DBNode n : nodes) {
+			for(DBEdge e : n.getOutgoing()) {
+				if(!isInner(e)) {
+					continue;
+				}
+				if(e.getAttachedObjectsNumber()!=0) {
+					return;
+				}
+				e.collectSpeedChanges(changes);
+			}
+		}
+		slotBegins = new double[changes.size()+1];
+		slotBegins[0] = -Double.MAX_VALUE;
+		int slot = 1;
+		for(Float change : changes) {
+			slotBegins[slot++] = change;
+		}
+		pred = new DBEdge[slotBegins.length][entry2index.size()][];
+		tts = new double[slotBegins.length][entry2index.size()][];
+		dists = new double[slotBegins.length][entry2index.size()][];
+		for(slot=0; slot<slotBegins.length; ++slot) {
+			for(DBNode entry : entry2index.keySet()) {
+				customize(mode, slot, entry);
+			}
+		}
+		passable = true;
+	}
+
+
+	/**
+	 * @brief Computes the fastest paths through the cell from the given entry node within the given time slot
+	 * @param mode The mode of transport to customize the cell for
+	 * @param slot The time slot to compute the paths for
+	 * @param entry The entry node to start at
+	 */
+	private void customize(Mode mode, int slot, DBNode entry) {
+		int numNodes = nodes.size();
+		DBEdge[] entryPred = new DBEdge[numNodes];
+		double[] tt = new double[numNodes];
+		double[] dist = new double[numNodes];
+		Arrays.fill(tt, Double.MAX_VALUE);
+		int start = node2index.get(entry);
+		tt[start] = 0;
+		PriorityQueue<double[]> next = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+		next.add(new double[]{0, start});
+		while(!next.isEmpty()) {
+			double[] nns = next.poll();
+			int index = (int) nns[1];
+			if(nns[0]>tt[index]) {
+				continue;
+			}
+			for(DBEdge e : nodes.get(index).getOutgoing()) {
+				if(!e.allows(mode) || e.isGTFSEdge()) {
+					continue;
+				}
+				Integer toIndex = node2index.get(e.getToNode());
+				if(toIndex==null) {
+					continue;
+				}
+				double ntt = tt[index] + e.getTravelTime(mode, slotBegins[slot]);
+				if(ntt<tt[toIndex]) {
+					tt[toIndex] = ntt;
+					dist[toIndex] = dist[index] + e.getLength();
+					entryPred[toIndex] = e;
+					next.add(new double[]{ntt, toIndex});
+				}
+			}
+		}
+		int entryIndex = entry2index.get(entry);
+		pred[slot][entryIndex] = entryPred;
+		double[] exitTT = new double[exits.size()];
+		double[] exitDist = new double[exits.size()];
+		for(int i=0; i<exitTT.length; ++i) {
+			int index = node2index.get(exits.get(i));
+			exitTT[i] = tt[index];
+			exitDist[i] = dist[index];
+		}
+		tts[slot][entryIndex] = exitTT;
+		dists[slot][entryIndex] = exitDist;
+	}
+
+
+	/**
+	 * @brief Returns the time slot the given time is located in
+	 * @param time The time to get the slot for
+	 * @return The index of the time slot
+	 */
+	public int getSlot(double time) {
+		int low = 0;
+		int high = slotBegins.length - 1;
+		while(low<high) {
+			int mid = (low + high + 1) >>> 1;
+			if(slotBegins[mid]<=time) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * @brief Returns whether the customized path to the given exit is valid when entering the cell at the given time
+	 *
+	 * The path is valid if the exit is reached before the time slot ends.
+	 * @param slot The time slot the entry time is located in
+	 * @param entryIndex The index of the entry node
+	 * @param exit The exit node
+	 * @param time The time the cell is entered at
+	 * @return Whether the customized path may be used
+	 */
+	public boolean isValid(int slot, int entryIndex, DBNode exit, double time) {
+		return slot+1>=slotBegins.length || time+getTravelTime(slot, entryIndex, exit)<=slotBegins[slot+1];
+	}
+
+
+	/**
+	 * @brief Returns the last edge of the customized path from the given entry to the given node
+	 * @param slot The time slot
+	 * @param entryIndex The index of the entry node
+	 * @param n The node to reach
+	 * @return The edge the node is reached by, null if the node can not be reached
+	 */
+	public DBEdge getIncoming(int slot, int entryIndex, DBNode n) {
+		return pred[slot][entryIndex][node2index.get(n)];
+	}
+
+
+	/**
+	 * @brief Returns the travel time along the customized path from the given entry to the given exit
+	 * @param slot The time slot
+	 * @param entryIndex The index of the entry node
+	 * @param exit The exit node to reach
+	 * @return The travel time to the exit
+	 */
+	public double getTravelTime(int slot, int entryIndex, DBNode exit) {
+		return tts[slot][entryIndex][exit2index.get(exit)];
+	}
+
+
+	/**
+	 * @brief Returns the distance along the customized path from the given entry to the given exit
+	 * @param slot The time slot
+	 * @param entryIndex The index of the entry node
+	 * @param exit The exit node to reach
+	 * @return The distance to the exit
+	 */
+	public double getDistance(int slot, int entryIndex, DBNode exit) {
+		return dists[slot][entryIndex][exit2index.get(exit)];
+	}
+
+
+	/**
+	 * @brief Returns the customized path from the given entry to the given exit
+	 * @param slot The time slot
+	 * @param entryIndex The index of the entry node
+	 * @param exit The exit node
+	 * @return The edges along the path in driving direction, null if the exit can not be reached
+	 */
+	public Vector<DBEdge> getPath(int slot, int entryIndex, DBNode exit) {
+		DBEdge[] entryPred = pred[slot][entryIndex];
+		DBEdge e = entryPred[node2index.get(exit)];
+		if(e==null) {
+			return null;
+		}
+		Vector<DBEdge> ret = new Vector<>();
+		while(e!=null) {
+			ret.add(e);
+			e = entryPred[node2index.get(e.getFromNode())];
+		}
+		Collections.reverse(ret);
+		return ret;
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ *
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ *
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.algorithms.routing;
+
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Vector;
+
+import de.dlr.ivf.urmo.router.gtfs.GTFSConnection;
+import de.dlr.ivf.urmo.router.gtfs.GTFSEdge;
+import de.dlr.ivf.urmo.router.gtfs.GTFSStop;
+import de.dlr.ivf.urmo.router.gtfs.GTFSTrip;
+import de.dlr.ivf.urmo.router.modes.Mode;
+import de.dlr.ivf.urmo.router.modes.Modes;
+import de.dlr.ivf.urmo.router.shapes.DBEdge;
+import de.dlr.ivf.urmo.router.shapes.DBNode;
+
+/**
+ * @class BoundBackwardDijkstra
+ * @brief A many-to-1 (arrive-by) Dijkstra that may be bound by some values
+ *
+ * The search starts at a destination edge and follows the incoming edges of
+ * the nodes. The travel time stored in an entry is the time needed from
+ * entering the entry's edge until reaching the destination at the given
+ * arrival time. Public transport connections are chosen as the latest ones
+ * that still allow to reach the remaining path in time.
+ *
+ * Entries point to their successor (towards the destination) using "prev".
+ * Use buildForwardResult to obtain a usual (origin-based) result.
+ *
+ * Mode restrictions are applied starting at the destination, mirroring the
+ * forward search.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of
+ *         Transport Research
+ */
+public class BoundBackwardDijkstra {
+	/**
+	 * @brief Computes bound many-to-1 shortest paths arriving at the given time
+	 *
+	 * @param measure The measure computer and comperator to use for routing
+	 * @param time The time the destination shall be reached at
+	 * @param endEdge The destination road
+	 * @param usedModesIDs The last used mode
+	 * @param modes Bitset of usable transport modes
+	 * @param starts A set of all origin edges; it is shared by all searches and not changed
+	 * @param boundTT If >0 then the router will stop after this travel time has been reached
+	 * @param boundDist If >0 then the router will stop after this distance has been reached
+	 * @return A results container, mapping origin edges to the first entries of the paths
+	 * @see DijkstraResult
+	 */
+	public static DijkstraResult run(AbstractRouteWeightFunction measure, int time, DBEdge endEdge, long usedModesIDs, long modes,
+			HashSet<DBEdge> starts, double boundTT, double boundDist) {
+		long availableModes = modes;
+		Mode usedMode = Modes.getMode(usedModesIDs);
+		double tt = getTravelTimeArrivingAt(endEdge, usedMode, time);
+		DijkstraResult ret = new DijkstraResult(starts, -1, boundTT, boundDist, -1, false, time);
+		PriorityQueue<DijkstraEntry> next = new PriorityQueue<DijkstraEntry>(1000, measure);
+		DijkstraEntry nm = new DijkstraEntry(measure, null, endEdge.getFromNode(), endEdge, availableModes, usedMode,
+				endEdge.getLength(), tt, null, tt, 0, false);
+		next.add(nm);
+		ret.addNodeInfo(endEdge.getFromNode(), availableModes, nm);
+		addOriginInfo(ret, measure, endEdge, nm);
+		addOriginInfo(ret, measure, endEdge.opposite, nm);
+
+		// consider arriving using the opposite direction
+		if(endEdge.opposite!=null && endEdge.opposite.allows(usedMode)) {
+			DBEdge e = endEdge.opposite;
+			tt = getTravelTimeArrivingAt(e, usedMode, time);
+			nm = new DijkstraEntry(measure, null, e.getFromNode(), e, availableModes, usedMode, e.getLength(), tt, null, tt, 0, true);
+			next.add(nm);
+			ret.addNodeInfo(e.getFromNode(), availableModes, nm);
+			addOriginInfo(ret, measure, e, nm);
+			addOriginInfo(ret, measure, endEdge, nm);
+		}
+
+		while (!next.isEmpty()) {
+			DijkstraEntry nns = next.poll();
+			// check bounds
+			if (boundTT > 0 && nns.tt >= boundTT) {
+				continue;
+			}
+			if (boundDist > 0 && nns.distance >= boundDist) {
+				continue;
+			}
+			Vector<DBEdge> ies = nns.n.getIncoming();
+			for (DBEdge ie : ies) {
+				availableModes = nns.availableModes;
+				usedMode = nns.usedMode;
+				if(!ie.allowsAny(availableModes)) {
+					continue;
+				}
+				double interchangeTT = 0;
+				if (!ie.allows(usedMode)) {
+					availableModes = availableModes & ie.modes;
+					if(availableModes==0) {
+						continue;
+					}
+					usedMode = Modes.selectModeFrom(availableModes);
+				}
+				GTFSConnection ptConnection = null;
+				double ttt;
+				// the latest time the end of the incoming edge must be reached at
+				double latest = time - nns.tt;
+				if(ie.isGTFSEdge()) {
+					GTFSEdge ge = (GTFSEdge) ie;
+					ptConnection = ge.getLatestConnection(latest);
+					GTFSTrip nextTrip = nns.line!=null ? nns.line.trip : null;
+					if(ptConnection!=null && nextTrip!=null && !ptConnection.trip.equals(nextTrip)) {
+						interchangeTT = ((GTFSStop) nns.n).getInterchangeTime(nextTrip, ptConnection.trip, 0);
+						if(interchangeTT>0) {
+							ptConnection = ge.getLatestConnection(latest - interchangeTT);
+						}
+					}
+					if(ptConnection==null) {
+						ttt = 86400;
+					} else {
+						ttt = latest - ptConnection.departureTime;
+					}
+				} else {
+					ttt = getTravelTimeArrivingAt(ie, usedMode, latest);
+				}
+				DBNode n = ie.getFromNode();
+				double distance = nns.distance + ie.getLength();
+				tt = nns.tt + ttt;
+				DijkstraEntry oldValue = ret.getPriorNodeInfo(n, availableModes);
+				DijkstraEntry newValue = new DijkstraEntry(measure, nns, n, ie, availableModes, usedMode, distance, tt, ptConnection, ttt, interchangeTT, false);
+				if(oldValue==null) {
+					next.add(newValue);
+					ret.addNodeInfo(n, availableModes, newValue);
+				} else if(measure.compare(oldValue, newValue)>0) {
+					next.remove(oldValue);
+					next.add(newValue);
+					ret.addNodeInfo(n, availableModes, newValue);
+				}
+				// origins may be located at this edge or at its opposite direction
+				addOriginInfo(ret, measure, ie, newValue);
+				addOriginInfo(ret, measure, ie.opposite, newValue);
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @brief Converts the path from an origin edge found by a backward search into a forward result
+	 *
+	 * The returned result contains only the path to the destination edge the
+	 * backward search started at and can be processed as a usual result of BoundDijkstra.
+	 * Its time is set to the departure time at the origin.
+	 * @param measure The measure computer and comperator to use for routing
+	 * @param backward The result of a backward search
+	 * @param originEdge The origin edge to build the forward result for
+	 * @return The forward result, null if the origin edge was not reached
+	 */
+	public static DijkstraResult buildForwardResult(AbstractRouteWeightFunction measure, DijkstraResult backward, DBEdge originEdge) {
+		DijkstraEntry start = backward.getEdgeInfo(originEdge);
+		if(start==null) {
+			return null;
+		}
+		DijkstraResult ret = new DijkstraResult(new HashSet<>(), -1, -1, -1, -1, false, (int) (backward.time - start.tt));
+		DijkstraEntry fwd = null;
+		double distance = 0;
+		double tt = 0;
+		for(DijkstraEntry current=start; current!=null; current=current.prev) {
+			distance += current.e.getLength();
+			tt += current.ttt;
+			// the destination is located at the opposite of the last passed edge
+			boolean wasOpposite = current.prev==null && current.wasOpposite;
+			DBEdge e = wasOpposite ? current.e.opposite : current.e;
+			fwd = new DijkstraEntry(measure, fwd, current.e.getToNode(), e, current.availableModes, current.usedMode,
+					distance, tt, current.line, current.ttt, current.interchangeTT, wasOpposite);
+		}
+		ret.edgeMap.put(fwd.e, fwd);
+		ret.lastSeen = fwd;
+		return ret;
+	}
+
+
+	/**
+	 * @brief Returns the travel time needed to pass the edge when leaving it at the given time
+	 *
+	 * The time-dependent speed is evaluated at the estimated entering time.
+	 * @param e The edge to pass
+	 * @param usedMode The used mode of transport
+	 * @param arrivalTime The time the end of the edge shall be reached at
+	 * @return The travel time needed to pass this edge
+	 */
+	private static double getTravelTimeArrivingAt(DBEdge e, Mode usedMode, double arrivalTime) {
+		double tt = e.getTravelTime(usedMode, arrivalTime);
+		return e.getTravelTime(usedMode, arrivalTime - tt);
+	}
+
+
+	/**
+	 * @brief Stores the path found to an origin edge if it is the best one
+	 * @param ret The results container to fill
+	 * @param measure The measure computer and comperator to use for routing
+	 * @param origin The (possible) origin edge
+	 * @param newValue The routing element used to approach the edge
+	 */
+	private static void addOriginInfo(DijkstraResult ret, AbstractRouteWeightFunction measure, DBEdge origin, DijkstraEntry newValue) {
+		if(origin==null) {
+			return;
+		}
+		DijkstraEntry oldValue = ret.edgeMap.get(origin);
+		if(oldValue==null) {
+			if(!ret.toFind.contains(origin)) {
+				return;
+			}
+			ret.edgeMap.put(origin, newValue);
+			ret.lastSeen = newValue;
+		} else if(measure.compare(oldValue, newValue)>0) {
+			ret.edgeMap.put(origin, newValue);
+			ret.lastSeen = newValue;
+		}
+	}
+
+}
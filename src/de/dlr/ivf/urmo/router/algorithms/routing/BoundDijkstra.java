@@ -20,6 +20,8 @@ import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Vector;
 
+import de.dlr.ivf.urmo.router.algorithms.overlay.CellOverlay;
+import de.dlr.ivf.urmo.router.algorithms.overlay.OverlayCell;
 import de.dlr.ivf.urmo.router.gtfs.GTFSConnection;
 import de.dlr.ivf.urmo.router.gtfs.GTFSEdge;
 import de.dlr.ivf.urmo.router.gtfs.GTFSStop;
@@ -55,11 +57,40 @@ public class BoundDijkstra {
 	 */
 	public static DijkstraResult run(AbstractRouteWeightFunction measure, int time, DBEdge startEdge, long usedModesIDs, long modes, 
 			Set<DBEdge> ends, int boundNumber, double boundTT, double boundDist, double boundVar, boolean shortestOnly) {
+		return run(measure, time, startEdge, usedModesIDs, modes, ends, boundNumber, boundTT, boundDist, boundVar, shortestOnly, null);
+	}
+
+
+	/**
+	 * @brief Computes a bound 1-to-many shortest paths using the Dijkstra
+	 *        algorithm, optionally passing cells of a customized overlay
+	 * 
+	 * When an overlay is given, passable cells are not explored; their exits
+	 * are reached using the customized travel times instead. The edges along
+	 * a customized path are only built when its exit is settled. A cell is
+	 * explored, too, if the speeds within it change before an exit is reached.
+	 * @param measure The measure computer and comperator to use for routing
+	 * @param time The time the trip starts at
+	 * @param startEdge The starting road
+	 * @param usedModesIDs The first used mode
+	 * @param modes Bitset of usable transport modes
+	 * @param ends A set of all destinations
+	 * @param boundNumber If >0 then the router will stop after this number of ends has been found
+	 * @param boundTT If >0 then the router will stop after this travel time has been reached
+	 * @param boundDist If >0 then the router will stop after this distance has been reached
+	 * @param boundVar If >0 then the router will stop after the bound variable reaches this limit
+	 * @param shortestOnly Whether the router shall end as soon as a sink was seen
+	 * @param overlay The customized overlay to use (may be null)
+	 * @return A results container
+	 * @see DijkstraResult
+	 */
+	public static DijkstraResult run(AbstractRouteWeightFunction measure, int time, DBEdge startEdge, long usedModesIDs, long modes, 
+			Set<DBEdge> ends, int boundNumber, double boundTT, double boundDist, double boundVar, boolean shortestOnly, CellOverlay overlay) {
 		
 		boolean hadExtension = false;
 		long availableModes = modes;
 		Mode usedMode = Modes.getMode(usedModesIDs);
-		double tt = startEdge.getTravelTime(usedMode.vmax, time);
+		double tt = startEdge.getTravelTime(usedMode, time);
 		DijkstraResult ret = new DijkstraResult(new HashSet<>(ends), boundNumber, boundTT, boundDist, boundVar, shortestOnly, time);
 		PriorityQueue<DijkstraEntry> next = new PriorityQueue<DijkstraEntry>(1000, measure);
 		DijkstraEntry nm = new DijkstraEntry(measure, null, startEdge.getToNode(), startEdge, availableModes, usedMode,
@@ -78,7 +109,7 @@ public class BoundDijkstra {
 		// consider starting in the opposite direction
 		if(startEdge.opposite!=null && startEdge.opposite.allows(usedMode)) {
 			DBEdge e = startEdge.opposite;
-			tt = e.getTravelTime(usedMode.vmax, time);
+			tt = e.getTravelTime(usedMode, time);
 			nm = new DijkstraEntry(measure, null, e.getToNode(), e, availableModes, usedMode, e.getLength(), tt, null, tt, 0, true);
 			// originally, "startPos" was used - currently the offset of the mappable object
 			// is not regarded in the distance limit computation
@@ -101,8 +132,43 @@ public class BoundDijkstra {
 			if (boundDist > 0 && nns.distance >= boundDist) {
 				continue;
 			}
+			if(nns instanceof OverlayEntry) {
+				// a passed cell; its path is built now that the exit is settled
+				nns = ((OverlayEntry) nns).expand(measure, time);
+				ret.addNodeInfo(nns.n, nns.availableModes, nns);
+			}
 			Vector<DBEdge> oes = nns.n.getOutgoing();
+			OverlayCell cell = overlay!=null ? overlay.getEntryCell(nns.n) : null;
+			boolean passed = cell!=null;
+			if(cell!=null) {
+				int entryIndex = cell.getEntryIndex(nns.n);
+				int slot = cell.getSlot(time + nns.tt);
+				for(DBNode exit : cell.getExits()) {
+					if(exit==nns.n || cell.getIncoming(slot, entryIndex, exit)==null) {
+						continue;
+					}
+					if(!cell.isValid(slot, entryIndex, exit, time + nns.tt)) {
+						// the speeds change before the exit is reached; the cell is explored
+						passed = false;
+						continue;
+					}
+					DijkstraEntry newValue = new OverlayEntry(measure, nns, exit, cell, slot, entryIndex);
+					DijkstraEntry oldValue = ret.getPriorNodeInfo(exit, nns.availableModes);
+					if(oldValue==null) {
+						next.add(newValue);
+						ret.addNodeInfo(exit, nns.availableModes, newValue);
+					} else if(measure.compare(oldValue, newValue)>0) {
+						next.remove(oldValue);
+						next.add(newValue);
+						ret.addNodeInfo(exit, nns.availableModes, newValue);
+					}
+				}
+			}
 			for (DBEdge oe : oes) {
+				if(passed && cell.isInner(oe)) {
+					// passed using the overlay
+					continue;
+				}
 				availableModes = nns.availableModes;
 				usedMode = nns.usedMode;
 				if(!oe.allowsAny(availableModes)) { 
@@ -135,7 +201,7 @@ public class BoundDijkstra {
 						ttt = ptConnection.arrivalTime - time - nns.tt + interchangeTT;
 					}
 				} else {
-					ttt = oe.getTravelTime(usedMode.vmax, time + nns.tt) + interchangeTT;
+					ttt = oe.getTravelTime(usedMode, time + nns.tt) + interchangeTT;
 					// @todo: interchange times at nodes
 				}
 				DBNode n = oe.getToNode();
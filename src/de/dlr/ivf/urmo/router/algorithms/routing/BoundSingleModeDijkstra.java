@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.algorithms.routing;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Vector;
+
+import de.dlr.ivf.urmo.router.algorithms.overlay.CellOverlay;
+import de.dlr.ivf.urmo.router.algorithms.overlay.OverlayCell;
+import de.dlr.ivf.urmo.router.modes.Mode;
+import de.dlr.ivf.urmo.router.shapes.DBEdge;
+import de.dlr.ivf.urmo.router.shapes.DBNode;
+
+/**
+ * @class BoundSingleModeDijkstra
+ * @brief A 1-to-many Dijkstra for a single mode of transport without public transport
+ *
+ * A specialisation of BoundDijkstra for the common case of routing using one
+ * mode only. As the mode can not change, only one entry per node is kept and
+ * public transport as well as mode changes are not regarded. Outdated queue
+ * entries are skipped when polled instead of being removed from the queue.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of
+ *         Transport Research
+ */
+public class BoundSingleModeDijkstra {
+	/**
+	 * @brief Computes a bound 1-to-many shortest paths using the Dijkstra
+	 *        algorithm for a single mode of transport
+	 *
+	 * @param measure The measure computer and comperator to use for routing
+	 * @param time The time the trip starts at
+	 * @param startEdge The starting road
+	 * @param mode The mode of transport to use
+	 * @param ends A set of all destinations
+	 * @param boundNumber If >0 then the router will stop after this number of ends has been found
+	 * @param boundTT If >0 then the router will stop after this travel time has been reached
+	 * @param boundDist If >0 then the router will stop after this distance has been reached
+	 * @param boundVar If >0 then the router will stop after the bound variable reaches this limit
+	 * @param shortestOnly Whether the router shall end as soon as a sink was seen
+	 * @param overlay The customized overlay to use (may be null)
+	 * @return A results container
+	 * @see DijkstraResult
+	 */
+	public static DijkstraResult run(AbstractRouteWeightFunction measure, int time, DBEdge startEdge, Mode mode,
+			Set<DBEdge> ends, int boundNumber, double boundTT, double boundDist, double boundVar, boolean shortestOnly, CellOverlay overlay) {
+		boolean hadExtension = false;
+		long modeID = mode.id;
+		HashMap<DBNode, DijkstraEntry> best = new HashMap<>();
+		double tt = startEdge.getTravelTime(mode, time);
+		DijkstraResult ret = new DijkstraResult(new HashSet<>(ends), boundNumber, boundTT, boundDist, boundVar, shortestOnly, time);
+		PriorityQueue<DijkstraEntry> next = new PriorityQueue<DijkstraEntry>(1000, measure);
+		DijkstraEntry nm = new DijkstraEntry(measure, null, startEdge.getToNode(), startEdge, modeID, mode,
+				startEdge.getLength(), tt, null, tt, 0, false);
+		next.add(nm);
+		best.put(startEdge.getToNode(), nm);
+		if(ret.addEdgeInfo(measure, startEdge, nm)) {
+			if(!hadExtension&&!ret.allFound()) {
+				boundTT = Math.max(boundTT, tt*2);
+				hadExtension = true;
+			}
+		}
+
+		// consider starting in the opposite direction
+		if(startEdge.opposite!=null && startEdge.opposite.allows(modeID)) {
+			DBEdge e = startEdge.opposite;
+			tt = e.getTravelTime(mode, time);
+			nm = new DijkstraEntry(measure, null, e.getToNode(), e, modeID, mode, e.getLength(), tt, null, tt, 0, true);
+			DijkstraEntry oldValue = best.get(e.getToNode());
+			if(oldValue==null || measure.compare(oldValue, nm)>0) {
+				next.add(nm);
+				best.put(e.getToNode(), nm);
+			}
+			if(ret.addEdgeInfo(measure, e, nm)) {
+				if(!hadExtension&&!ret.allFound()) {
+					boundTT = Math.max(boundTT, tt*2);
+					hadExtension = true;
+				}
+			}
+		}
+
+		while (!next.isEmpty()) {
+			DijkstraEntry nns = next.poll();
+			if(best.get(nns.n)!=nns) {
+				// an outdated entry
+				continue;
+			}
+			// check bounds
+			if (boundTT > 0 && nns.tt >= boundTT) {
+				continue;
+			}
+			if (boundDist > 0 && nns.distance >= boundDist) {
+				continue;
+			}
+			if(nns instanceof OverlayEntry) {
+				// a passed cell; its path is built now that the exit is settled
+				nns = ((OverlayEntry) nns).expand(measure, time);
+				best.put(nns.n, nns);
+			}
+			OverlayCell cell = overlay!=null ? overlay.getEntryCell(nns.n) : null;
+			boolean passed = cell!=null;
+			if(cell!=null) {
+				int entryIndex = cell.getEntryIndex(nns.n);
+				int slot = cell.getSlot(time + nns.tt);
+				for(DBNode exit : cell.getExits()) {
+					if(exit==nns.n || cell.getIncoming(slot, entryIndex, exit)==null) {
+						continue;
+					}
+					if(!cell.isValid(slot, entryIndex, exit, time + nns.tt)) {
+						// the speeds change before the exit is reached; the cell is explored
+						passed = false;
+						continue;
+					}
+					DijkstraEntry newValue = new OverlayEntry(measure, nns, exit, cell, slot, entryIndex);
+					DijkstraEntry oldValue = best.get(exit);
+					if(oldValue==null || measure.compare(oldValue, newValue)>0) {
+						next.add(newValue);
+						best.put(exit, newValue);
+					}
+				}
+			}
+			Vector<DBEdge> oes = nns.n.getOutgoing();
+			for (DBEdge oe : oes) {
+				if(!oe.allows(modeID) || (passed && cell.isInner(oe))) {
+					continue;
+				}
+				double ttt = oe.getTravelTime(mode, time + nns.tt);
+				DBNode n = oe.getToNode();
+				double distance = nns.distance + oe.getLength();
+				tt = nns.tt + ttt;
+				DijkstraEntry newValue = new DijkstraEntry(measure, nns, n, oe, modeID, mode, distance, tt, null, ttt, 0, false);
+				DijkstraEntry oldValue = best.get(n);
+				if(oldValue==null || measure.compare(oldValue, newValue)>0) {
+					next.add(newValue);
+					best.put(n, newValue);
+				}
+				if(ret.addEdgeInfo(measure, oe, newValue)) {
+					if(!hadExtension&&!ret.allFound()) {
+						boundTT = Math.max(boundTT, tt+newValue.first.ttt+ttt);
+						hadExtension = true;
+					}
+				}
+
+				// check opposite direction
+				if(oe.opposite!=null && oe.opposite.getAttachedObjectsNumber()!=0) {
+					DijkstraEntry newOppositeValue = new DijkstraEntry(measure, nns, n, oe.opposite, modeID, mode, distance, tt, null, ttt, 0, true);
+					if(ret.addEdgeInfo(measure, oe.opposite, newOppositeValue)) {
+						if(!hadExtension&&!ret.allFound()) {
+							boundTT = Math.max(boundTT, tt+newOppositeValue.first.ttt+ttt);
+							hadExtension = true;
+						}
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+}
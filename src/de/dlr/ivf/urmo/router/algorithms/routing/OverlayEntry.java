@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.algorithms.routing;
+
+import java.util.Vector;
+
+import de.dlr.ivf.urmo.router.algorithms.overlay.OverlayCell;
+import de.dlr.ivf.urmo.router.shapes.DBEdge;
+import de.dlr.ivf.urmo.router.shapes.DBNode;
+
+/**
+ * @class OverlayEntry
+ * @brief A Dijkstra step that passes a cell of the overlay at once
+ *
+ * The entry reaches an exit of the cell from the entry node the previous
+ * entry ended at, using the travel time and distance of the customized
+ * path. The path's edges are only expanded into own entries when the exit
+ * is settled, so that paths to exits that are reached faster otherwise are
+ * never built.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+class OverlayEntry extends DijkstraEntry {
+	/// @brief The passed cell
+	private OverlayCell cell;
+	/// @brief The time slot the cell was entered in
+	private int slot;
+	/// @brief The index of the entry node within the passed cell
+	private int entryIndex;
+
+
+	/** @brief Constructor
+	 * @param measure The route weighting function
+	 * @param _prev The entry ending at the cell's entry node
+	 * @param exit The reached exit node
+	 * @param _cell The passed cell
+	 * @param _slot The time slot the cell is entered in
+	 * @param _entryIndex The index of the entry node within the passed cell
+	 */
+	OverlayEntry(AbstractRouteWeightFunction measure, DijkstraEntry _prev, DBNode exit, OverlayCell _cell, int _slot, int _entryIndex) {
+		super(measure, _prev, exit, _cell.getIncoming(_slot, _entryIndex, exit), _prev.availableModes, _prev.usedMode,
+				_prev.distance + _cell.getDistance(_slot, _entryIndex, exit), _prev.tt + _cell.getTravelTime(_slot, _entryIndex, exit),
+				null, _cell.getTravelTime(_slot, _entryIndex, exit), 0, false);
+		cell = _cell;
+		slot = _slot;
+		entryIndex = _entryIndex;
+	}
+
+
+	/** @brief Builds the entries along the customized path
+	 * @param measure The route weighting function
+	 * @param time The time the trip starts at
+	 * @return The entry at the exit node
+	 */
+	DijkstraEntry expand(AbstractRouteWeightFunction measure, int time) {
+		Vector<DBEdge> path = cell.getPath(slot, entryIndex, n);
+		DijkstraEntry ret = prev;
+		for(DBEdge pe : path) {
+			double ttt = pe.getTravelTime(usedMode, time + ret.tt);
+			ret = new DijkstraEntry(measure, ret, pe.getToNode(), pe, availableModes, usedMode,
+					ret.distance + pe.getLength(), ret.tt + ttt, null, ttt, 0, false);
+		}
+		return ret;
+	}
+
+}
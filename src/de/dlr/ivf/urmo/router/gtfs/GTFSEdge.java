@@ -41,6 +41,8 @@ public class GTFSEdge extends DBEdge {
 	public GTFSRoute route;
 	/// @brief A list of operating times
 	private Vector<GTFSConnection> connections = new Vector<>();
+	/// @brief The connection departing latest among the connections up to the respective index (built by sortConnections)
+	private GTFSConnection[] latestDeparting = new GTFSConnection[0];
 
 
 	/**
@@ -79,7 +81,43 @@ public class GTFSEdge extends DBEdge {
 		return null;
 	}
 
-		
+
+	/**
+	 * @brief Returns the latest departing connection that arrives at the end of this edge in time
+	 *
+	 * Used when routing backwards (arrive-by). As the connections are sorted
+	 * by their arrival time, a binary search finds the last one arriving in
+	 * time. As connections may overtake each other, the one departing latest
+	 * up to this one is returned.
+	 * @param time The latest time the end of this edge/stop must be reached at
+	 * @return The latest departing connection arriving at or before the given time, null if none exists
+	 */
+	public GTFSConnection getLatestConnection(double time) {
+		int low = 0;
+		int high = latestDeparting.length - 1;
+		GTFSConnection ret = null;
+		while(low<=high) {
+			int mid = (low + high) >>> 1;
+			if(connections.get(mid).arrivalTime<=time) {
+				ret = latestDeparting[mid];
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @brief Returns the connections of this edge
+	 * @return The connections (sorted by arrival time after sortConnections was called)
+	 */
+	public Vector<GTFSConnection> getConnections() {
+		return connections;
+	}
+
+
 	/**
 	 * @brief Adds a connection (depart/arrival times, route) to this edge
 	 * 
@@ -94,6 +132,8 @@ public class GTFSEdge extends DBEdge {
 
 	/**
 	 * @brief Sorts the connections by arrival time (increasing)
+	 *
+	 * Determines the latest departing connection up to each one, too.
 	 */
 	public void sortConnections() {
 		connections.sort(new Comparator<GTFSConnection>() {
@@ -108,6 +148,15 @@ public class GTFSEdge extends DBEdge {
 				}
 			}
 		});
+		latestDeparting = new GTFSConnection[connections.size()];
+		GTFSConnection latest = null;
+		for(int i=0; i<latestDeparting.length; ++i) {
+			GTFSConnection c = connections.get(i);
+			if(latest==null || c.departureTime>=latest.departureTime) {
+				latest = c;
+			}
+			latestDeparting[i] = latest;
+		}
 	}
 
 
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.io;
+
+import java.nio.charset.Charset;
+
+/**
+ * @class CSVLine
+ * @brief A line of a ';'-separated file, tokenized in place
+ *
+ * The line is not copied; only the begin and end offsets of the fields
+ * within the read bytes are stored. Numbers are parsed directly from the
+ * bytes. Numbers the fast path can not parse exactly (e.g. too many
+ * digits) are parsed using the Java methods, so that the results are the
+ * same as when using Double.parseDouble and alike.
+ *
+ * As String.split, trailing empty fields are dismissed.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class CSVLine {
+	/// @brief Exactly representable powers of ten (double)
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	/// @brief Exactly representable powers of ten (float)
+	private static final float[] POW10F = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+	/// @brief The charset used to decode strings (the one FileReader uses)
+	private static final Charset CHARSET = Charset.defaultCharset();
+	/// @brief The read bytes
+	private byte[] data;
+	/// @brief The begin of the line
+	private int lineBegin;
+	/// @brief The end of the line (exclusive)
+	private int lineEnd;
+	/// @brief The begins of the fields
+	private int[] begins = new int[16];
+	/// @brief The ends of the fields (exclusive)
+	private int[] ends = new int[16];
+	/// @brief The number of fields
+	private int numFields = 0;
+	/// @brief The mantissa found by the last call to parseDecimal
+	private long mantissa;
+	/// @brief The decimal exponent found by the last call to parseDecimal
+	private int exponent;
+
+
+	/** @brief Sets the line to the given part of the data and tokenizes it
+	 * @param _data The read bytes
+	 * @param begin The begin of the line
+	 * @param end The end of the line (exclusive, without the line feed)
+	 */
+	void set(byte[] _data, int begin, int end) {
+		data = _data;
+		if(end>begin && data[end-1]=='\r') {
+			--end;
+		}
+		lineBegin = begin;
+		lineEnd = end;
+		numFields = 0;
+		int fieldBegin = begin;
+		for(int i=begin; i<=end; ++i) {
+			if(i==end || data[i]==';') {
+				if(numFields==begins.length) {
+					int[] nBegins = new int[numFields*2];
+					int[] nEnds = new int[numFields*2];
+					System.arraycopy(begins, 0, nBegins, 0, numFields);
+					System.arraycopy(ends, 0, nEnds, 0, numFields);
+					begins = nBegins;
+					ends = nEnds;
+				}
+				begins[numFields] = fieldBegin;
+				ends[numFields] = i;
+				++numFields;
+				fieldBegin = i + 1;
+			}
+		}
+		while(numFields>0 && begins[numFields-1]==ends[numFields-1]) {
+			--numFields;
+		}
+	}
+
+
+	/** @brief Returns whether the line is empty or a comment
+	 * @return Whether the line shall be skipped
+	 */
+	public boolean isSkipped() {
+		return lineBegin==lineEnd || data[lineBegin]=='#';
+	}
+
+
+	/** @brief Returns the number of fields
+	 * @return The number of fields of this line
+	 */
+	public int size() {
+		return numFields;
+	}
+
+
+	/** @brief Returns the complete line
+	 * @return The line as a string
+	 */
+	public String getLine() {
+		return new String(data, lineBegin, lineEnd-lineBegin, CHARSET);
+	}
+
+
+	/** @brief Returns the named field as a string
+	 * @param i The index of the field
+	 * @return The field's content
+	 */
+	public String getString(int i) {
+		check(i);
+		return new String(data, begins[i], ends[i]-begins[i], CHARSET);
+	}
+
+
+	/** @brief Returns whether the named field is "true" (in any case) or "1"
+	 * @param i The index of the field
+	 * @return Whether the field is set
+	 */
+	public boolean isTrue(int i) {
+		check(i);
+		int b = begins[i];
+		int length = ends[i] - b;
+		if(length==1) {
+			return data[b]=='1';
+		}
+		if(length!=4) {
+			return false;
+		}
+		return (data[b]|0x20)=='t' && (data[b+1]|0x20)=='r' && (data[b+2]|0x20)=='u' && (data[b+3]|0x20)=='e';
+	}
+
+
+	/** @brief Parses the named field as a long
+	 * @param i The index of the field
+	 * @return The parsed value
+	 * @throws NumberFormatException If the field is not a number
+	 */
+	public long getLong(int i) {
+		check(i);
+		int b = begins[i];
+		int e = ends[i];
+		boolean negative = b<e && data[b]=='-';
+		int p = negative ? b + 1 : b;
+		if(p==e || e-p>18) {
+			return Long.parseLong(getString(i));
+		}
+		long ret = 0;
+		for(; p<e; ++p) {
+			int d = data[p] - '0';
+			if(d<0 || d>9) {
+				return Long.parseLong(getString(i));
+			}
+			ret = ret * 10 + d;
+		}
+		return negative ? -ret : ret;
+	}
+
+
+	/** @brief Parses the named field as a double
+	 * @param i The index of the field
+	 * @return The parsed value
+	 * @throws NumberFormatException If the field is not a number
+	 */
+	public double getDouble(int i) {
+		check(i);
+		if(parseDecimal(begins[i], ends[i]) && mantissa<(1L<<53) && exponent>=-22 && exponent<=22) {
+			// both values are exact, so the result is correctly rounded
+			double v = exponent<0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+			return data[begins[i]]=='-' ? -v : v;
+		}
+		return Double.parseDouble(getString(i));
+	}
+
+
+	/** @brief Parses the named field as a float
+	 * @param i The index of the field
+	 * @return The parsed value
+	 * @throws NumberFormatException If the field is not a number
+	 */
+	public float getFloat(int i) {
+		check(i);
+		if(parseDecimal(begins[i], ends[i]) && mantissa<(1L<<24) && exponent>=-10 && exponent<=10) {
+			// both values are exact, so the result is correctly rounded
+			float v = exponent<0 ? mantissa / POW10F[-exponent] : mantissa * POW10F[exponent];
+			return data[begins[i]]=='-' ? -v : v;
+		}
+		return Float.parseFloat(getString(i));
+	}
+
+
+	/** @brief Parses a plain decimal number ([-]digits[.digits][e[+-]digits]) into mantissa and exponent
+	 * @param b The begin of the number
+	 * @param e The end of the number (exclusive)
+	 * @return Whether the number could be parsed
+	 */
+	private boolean parseDecimal(int b, int e) {
+		int p = b;
+		if(p<e && (data[p]=='-' || data[p]=='+')) {
+			++p;
+		}
+		long m = 0;
+		int exp = 0;
+		int numDigits = 0;
+		boolean hadDot = false;
+		boolean hadDigit = false;
+		for(; p<e; ++p) {
+			byte c = data[p];
+			if(c>='0' && c<='9') {
+				hadDigit = true;
+				if(m==0 && c=='0') {
+					// leading zeros do not count
+					if(hadDot) {
+						--exp;
+					}
+					continue;
+				}
+				if(++numDigits>18) {
+					return false;
+				}
+				m = m * 10 + (c - '0');
+				if(hadDot) {
+					--exp;
+				}
+			} else if(c=='.' && !hadDot) {
+				hadDot = true;
+			} else {
+				break;
+			}
+		}
+		if(!hadDigit) {
+			return false;
+		}
+		if(p<e) {
+			if(data[p]!='e' && data[p]!='E') {
+				return false;
+			}
+			++p;
+			boolean negative = p<e && data[p]=='-';
+			if(p<e && (data[p]=='-' || data[p]=='+')) {
+				++p;
+			}
+			if(p==e || e-p>3) {
+				return false;
+			}
+			int ev = 0;
+			for(; p<e; ++p) {
+				int d = data[p] - '0';
+				if(d<0 || d>9) {
+					return false;
+				}
+				ev = ev * 10 + d;
+			}
+			exp += negative ? -ev : ev;
+		}
+		mantissa = m;
+		exponent = m==0 ? 0 : exp;
+		return true;
+	}
+
+
+	/** @brief Throws an exception if the named field does not exist
+	 * @param i The index of the field
+	 */
+	private void check(int i) {
+		if(i>=numFields) {
+			throw new ArrayIndexOutOfBoundsException("Field " + i + " is missing in line '" + getLine() + "'.");
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * @class ChunkedCSVReader
+ * @brief Reads a ';'-separated file in line-aligned chunks that are parsed in parallel
+ *
+ * The file is split into chunks that end at line ends. Each chunk is read
+ * into one buffer using positional reads and is then tokenized in place
+ * (see CSVLine). The lines are converted into records by LineParser
+ * instances; each chunk uses an own parser, so parsers do not have to be
+ * thread-safe.
+ *
+ * The records are returned in the order of the file, so that assigning
+ * ids or adding objects afterwards is done in the same order as when
+ * reading the file line by line.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class ChunkedCSVReader {
+	/// @brief The (minimum) size of a chunk
+	private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+
+	/**
+	 * @interface LineParser
+	 * @brief Converts a tokenized line into a record
+	 */
+	public interface LineParser<T> {
+		/** @brief Converts the line into a record
+		 * @param line The tokenized line
+		 * @return The record, null if the line shall be skipped
+		 * @throws IOException When the line is broken
+		 */
+		public T parse(CSVLine line) throws IOException;
+	}
+
+
+	/** @brief Reads the file and returns the records built from its lines
+	 *
+	 * Empty lines and lines starting with '#' are skipped.
+	 * @param fileName The name of the file to read
+	 * @param parsers Builds a parser for each chunk
+	 * @return The records in the order of the file
+	 * @throws IOException When something fails
+	 */
+	public static <T> Vector<T> read(String fileName, Supplier<LineParser<T>> parsers) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			// determine line-aligned chunks
+			long size = channel.size();
+			Vector<long[]> chunks = new Vector<>();
+			long begin = 0;
+			while(begin<size) {
+				long end = findLineEnd(channel, Math.min(size, begin + CHUNK_SIZE), size);
+				chunks.add(new long[]{begin, end});
+				begin = end;
+			}
+			// parse the chunks
+			Vector<T> ret = new Vector<>();
+			if(chunks.size()<2) {
+				for(long[] chunk : chunks) {
+					ret.addAll(readChunk(channel, chunk[0], chunk[1], parsers.get()));
+				}
+				return ret;
+			}
+			int numThreads = Math.min(chunks.size(), Runtime.getRuntime().availableProcessors());
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+			try {
+				Vector<Future<Vector<T>>> results = new Vector<>();
+				for(long[] chunk : chunks) {
+					Callable<Vector<T>> task = () -> readChunk(channel, chunk[0], chunk[1], parsers.get());
+					results.add(executor.submit(task));
+				}
+				for(Future<Vector<T>> result : results) {
+					ret.addAll(result.get());
+				}
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				if(e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				if(e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			} finally {
+				executor.shutdown();
+			}
+			return ret;
+		}
+	}
+
+
+	/** @brief Returns the position behind the first line feed at or after the given position
+	 * @param channel The file to read
+	 * @param pos The position to start searching at
+	 * @param size The size of the file
+	 * @return The begin of the next line (or the file's size)
+	 * @throws IOException When something fails
+	 */
+	private static long findLineEnd(FileChannel channel, long pos, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while(pos<size) {
+			buffer.clear();
+			int read = channel.read(buffer, pos);
+			if(read<=0) {
+				break;
+			}
+			for(int i=0; i<read; ++i) {
+				if(buffer.get(i)=='\n') {
+					return pos + i + 1;
+				}
+			}
+			pos += read;
+		}
+		return size;
+	}
+
+
+	/** @brief Reads and parses a chunk of the file
+	 * @param channel The file to read
+	 * @param begin The begin of the chunk
+	 * @param end The end of the chunk (exclusive)
+	 * @param parser The parser to use
+	 * @return The records built from the chunk's lines
+	 * @throws IOException When something fails
+	 */
+	private static <T> Vector<T> readChunk(FileChannel channel, long begin, long end, LineParser<T> parser) throws IOException {
+		if(end-begin>Integer.MAX_VALUE) {
+			throw new IOException("A line is too long to be read.");
+		}
+		byte[] data = new byte[(int) (end-begin)];
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, begin + buffer.position())<0) {
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+		Vector<T> ret = new Vector<>();
+		CSVLine line = new CSVLine();
+		int lineBegin = 0;
+		for(int i=0; i<=data.length; ++i) {
+			if(i<data.length && data[i]!='\n') {
+				continue;
+			}
+			if(i==data.length && lineBegin==i) {
+				break;
+			}
+			line.set(data, lineBegin, i);
+			lineBegin = i + 1;
+			if(line.isSkipped()) {
+				continue;
+			}
+			T record = parser.parse(line);
+			if(record!=null) {
+				ret.add(record);
+			}
+		}
+		return ret;
+	}
+
+}
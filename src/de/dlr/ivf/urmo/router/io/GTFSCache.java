@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import de.dlr.ivf.urmo.router.gtfs.GTFSConnection;
+import de.dlr.ivf.urmo.router.gtfs.GTFSData;
+import de.dlr.ivf.urmo.router.gtfs.GTFSEdge;
+import de.dlr.ivf.urmo.router.gtfs.GTFSRoute;
+import de.dlr.ivf.urmo.router.gtfs.GTFSStop;
+import de.dlr.ivf.urmo.router.gtfs.GTFSTrip;
+import de.dlr.ivf.urmo.router.modes.EntrainmentMap;
+import de.dlr.ivf.urmo.router.shapes.DBEdge;
+import de.dlr.ivf.urmo.router.shapes.DBNet;
+import de.dlr.ivf.urmo.router.shapes.DBNode;
+
+/**
+ * @class GTFSCache
+ * @brief Writes and reads a binary snapshot of the prepared public transport layer
+ *
+ * Loading GTFS changes the road network: stops are added, road edges are
+ * split at the stops' positions and access edges are built. The snapshot
+ * stores these changes together with the routes, the trips running at the
+ * given date, the pt edges and their (already checked and sorted)
+ * connections. Reading the snapshot applies the changes to the road
+ * network again.
+ *
+ * The snapshot is only used if its key matches. The key contains the GTFS
+ * definition, the date, the carrier restriction, the boundary, the
+ * entrainment table and a hash of the road network. The snapshot ends with
+ * the magic number again; a snapshot without it is truncated and rebuilt.
+ * As for the network snapshot, the file is replaced only when completely
+ * written.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class GTFSCache {
+	/// @brief The magic number a GTFS snapshot starts with ("UGTF")
+	private static final int MAGIC = 0x55475446;
+	/// @brief The version of the snapshot format
+	private static final int VERSION = 2;
+
+
+	/** @brief Builds the key that describes the public transport layer and the network it was prepared for
+	 *
+	 * The GTFS definition is described without the database credentials;
+	 * for file-based inputs, the file's size and modification time are
+	 * included (see NetCache.describeSource).
+	 * @param def The GTFS definition
+	 * @param date The date the timetable is read for
+	 * @param restriction The carrier restriction (may be null)
+	 * @param bounds The boundary the stops are read within (may be null)
+	 * @param entrainmentMap The used entrainment map
+	 * @param net The road network the layer is added to
+	 * @return The key describing the public transport layer
+	 * @throws IOException When the definition can not be parsed
+	 */
+	public static String buildKey(String def, String date, String restriction, Geometry bounds, EntrainmentMap entrainmentMap, DBNet net) throws IOException {
+		StringBuilder key = new StringBuilder(NetCache.describeSource(def, "pt"));
+		key.append(';').append(date).append(';').append(restriction);
+		key.append(';').append(bounds!=null ? bounds.toText().hashCode() : 0);
+		key.append(';').append(new TreeMap<>(entrainmentMap.carrier2carried));
+		// an order-independent hash of the network
+		long netHash = 0;
+		for(DBEdge e : net.getEdges()) {
+			long h = e.numID * 31 + e.id.hashCode();
+			h = h * 31 + e.getFromNode().id;
+			h = h * 31 + e.getToNode().id;
+			h = h * 31 + e.modes;
+			h = h * 31 + Double.doubleToLongBits(e.getLength());
+			netHash += h ^ (h >>> 29);
+		}
+		key.append(';').append(net.getNumEdges()).append(';').append(net.getNodes().size()).append(';').append(netHash);
+		return key.toString();
+	}
+
+
+	/** @brief Writes the prepared public transport layer into a snapshot file
+	 * @param gtfs The loaded GTFS data
+	 * @param net The road network the layer was added to
+	 * @param edgesBefore The network's edges before the layer was added
+	 * @param nodesBefore The ids of the network's nodes before the layer was added
+	 * @param fileName The name of the file to write
+	 * @param key The key describing the public transport layer
+	 * @throws IOException When something fails
+	 */
+	public static void write(GTFSData gtfs, DBNet net, Set<DBEdge> edgesBefore, Set<Long> nodesBefore, String fileName, String key) throws IOException {
+		File tmp = NetCache.createTempFile(fileName);
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1<<16))) {
+				writeLayer(out, gtfs, net, edgesBefore, nodesBefore, key);
+			}
+			NetCache.replaceFile(tmp, fileName);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+
+	/** @brief Writes the snapshot's contents
+	 * @param out The stream to write to
+	 * @param gtfs The loaded GTFS data
+	 * @param net The road network the layer was added to
+	 * @param edgesBefore The network's edges before the layer was added
+	 * @param nodesBefore The ids of the network's nodes before the layer was added
+	 * @param key The key describing the public transport layer
+	 * @throws IOException When something fails
+	 */
+	private static void writeLayer(DataOutputStream out, GTFSData gtfs, DBNet net, Set<DBEdge> edgesBefore, Set<Long> nodesBefore, String key) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		NetCache.writeString(out, key);
+		// the projection of the stops
+		out.writeInt(gtfs.stops.isEmpty() ? 0 : gtfs.stops.values().iterator().next().point.getSRID());
+		// routes and trips
+		out.writeInt(gtfs.routes.size());
+		for(GTFSRoute route : gtfs.routes.values()) {
+			NetCache.writeString(out, route.id);
+			NetCache.writeString(out, route.nameS);
+			out.writeInt(route.type);
+		}
+		out.writeInt(gtfs.trips.size());
+		for(GTFSTrip trip : gtfs.trips.values()) {
+			NetCache.writeString(out, trip.tripID);
+			NetCache.writeString(out, trip.route.id);
+		}
+		// removed road edges
+		Vector<String> removed = new Vector<>();
+		for(DBEdge e : edgesBefore) {
+			if(net.getEdgeByName(e.id)!=e) {
+				removed.add(e.id);
+			}
+		}
+		out.writeInt(removed.size());
+		for(String id : removed) {
+			NetCache.writeString(out, id);
+		}
+		// added nodes (intermediate nodes and stops)
+		Vector<DBNode> nodes = new Vector<>();
+		for(DBNode n : net.getNodes().values()) {
+			if(!nodesBefore.contains(n.id)) {
+				nodes.add(n);
+			}
+		}
+		out.writeInt(nodes.size());
+		for(DBNode n : nodes) {
+			boolean isStop = n instanceof GTFSStop;
+			out.writeBoolean(isStop);
+			out.writeLong(n.id);
+			out.writeDouble(n.pos.x);
+			out.writeDouble(n.pos.y);
+			if(isStop) {
+				NetCache.writeString(out, ((GTFSStop) n).mid);
+			}
+		}
+		// added road edges and pt edges, in the order they were built
+		Vector<DBEdge> edges = new Vector<>(gtfs.ptedges);
+		for(DBEdge e : net.getEdges()) {
+			if(!edgesBefore.contains(e)) {
+				edges.add(e);
+			}
+		}
+		edges.sort((e1, e2) -> Long.compare(e1.numID, e2.numID));
+		out.writeInt(edges.size());
+		for(DBEdge e : edges) {
+			out.writeBoolean(e.isGTFSEdge());
+			out.writeLong(e.numID);
+			NetCache.writeString(out, e.id);
+			out.writeLong(e.getFromNode().id);
+			out.writeLong(e.getToNode().id);
+			out.writeLong(e.modes);
+			out.writeDouble(e.vmax);
+			out.writeDouble(e.getLength());
+			if(e.isGTFSEdge()) {
+				GTFSEdge ge = (GTFSEdge) e;
+				NetCache.writeString(out, ge.route.id);
+				out.writeInt(ge.getConnections().size());
+				for(GTFSConnection c : ge.getConnections()) {
+					NetCache.writeString(out, c.trip.tripID);
+					out.writeInt(c.departureTime);
+					out.writeInt(c.arrivalTime);
+				}
+			} else {
+				Coordinate[] cs = e.getGeometry().getCoordinates();
+				out.writeInt(cs.length);
+				for(Coordinate c : cs) {
+					out.writeDouble(c.x);
+					out.writeDouble(c.y);
+				}
+			}
+		}
+		// interchange times
+		int numInterchangeTimes = 0;
+		for(GTFSStop stop : gtfs.stops.values()) {
+			for(HashMap<GTFSTrip, Double> it2 : stop.myInterchangeTimes.values()) {
+				numInterchangeTimes += it2.size();
+			}
+		}
+		out.writeInt(numInterchangeTimes);
+		for(GTFSStop stop : gtfs.stops.values()) {
+			for(Map.Entry<GTFSTrip, HashMap<GTFSTrip, Double>> it1 : stop.myInterchangeTimes.entrySet()) {
+				for(Map.Entry<GTFSTrip, Double> it2 : it1.getValue().entrySet()) {
+					out.writeLong(stop.id);
+					NetCache.writeString(out, it1.getKey().tripID);
+					NetCache.writeString(out, it2.getKey().tripID);
+					out.writeDouble(it2.getValue());
+				}
+			}
+		}
+		// the running id is read once so that following ids are the same when using the snapshot
+		out.writeLong(net.getNextID());
+		// marks the snapshot as complete
+		out.writeInt(MAGIC);
+	}
+
+
+	/** @brief Reads the prepared public transport layer from a snapshot file and adds it to the network
+	 * @param fileName The name of the file to read
+	 * @param key The key describing the public transport layer
+	 * @param net The road network to add the layer to
+	 * @param entrainmentMap The used entrainment map
+	 * @return The read GTFS data, null if the file does not exist, does not match the key or version or is truncated
+	 * @throws IOException When something fails
+	 */
+	public static GTFSData read(String fileName, String key, DBNet net, EntrainmentMap entrainmentMap) throws IOException {
+		File file = new File(fileName);
+		if(!file.exists()) {
+			return null;
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1<<16))) {
+			try {
+				if(in.readInt()!=MAGIC || in.readInt()!=VERSION || !key.equals(NetCache.readString(in))) {
+					return null;
+				}
+			} catch(EOFException e) {
+				return null;
+			}
+			// the network is changed while reading, so the snapshot is checked to be complete first
+			if(!isComplete(file)) {
+				System.err.println("Warning: the GTFS snapshot '" + fileName + "' is truncated; it is rebuilt.");
+				return null;
+			}
+			int stopSRID = in.readInt();
+			// routes and trips
+			HashMap<String, GTFSRoute> routes = new HashMap<>();
+			int numRoutes = in.readInt();
+			for(int i=0; i<numRoutes; ++i) {
+				String id = NetCache.readString(in);
+				String nameS = NetCache.readString(in);
+				routes.put(id, new GTFSRoute(id, nameS, in.readInt()));
+			}
+			HashMap<String, GTFSTrip> trips = new HashMap<>();
+			int numTrips = in.readInt();
+			for(int i=0; i<numTrips; ++i) {
+				String id = NetCache.readString(in);
+				trips.put(id, new GTFSTrip(id, routes.get(NetCache.readString(in))));
+			}
+			// removed road edges
+			int numRemoved = in.readInt();
+			for(int i=0; i<numRemoved; ++i) {
+				String id = NetCache.readString(in);
+				DBEdge e = net.getEdgeByName(id);
+				if(e==null) {
+					throw new IOException("The GTFS snapshot '" + fileName + "' does not match the network (unknown edge '" + id + "').");
+				}
+				net.removeEdge(e);
+			}
+			// added nodes
+			GeometryFactory stopGF = new GeometryFactory(new PrecisionModel(), stopSRID);
+			HashMap<Long, GTFSStop> stops = new HashMap<>();
+			int numNodes = in.readInt();
+			for(int i=0; i<numNodes; ++i) {
+				boolean isStop = in.readBoolean();
+				long id = in.readLong();
+				double x = in.readDouble();
+				double y = in.readDouble();
+				Coordinate pos = new Coordinate(x, y);
+				if(isStop) {
+					GTFSStop stop = new GTFSStop(id, NetCache.readString(in), pos, stopGF.createPoint(pos));
+					net.addNode(stop);
+					stops.put(id, stop);
+				} else {
+					net.getNode(id, pos);
+				}
+			}
+			// added edges
+			GTFSData ret = new GTFSData(net, entrainmentMap, stops, routes, trips);
+			GeometryFactory gf = new GeometryFactory(net.getPrecisionModel(), net.getSRID());
+			int numEdges = in.readInt();
+			for(int i=0; i<numEdges; ++i) {
+				boolean isGTFSEdge = in.readBoolean();
+				long numID = in.readLong();
+				String id = NetCache.readString(in);
+				DBNode from = net.nodes.get(in.readLong());
+				DBNode to = net.nodes.get(in.readLong());
+				long modes = in.readLong();
+				double vmax = in.readDouble();
+				double length = in.readDouble();
+				if(from==null || to==null) {
+					throw new IOException("The GTFS snapshot '" + fileName + "' is broken (unknown node at edge '" + id + "').");
+				}
+				if(isGTFSEdge) {
+					GTFSStop fromStop = (GTFSStop) from;
+					GTFSStop toStop = (GTFSStop) to;
+					GTFSRoute route = routes.get(NetCache.readString(in));
+					Coordinate[] cs = { fromStop.point.getCoordinate(), toStop.point.getCoordinate() };
+					GTFSEdge e = new GTFSEdge(numID, id, fromStop, toStop, modes, vmax, gf.createLineString(cs), length, route);
+					if(!fromStop.connections.containsKey(toStop)) {
+						fromStop.connections.put(toStop, new HashMap<GTFSRoute, GTFSEdge>());
+					}
+					fromStop.connections.get(toStop).put(route, e);
+					int numConnections = in.readInt();
+					for(int j=0; j<numConnections; ++j) {
+						GTFSTrip trip = trips.get(NetCache.readString(in));
+						int departureTime = in.readInt();
+						int arrivalTime = in.readInt();
+						e.addConnection(new GTFSConnection(e, trip, departureTime, arrivalTime));
+					}
+					e.sortConnections();
+					ret.ptedges.add(e);
+				} else {
+					Coordinate[] cs = new Coordinate[in.readInt()];
+					for(int j=0; j<cs.length; ++j) {
+						double x = in.readDouble();
+						double y = in.readDouble();
+						cs[j] = new Coordinate(x, y);
+					}
+					net.addEdge(numID, id, from, to, modes, vmax, gf.createLineString(cs), length);
+				}
+			}
+			// interchange times
+			int numInterchangeTimes = in.readInt();
+			for(int i=0; i<numInterchangeTimes; ++i) {
+				GTFSStop stop = stops.get(in.readLong());
+				GTFSTrip t1 = trips.get(NetCache.readString(in));
+				GTFSTrip t2 = trips.get(NetCache.readString(in));
+				stop.setInterchangeTime(t1, t2, in.readDouble());
+			}
+			net.hadExternID(in.readLong()-1);
+			return ret;
+		} catch(EOFException e) {
+			throw new IOException("The GTFS snapshot '" + fileName + "' is broken.");
+		}
+	}
+
+
+	/** @brief Returns whether the snapshot ends with the magic number
+	 * @param file The snapshot file
+	 * @return Whether the snapshot was completely written
+	 * @throws IOException When something fails
+	 */
+	private static boolean isComplete(File file) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if(raf.length()<12) {
+				return false;
+			}
+			raf.seek(raf.length()-4);
+			return raf.readInt()==MAGIC;
+		}
+	}
+
+}
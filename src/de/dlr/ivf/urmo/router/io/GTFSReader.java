@@ -20,7 +20,6 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.SimpleDateFormat;
@@ -87,12 +86,30 @@ public class GTFSReader {
 		Utils.Format format = Utils.getFormat(def);
 		String[] inputParts = Utils.getParts(format, def, "pt");
 		Vector<Integer> allowedCarrier = options.isSet("pt-restriction") ? parseCarrierDef(options.getString("pt-restriction")) : new Vector<>();
+		// use a previously prepared layer if given
+		String cacheKey = null;
+		Set<DBEdge> edgesBefore = null;
+		Set<Long> nodesBefore = null;
+		if(options.isSet("pt-cache")) {
+			String restriction = options.isSet("pt-restriction") ? options.getString("pt-restriction") : null;
+			cacheKey = GTFSCache.buildKey(def, options.getString("date"), restriction, bounds, entrainmentMap, net);
+			GTFSData cached = GTFSCache.read(options.getString("pt-cache"), cacheKey, net, entrainmentMap);
+			if(cached!=null) {
+				if(verbose) System.out.println(" read prepared layer from '" + options.getString("pt-cache") + "'");
+				return cached;
+			}
+			edgesBefore = new HashSet<>(net.getEdges());
+			nodesBefore = new HashSet<>(net.getNodes().keySet());
+		}
+		GTFSData ret = null;
 		switch(format) {
 		case FORMAT_POSTGRES:
 		case FORMAT_SQLITE:
-			return loadGTFSFromDB(format, inputParts, allowedCarrier, options.getString("date"), bounds, net, entrainmentMap, epsg, verbose);
+			ret = loadGTFSFromDB(format, inputParts, allowedCarrier, options.getString("date"), bounds, net, entrainmentMap, epsg, verbose);
+			break;
 		case FORMAT_CSV:
-			return loadGTFSFromFile(inputParts[0], allowedCarrier, options.getString("date"), bounds, net, entrainmentMap, epsg, verbose);
+			ret = loadGTFSFromFile(inputParts[0], allowedCarrier, options.getString("date"), bounds, net, entrainmentMap, epsg, verbose);
+			break;
 		case FORMAT_SHAPEFILE:
 		case FORMAT_SUMO:
 		case FORMAT_GEOPACKAGE:
@@ -100,6 +117,11 @@ public class GTFSReader {
 		default:
 			throw new IOException("Could not recognize the format used for GTFS.");
 		}
+		if(cacheKey!=null) {
+			if(verbose) System.out.println(" writing prepared layer to '" + options.getString("pt-cache") + "'");
+			GTFSCache.write(ret, net, edgesBefore, nodesBefore, options.getString("pt-cache"), cacheKey);
+		}
+		return ret;
 	}
 	
 	
@@ -119,9 +141,8 @@ public class GTFSReader {
 	private static GTFSData loadGTFSFromDB(Utils.Format format, String[] inputParts, Vector<Integer> allowedCarrier, String date, 
 			Geometry bounds, DBNet net, EntrainmentMap entrainmentMap, int epsg, boolean verbose) throws IOException {
 		try {
-			GeometryFactory gf = new GeometryFactory(new PrecisionModel());
+			GeometryFactory gf = new GeometryFactory(new PrecisionModel(), epsg);
 			Connection connection = Utils.getConnection(format, inputParts, "pt");
-			connection.setAutoCommit(true);
 			connection.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
 			((PGConnection) connection).addDataType("geometry", org.postgis.PGgeometry.class);
 
@@ -134,18 +155,16 @@ public class GTFSReader {
 			String tablePrefix = Utils.getTableName(format, inputParts, "pt");
 			// read stops, extend network accordingly
 			if(verbose) System.out.println(" ... reading stops ...");
-			String query = "SELECT stop_id,ST_AsBinary(ST_TRANSFORM(pos," + epsg + ")) FROM " + tablePrefix + "_stops" + boundsFilter + ";";
-			Statement s = connection.createStatement();
-			ResultSet rs = s.executeQuery(query);
+			String query = "SELECT CAST(stop_id AS TEXT),ST_AsBinary(ST_TRANSFORM(pos," + epsg + ")) FROM " + tablePrefix + "_stops" + boundsFilter + ";";
+			RowReader rows = Utils.readRows(connection, format, query);
 			WKBReader wkbRead = new WKBReader();
 			HashMap<Long, GTFSStop> stops = new HashMap<>();
 			HashMap<String, GTFSStop> id2stop = new HashMap<>();
 			Vector<EdgeMappable> stopsV = new Vector<>();
-			while (rs.next()) {
-				ResultSetMetaData rsmd = rs.getMetaData();
-				Geometry geom = wkbRead.read(rs.getBytes(rsmd.getColumnCount()));
+			while (rows.next()) {
+				Geometry geom = wkbRead.read(rows.getBytes(2));
 				Coordinate[] cs = geom.getCoordinates();
-				GTFSStop stop = new GTFSStop(net.getNextID(), rs.getString("stop_id"), cs[0], gf.createPoint(cs[0])); // !!! new id - the nodes should have a new id as well
+				GTFSStop stop = new GTFSStop(net.getNextID(), rows.getString(1), cs[0], gf.createPoint(cs[0])); // !!! new id - the nodes should have a new id as well
 				if(id2stop.containsKey(stop.mid)) {
 					System.out.println("Warning: stop " + stop.mid + " already exists; skipping.");
 					continue;
@@ -155,8 +174,7 @@ public class GTFSReader {
 				id2stop.put(stop.mid, stop);
 				stopsV.add(stop);
 			}
-			rs.close();
-			s.close();
+			rows.close();
 			
 			// map stops to edges
 			long accessModes = Modes.getMode("foot").id|Modes.getMode("bicycle").id;
@@ -276,8 +294,8 @@ public class GTFSReader {
 			// read routes
 			if(verbose) System.out.println(" ... reading routes ...");
 			query = "SELECT route_id,route_short_name,route_type FROM " + tablePrefix + "_routes;";
-			s = connection.createStatement();
-			rs = s.executeQuery(query);
+			Statement s = Utils.createQueryStatement(connection);
+			ResultSet rs = s.executeQuery(query);
 			HashMap<String, GTFSRoute> routes = new HashMap<>();
 			while (rs.next()) {
 				GTFSRoute route = new GTFSRoute(rs.getString("route_id"), rs.getString("route_short_name"), rs.getInt("route_type"));
@@ -310,7 +328,7 @@ public class GTFSReader {
 			Set<String> services = new HashSet<String>();
 			if(dateI!=0) {
 				query = "SELECT service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date FROM " + tablePrefix + "_calendar;";
-				s = connection.createStatement();
+				s = Utils.createQueryStatement(connection);
 				rs = s.executeQuery(query);
 				while (rs.next()) {
 					int dateBI = parseDate(rs.getString("start_date"));
@@ -327,7 +345,7 @@ public class GTFSReader {
 				s.close();
 				if(Utils.tableExists(connection, tablePrefix + "_calendar_dates")) {
 					query = "SELECT service_id,date,exception_type FROM " + tablePrefix + "_calendar_dates;";
-					s = connection.createStatement();
+					s = Utils.createQueryStatement(connection);
 					rs = s.executeQuery(query);
 					while (rs.next()) {
 						int dateCI = parseDate(rs.getString("date"));
@@ -351,51 +369,48 @@ public class GTFSReader {
 			
 			// read trips and stop times
 			if(verbose) System.out.println(" ... reading trips ...");
-			query = "SELECT service_id,route_id,trip_id FROM " + tablePrefix + "_trips;";
-			s = connection.createStatement();
-			rs = s.executeQuery(query);
+			query = "SELECT CAST(service_id AS TEXT),CAST(route_id AS TEXT),CAST(trip_id AS TEXT) FROM " + tablePrefix + "_trips;";
+			rows = Utils.readRows(connection, format, query);
 			HashMap<String, GTFSTrip> trips = new HashMap<>();
-			while (rs.next()) {
-				String service_id = rs.getString("service_id");
+			while (rows.next()) {
+				String service_id = rows.getString(1);
 				if(dateI!=0&&!services.contains(service_id)) {
 					continue;
 				}
-				String route_id = rs.getString("route_id");
+				String route_id = rows.getString(2);
 				if(!routes.containsKey(route_id)) {
 					continue;
 				}
-				GTFSTrip trip = new GTFSTrip(rs.getString("trip_id"), routes.get(route_id));
-				trips.put(rs.getString("trip_id"), trip);
+				GTFSTrip trip = new GTFSTrip(rows.getString(3), routes.get(route_id));
+				trips.put(trip.tripID, trip);
 			}
-			rs.close();
-			s.close();
+			rows.close();
 			
 			// build intermediate container 
 			GTFSData ret = new GTFSData(net, entrainmentMap, stops, routes, trips);
 			
 			// read stop times, add to the read GTFS data
 			if(verbose) System.out.println(" ... reading stop times ...");
-			query = "SELECT trip_id,arrival_time,departure_time,stop_id FROM " + tablePrefix + "_stop_times ORDER BY trip_id,stop_sequence;";
-			s = connection.createStatement();
-			rs = s.executeQuery(query);
+			query = "SELECT CAST(trip_id AS TEXT),CAST(arrival_time AS TEXT),CAST(departure_time AS TEXT),CAST(stop_id AS TEXT) FROM " + tablePrefix + "_stop_times ORDER BY trip_id,stop_sequence;";
+			rows = Utils.readRows(connection, format, query);
 			String lastTripID = null;
 			Vector<GTFSStopTime> stopTimes = new Vector<>();
 			int abs = 0;
 			int err = 0;
-			while (rs.next()) {
-				String tripID = rs.getString("trip_id");
+			while (rows.next()) {
+				String tripID = rows.getString(1);
 				if(!trips.containsKey(tripID)) {
 					continue;
 				}
-				String stop_id = rs.getString("stop_id");
+				String stop_id = rows.getString(4);
 				if(lastTripID!=null&&!tripID.equals(lastTripID)) {
 					err += ret.recheckTimesAndInsert(lastTripID, stopTimes, id2stop);
 					abs += stopTimes.size() - 1;
 					stopTimes.clear();
 				}
 				lastTripID = tripID;
-				String arrivalTimeS = rs.getString("arrival_time");
-				String departureTimeS = rs.getString("departure_time");
+				String arrivalTimeS = rows.getString(2);
+				String departureTimeS = rows.getString(3);
 				int arrivalTime, departureTime;
 				if(arrivalTimeS.indexOf(':')>=0) {
 					arrivalTime = parseTime(arrivalTimeS);
@@ -407,8 +422,7 @@ public class GTFSReader {
 				GTFSStopTime stopTime = new GTFSStopTime(tripID, arrivalTime, departureTime, stop_id);
 				stopTimes.add(stopTime);
 			}
-			rs.close();
-			s.close();
+			rows.close();
 			err += ret.recheckTimesAndInsert(lastTripID, stopTimes, id2stop);
 			abs += stopTimes.size() - 1;
 			stopTimes.clear();
@@ -430,7 +444,7 @@ public class GTFSReader {
 			if (tables.next()) {
 				if(verbose) System.out.println(" ... reading transfer times ...");
 				query = "SELECT from_stop_id,to_stop_id,transfer_type,from_trip_id,to_trip_id,min_transfer_time FROM " + tablePrefix + "_transfers;";
-				s = connection.createStatement();
+				s = Utils.createQueryStatement(connection);
 				rs = s.executeQuery(query);
 				while (rs.next()) {
 					String fromStop = rs.getString("from_stop_id");
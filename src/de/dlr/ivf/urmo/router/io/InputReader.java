@@ -21,10 +21,14 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -203,38 +207,38 @@ public class InputReader {
 				}
 				filter = filter + "ST_Within(ST_TRANSFORM(" + geomS + ", " + epsg + "), ST_GeomFromText('" + bounds.toText() + "', " + epsg + "))";
 			}
+			if(format==Utils.Format.FORMAT_POSTGRES && Utils.getDBPartitions()>1) {
+				return loadLayerFromDBPartitioned(layerName, bounds, format, inputParts, filter, varName, idS, geomS, idGiver, epsg);
+			}
 			Connection connection = Utils.getConnection(format, inputParts, layerName);
-			connection.setAutoCommit(true);
 			connection.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
 			((PGConnection) connection).addDataType("geometry", org.postgis.PGgeometry.class);
-			String query = "SELECT " + idS + ",";
-			if(varName!=null && !"".equals(varName)) {
-				query += varName + ",";
+			boolean hasVar = varName!=null && !"".equals(varName);
+			String query = "SELECT CAST(" + idS + " AS BIGINT),";
+			if(hasVar) {
+				query += "CAST(" + varName + " AS DOUBLE PRECISION),";
 			}
 			query += "ST_AsBinary(ST_TRANSFORM(" + geomS + "," + epsg + ")) FROM " + Utils.getTableName(format, inputParts, layerName) + filter + ";";
-			Statement s = connection.createStatement();
-			ResultSet rs = s.executeQuery(query);
+			RowReader rs = Utils.readRows(connection, format, query);
 
 			WKBReader wkbRead = new WKBReader();
 			Layer layer = new Layer(layerName, bounds);
+			int geomColumn = hasVar ? 3 : 2;
 			while (rs.next()) {
-				ResultSetMetaData rsmd = rs.getMetaData();
-				int numColumns = rsmd.getColumnCount();
-				byte[] bytes = rs.getBytes(numColumns);
+				byte[] bytes = rs.getBytes(geomColumn);
 				if(bytes==null) {
-					System.err.println(" Object '" + rs.getLong(idS) + "' has no geometry.");
+					System.err.println(" Object '" + rs.getLong(1) + "' has no geometry.");
 					continue;
 				}
 				Geometry geom = wkbRead.read(bytes);
 				double var = 1;
-				if(varName!=null && !"".equals(varName)) {
-					var = rs.getDouble(numColumns-1);
+				if(hasVar) {
+					var = rs.getDouble(2);
 				}
-				LayerObject o = new LayerObject(idGiver.getNextRunningID(), rs.getLong(idS), var, geom);
+				LayerObject o = new LayerObject(idGiver.getNextRunningID(), rs.getLong(1), var, geom);
 				layer.addObject(o);
 			}
 			rs.close();
-			s.close();
 			connection.close();
 			return layer;
 		} catch (SQLException | ParseException e) {
@@ -243,6 +247,113 @@ public class InputReader {
 	}
 	
 		
+	/**
+	 * @brief Loads a set of objects from the db using several connections in parallel
+	 * 
+	 * The range of the objects' ids is split into as many parts as partitions
+	 * are set. Each part is read using an own connection and its geometries
+	 * are decoded by an own thread. Each part is read sorted by the ids and
+	 * the parts are added in the order of the ids, so that the objects and
+	 * their running ids do not depend on the order the parts are read in.
+	 * 
+	 * @param layerName The layer/type ("from", "to") of the objects to load
+	 * @param bounds The bounds to clip the read thing to
+	 * @param format The format of the source
+	 * @param inputParts The definition of the source
+	 * @param filter The complete WHERE-clause (may be empty)
+	 * @param varName The name of the attached variable
+	 * @param idS The name of the column to read the IDs from
+	 * @param geomS The name of the column to read the geometry from
+	 * @param idGiver A reference to something that supports a running ID
+	 * @param epsg The EPSG of the projection to use
+	 * @return The generated layer with the read objects
+	 * @throws IOException When something fails
+	 */
+	private static Layer loadLayerFromDBPartitioned(String layerName, Geometry bounds, Utils.Format format, String[] inputParts, String filter, String varName,
+			String idS, String geomS, IDGiver idGiver, int epsg) throws IOException {
+		String table = Utils.getTableName(format, inputParts, layerName);
+		String id = "CAST(" + idS + " AS BIGINT)";
+		// determine the range of ids
+		long minID, maxID;
+		try {
+			Connection connection = Utils.getConnection(format, inputParts, layerName);
+			Statement s = connection.createStatement();
+			ResultSet rs = s.executeQuery("SELECT MIN(" + id + "),MAX(" + id + ") FROM " + table + filter + ";");
+			rs.next();
+			minID = rs.getLong(1);
+			boolean empty = rs.wasNull();
+			maxID = rs.getLong(2);
+			rs.close();
+			s.close();
+			connection.close();
+			if(empty) {
+				return new Layer(layerName, bounds);
+			}
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+		// build the queries of the partitions
+		boolean hasVar = varName!=null && !"".equals(varName);
+		String query = "SELECT " + id + ",";
+		if(hasVar) {
+			query += "CAST(" + varName + " AS DOUBLE PRECISION),";
+		}
+		query += "ST_AsBinary(ST_TRANSFORM(" + geomS + "," + epsg + ")) FROM " + table + ("".equals(filter) ? " WHERE " : filter + " AND ");
+		int numPartitions = (int) Math.max(1, Math.min(Utils.getDBPartitions(), maxID - minID + 1));
+		double step = ((double) maxID - (double) minID + 1.) / (double) numPartitions;
+		Vector<String> queries = new Vector<>();
+		long begin = minID;
+		for(int i=0; i<numPartitions; ++i) {
+			long end = i==numPartitions-1 ? maxID : Math.max(begin, minID + (long) (step * (i+1)) - 1);
+			queries.add(query + id + ">=" + begin + " AND " + id + "<=" + end + " ORDER BY " + id + ";");
+			begin = end + 1;
+		}
+		// read the partitions in parallel
+		int geomColumn = hasVar ? 3 : 2;
+		ExecutorService executor = Executors.newFixedThreadPool(numPartitions);
+		Vector<LayerObjectRecord> records = new Vector<>();
+		try {
+			Vector<Future<Vector<LayerObjectRecord>>> results = new Vector<>();
+			for(String partitionQuery : queries) {
+				Callable<Vector<LayerObjectRecord>> task = () -> {
+					Connection connection = Utils.getConnection(format, inputParts, layerName);
+					RowReader rs = Utils.readRows(connection, format, partitionQuery);
+					WKBReader wkbRead = new WKBReader();
+					Vector<LayerObjectRecord> ret = new Vector<>();
+					try {
+						while (rs.next()) {
+							byte[] bytes = rs.getBytes(geomColumn);
+							if(bytes==null) {
+								System.err.println(" Object '" + rs.getLong(1) + "' has no geometry.");
+								continue;
+							}
+							ret.add(new LayerObjectRecord(rs.getLong(1), hasVar ? rs.getDouble(2) : 1, wkbRead.read(bytes)));
+						}
+					} finally {
+						rs.close();
+						connection.close();
+					}
+					return ret;
+				};
+				results.add(executor.submit(task));
+			}
+			for(Future<Vector<LayerObjectRecord>> result : results) {
+				records.addAll(result.get());
+			}
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return buildLayer(layerName, bounds, records, idGiver);
+	}
+	
+		
 	/**
 	 * @brief Loads a set of objects from a CVS-file
 	 * 
@@ -255,49 +366,29 @@ public class InputReader {
 	 * @throws IOException When something fails
 	 */
 	private static Layer loadLayerFromCSVFile(String layerName, Geometry bounds, String fileName, IDGiver idGiver, boolean dismissWeight) throws IOException { 
-		Layer layer = new Layer(layerName, bounds);
 		GeometryFactory gf = new GeometryFactory(new PrecisionModel());
-		BufferedReader br = new BufferedReader(new FileReader(fileName));
-		String line = null;
-		boolean dismissWeightReported = false;
-		do {
-			line = br.readLine();
-			if(line!=null && line.length()!=0 && line.charAt(0)!='#') {
-				String[] vals = line.split(";");
-				Vector<Coordinate> geom = new Vector<>();
-				int i = 1;
-				for(; i<vals.length-1; i+=2) {
-					geom.add(new Coordinate(Double.parseDouble(vals[i]), Double.parseDouble(vals[i+1])));
-				}
-				if(geom.size()==0) {
-					throw new IOException("Missing geometry for object '" + vals[0] + "' in file '" + fileName + "'.");
-				}
-				Geometry geom2 = null;
-				if(geom.size()==1) {
-					geom2 = gf.createPoint(geom.get(0));
-				} else {
-					if(!geom.get(0).equals(geom.get(geom.size()-1))) {
-						geom.add(geom.get(0));
-					}
-					Coordinate[] arr = new Coordinate[geom.size()];
-					geom2 = gf.createPolygon(geom.toArray(arr));
-				}
-				double var = 1;
-				if(i<vals.length) {
-					if(!dismissWeight) {
-						var = Double.parseDouble(vals[i]);
-					} else {
-						if(!dismissWeightReported) {
-							dismissWeightReported = true;
-							System.out.println("Warning: the weight option is not used as no aggregation takes place.");
-						}
-					}
+		Vector<LayerObjectRecord> records = ChunkedCSVReader.read(fileName, () -> line -> {
+			Vector<Coordinate> geom = new Vector<>();
+			int i = 1;
+			for(; i<line.size()-1; i+=2) {
+				geom.add(new Coordinate(line.getDouble(i), line.getDouble(i+1)));
+			}
+			if(geom.size()==0) {
+				throw new IOException("Missing geometry for object '" + line.getString(0) + "' in file '" + fileName + "'.");
+			}
+			Geometry geom2 = null;
+			if(geom.size()==1) {
+				geom2 = gf.createPoint(geom.get(0));
+			} else {
+				if(!geom.get(0).equals(geom.get(geom.size()-1))) {
+					geom.add(geom.get(0));
 				}
-				layer.addObject(new LayerObject(idGiver.getNextRunningID(), Long.parseLong(vals[0]), var, geom2));
+				Coordinate[] arr = new Coordinate[geom.size()];
+				geom2 = gf.createPolygon(geom.toArray(arr));
 			}
-	    } while(line!=null);
-		br.close();
-		return layer;
+			return new LayerObjectRecord(line, geom2, i<line.size() ? i : -1, dismissWeight);
+		});
+		return buildLayer(layerName, bounds, records, idGiver);
 	}
 	
 		
@@ -313,40 +404,92 @@ public class InputReader {
 	 * @throws IOException When something fails
 	 */
 	private static Layer loadLayerFromWKTFile(String layerName, Geometry bounds, String fileName, IDGiver idGiver, boolean dismissWeight) throws IOException { 
-		try {
-			Layer layer = new Layer(layerName, bounds);
-			GeometryFactory gf = new GeometryFactory(new PrecisionModel());
-			BufferedReader br = new BufferedReader(new FileReader(fileName));
+		Vector<LayerObjectRecord> records = ChunkedCSVReader.read(fileName, () -> {
 			WKTReader wktReader = new WKTReader();
-			String line = null;
-			boolean dismissWeightReported = false;
-			do {
-				line = br.readLine();
-				if(line!=null && line.length()!=0 && line.charAt(0)!='#') {
-					String[] vals = line.split(";");
-					Geometry geom = wktReader.read(vals[1]);
-					double var = 1;
-					if(vals.length==3) {
-						if(!dismissWeight) {
-							var = Double.parseDouble(vals[2]);
-						} else {
-							if(!dismissWeightReported) {
-								dismissWeightReported = true;
-								System.out.println("Warning: the weight option is not used as no aggregation takes place.");
-							}
-						}
-					}
-					layer.addObject(new LayerObject(idGiver.getNextRunningID(), Long.parseLong(vals[0]), var, geom));
+			return line -> {
+				try {
+					return new LayerObjectRecord(line, wktReader.read(line.getString(1)), line.size()==3 ? 2 : -1, dismissWeight);
+				} catch (ParseException e) {
+					throw new IOException(e);
 				}
-		    } while(line!=null);
-			br.close();
-			return layer;
-		} catch (ParseException e) {
-			throw new IOException(e);
+			};
+		});
+		return buildLayer(layerName, bounds, records, idGiver);
+	}
+	
+	
+	/**
+	 * @brief Builds a layer from the objects read from a file or a partitioned database
+	 * 
+	 * The objects are added in the order they are given, so that the ids are
+	 * the same as when reading the file line by line.
+	 * @param layerName The name of the layer to generate
+	 * @param bounds The bounds to clip the read thing to
+	 * @param records The read objects
+	 * @param idGiver A reference to something that supports a running ID
+	 * @return The generated layer with the read objects
+	 */
+	private static Layer buildLayer(String layerName, Geometry bounds, Vector<LayerObjectRecord> records, IDGiver idGiver) {
+		Layer layer = new Layer(layerName, bounds);
+		boolean dismissWeightReported = false;
+		for(LayerObjectRecord r : records) {
+			if(r.dismissedWeight && !dismissWeightReported) {
+				dismissWeightReported = true;
+				System.out.println("Warning: the weight option is not used as no aggregation takes place.");
+			}
+			layer.addObject(new LayerObject(idGiver.getNextRunningID(), r.outerID, r.var, r.geom));
 		}
+		return layer;
 	}
 	
+	
+	/**
+	 * @class LayerObjectRecord
+	 * @brief An object as read from a CSV- or WKT-file or from a database partition
+	 */
+	private static class LayerObjectRecord {
+		/// @brief The id of the object
+		long outerID;
+		/// @brief The attached variable
+		double var = 1;
+		/// @brief The geometry of the object
+		Geometry geom;
+		/// @brief Whether a given weight was dismissed
+		boolean dismissedWeight = false;
 		
+		
+		/** @brief Constructor
+		 * @param line The read line
+		 * @param _geom The geometry of the object
+		 * @param varIndex The index of the field holding the variable, -1 if not given
+		 * @param dismissWeight Whether the weight shall be discarded
+		 */
+		LayerObjectRecord(CSVLine line, Geometry _geom, int varIndex, boolean dismissWeight) {
+			outerID = line.getLong(0);
+			geom = _geom;
+			if(varIndex>=0) {
+				if(!dismissWeight) {
+					var = line.getDouble(varIndex);
+				} else {
+					dismissedWeight = true;
+				}
+			}
+		}
+		
+		
+		/** @brief Constructor
+		 * @param _outerID The id of the object
+		 * @param _var The attached variable
+		 * @param _geom The geometry of the object
+		 */
+		LayerObjectRecord(long _outerID, double _var, Geometry _geom) {
+			outerID = _outerID;
+			var = _var;
+			geom = _geom;
+		}
+	}
+	
+	
 	/**
 	 * @brief Loads a set of objects from a shapefile
 	 * 
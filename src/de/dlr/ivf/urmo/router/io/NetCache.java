@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Vector;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import de.dlr.ivf.urmo.router.shapes.DBEdge;
+import de.dlr.ivf.urmo.router.shapes.DBNet;
+import de.dlr.ivf.urmo.router.shapes.DBNode;
+import de.dlr.ivf.urmo.router.shapes.IDGiver;
+
+/**
+ * @class NetCache
+ * @brief Writes and reads a binary snapshot of a prepared road network
+ *
+ * The snapshot contains the network after it has been loaded and pruned,
+ * including the added opposite directions and the edges' geometries. It
+ * starts with a magic number, a format version and a key that describes
+ * the network's definition. A snapshot is only used if all three match;
+ * a truncated or broken snapshot is ignored as well, so that the network
+ * is loaded and the snapshot is rebuilt.
+ *
+ * The snapshot is written into a temporary file that replaces the
+ * snapshot file when complete, so that concurrent runs never read a
+ * partially written snapshot.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class NetCache {
+	/// @brief The magic number a network snapshot starts with ("UNET")
+	private static final int MAGIC = 0x554e4554;
+	/// @brief The version of the snapshot format
+	private static final int VERSION = 1;
+
+
+	/** @brief Builds the key that describes the network's definition
+	 *
+	 * The key is stored in the snapshot, so it does not contain the
+	 * database credentials (see describeSource).
+	 * @param def The network's definition
+	 * @param vmaxAttr The attribute (column) the maximum velocity is read from
+	 * @param epsg The projection
+	 * @param modes The modes the network is loaded for
+	 * @param subnets Whether unconnected network parts are kept
+	 * @return The key describing the network
+	 * @throws IOException When the definition can not be parsed
+	 */
+	public static String buildKey(String def, String vmaxAttr, int epsg, long modes, boolean subnets) throws IOException {
+		StringBuilder key = new StringBuilder(describeSource(def, "net"));
+		key.append(';').append(vmaxAttr).append(';').append(epsg).append(';').append(modes).append(';').append(subnets);
+		return key.toString();
+	}
+
+
+	/** @brief Describes an input definition for a snapshot's key
+	 *
+	 * The user name and the password of a Postgres definition are left out.
+	 * If the input is read from a file, including SQLite databases, the
+	 * file's size and modification time are added, so that changed inputs
+	 * invalidate the snapshot.
+	 * @param def The input's definition
+	 * @param name The name of the option the input is given by
+	 * @return The description of the input
+	 * @throws IOException When the definition can not be parsed
+	 */
+	static String describeSource(String def, String name) throws IOException {
+		Utils.Format format = Utils.getFormat(def);
+		String[] parts = Utils.getParts(format, def, name);
+		if(format==Utils.Format.FORMAT_POSTGRES) {
+			return parts[0] + ";" + parts[1];
+		}
+		StringBuilder ret = new StringBuilder(String.join(";", parts));
+		File file = new File(format==Utils.Format.FORMAT_SQLITE ? parts[0].substring("jdbc:sqlite:".length()) : parts[0]);
+		if(file.exists()) {
+			ret.append(';').append(file.length()).append(';').append(file.lastModified());
+		}
+		return ret.toString();
+	}
+
+
+	/** @brief Writes the given network into a snapshot file
+	 *
+	 * The edges are written sorted by their numerical ids so that the order
+	 * of the edges at the nodes is the same as when loading the network.
+	 * @param net The network to write
+	 * @param fileName The name of the file to write
+	 * @param key The key describing the network's definition
+	 * @throws IOException When something fails
+	 */
+	public static void write(DBNet net, String fileName, String key) throws IOException {
+		Vector<DBEdge> edges = new Vector<>(net.getEdges());
+		edges.sort((e1, e2) -> Long.compare(e1.numID, e2.numID));
+		HashMap<DBEdge, Integer> edge2index = new HashMap<>();
+		for(DBEdge e : edges) {
+			edge2index.put(e, edge2index.size());
+		}
+		File tmp = createTempFile(fileName);
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1<<16))) {
+				writeNet(out, net, edges, edge2index, key);
+			}
+			replaceFile(tmp, fileName);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+
+	/** @brief Writes the snapshot's contents
+	 * @param out The stream to write to
+	 * @param net The network to write
+	 * @param edges The network's edges, sorted by their numerical ids
+	 * @param edge2index Map of edges to their index within the written edges
+	 * @param key The key describing the network's definition
+	 * @throws IOException When something fails
+	 */
+	private static void writeNet(DataOutputStream out, DBNet net, Vector<DBEdge> edges, HashMap<DBEdge, Integer> edge2index, String key) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		writeString(out, key);
+		// the running id is read once so that following ids are the same when using the snapshot
+		out.writeLong(net.getNextID());
+		out.writeInt(net.getSRID());
+		PrecisionModel pm = net.getPrecisionModel();
+		if(pm==null || pm.getType()==PrecisionModel.FLOATING) {
+			out.writeInt(0);
+			out.writeDouble(0);
+		} else if(pm.getType()==PrecisionModel.FLOATING_SINGLE) {
+			out.writeInt(1);
+			out.writeDouble(0);
+		} else {
+			out.writeInt(2);
+			out.writeDouble(pm.getScale());
+		}
+		// nodes
+		out.writeInt(net.getNodes().size());
+		for(DBNode n : net.getNodes().values()) {
+			out.writeLong(n.id);
+			out.writeDouble(n.pos.x);
+			out.writeDouble(n.pos.y);
+		}
+		// edges
+		out.writeInt(edges.size());
+		for(DBEdge e : edges) {
+			out.writeLong(e.numID);
+			writeString(out, e.id);
+			out.writeLong(e.getFromNode().id);
+			out.writeLong(e.getToNode().id);
+			out.writeLong(e.modes);
+			out.writeDouble(e.vmax);
+			out.writeDouble(e.getLength());
+			Integer opposite = e.opposite!=null ? edge2index.get(e.opposite) : null;
+			out.writeInt(opposite!=null ? opposite : -1);
+			Coordinate[] cs = e.getGeometry().getCoordinates();
+			out.writeInt(cs.length);
+			for(Coordinate c : cs) {
+				out.writeDouble(c.x);
+				out.writeDouble(c.y);
+			}
+		}
+	}
+
+
+	/** @brief Reads a network from a snapshot file
+	 * @param idGiver Instance supporting running ids
+	 * @param fileName The name of the file to read
+	 * @param key The key describing the network's definition
+	 * @return The read network, null if the file does not exist, does not match the key or version or is broken
+	 * @throws IOException When something fails
+	 */
+	public static DBNet read(IDGiver idGiver, String fileName, String key) throws IOException {
+		File file = new File(fileName);
+		if(!file.exists()) {
+			return null;
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1<<16))) {
+			if(in.readInt()!=MAGIC || in.readInt()!=VERSION || !key.equals(readString(in))) {
+				return null;
+			}
+			// the ids are reported to the id giver only if the snapshot is complete
+			DeferredIDGiver ids = new DeferredIDGiver(idGiver);
+			ids.hadExternID(in.readLong()-1);
+			int srid = in.readInt();
+			int pmType = in.readInt();
+			double scale = in.readDouble();
+			PrecisionModel pm = pmType==2 ? new PrecisionModel(scale) : new PrecisionModel(pmType==1 ? PrecisionModel.FLOATING_SINGLE : PrecisionModel.FLOATING);
+			GeometryFactory gf = new GeometryFactory(pm, srid);
+			DBNet net = new DBNet(ids);
+			// nodes
+			int numNodes = in.readInt();
+			for(int i=0; i<numNodes; ++i) {
+				long id = in.readLong();
+				double x = in.readDouble();
+				double y = in.readDouble();
+				net.getNode(id, new Coordinate(x, y));
+			}
+			// edges
+			int numEdges = in.readInt();
+			DBEdge[] edges = new DBEdge[numEdges];
+			int[] opposites = new int[numEdges];
+			for(int i=0; i<numEdges; ++i) {
+				long numID = in.readLong();
+				String id = readString(in);
+				DBNode from = net.nodes.get(in.readLong());
+				DBNode to = net.nodes.get(in.readLong());
+				long modes = in.readLong();
+				double vmax = in.readDouble();
+				double length = in.readDouble();
+				opposites[i] = in.readInt();
+				Coordinate[] cs = new Coordinate[in.readInt()];
+				for(int j=0; j<cs.length; ++j) {
+					double x = in.readDouble();
+					double y = in.readDouble();
+					cs[j] = new Coordinate(x, y);
+				}
+				if(from==null || to==null) {
+					System.err.println("Warning: the network snapshot '" + fileName + "' is broken (unknown node at edge '" + id + "'); it is rebuilt.");
+					return null;
+				}
+				ids.hadExternID(numID);
+				net.addEdge(numID, id, from, to, modes, vmax, gf.createLineString(cs), length);
+				edges[i] = net.getEdgeByName(id);
+			}
+			for(int i=0; i<numEdges; ++i) {
+				if(opposites[i]>=0) {
+					edges[i].opposite = edges[opposites[i]];
+				}
+			}
+			ids.commit();
+			return net;
+		} catch(EOFException e) {
+			System.err.println("Warning: the network snapshot '" + fileName + "' is truncated; it is rebuilt.");
+			return null;
+		}
+	}
+
+
+	/** @brief Writes a string as its length followed by its UTF-8 bytes
+	 *
+	 * A null string is written as the length -1.
+	 * @param out The stream to write to
+	 * @param s The string to write
+	 * @throws IOException When something fails
+	 */
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		if(s==null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+
+	/** @brief Reads a string written by writeString
+	 * @param in The stream to read from
+	 * @return The read string (may be null)
+	 * @throws IOException When something fails
+	 */
+	static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length<0) {
+			return null;
+		}
+		byte[] b = new byte[length];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+
+	/**
+	 * @class DeferredIDGiver
+	 * @brief Collects the ids used while reading a snapshot and reports them when the snapshot was read completely
+	 *
+	 * This keeps the running ids of a run that rebuilds a broken snapshot the
+	 * same as the ones of a run without a snapshot.
+	 */
+	private static class DeferredIDGiver implements IDGiver {
+		/// @brief The id giver to report the ids to
+		private IDGiver parent;
+		/// @brief The highest id seen so far
+		private long maxID = -1;
+		/// @brief Whether the ids were reported
+		private boolean committed = false;
+
+
+		/** @brief Constructor
+		 * @param _parent The id giver to report the ids to
+		 */
+		DeferredIDGiver(IDGiver _parent) {
+			parent = _parent;
+		}
+
+
+		/** @brief Returns the next running id of the parent
+		 * @return Next free id
+		 */
+		@Override
+		public long getNextRunningID() {
+			commit();
+			return parent.getNextRunningID();
+		}
+
+
+		/** @brief Informs the id giver about a new id
+		 * @param id An extern id to regard
+		 */
+		@Override
+		public void hadExternID(long id) {
+			if(committed) {
+				parent.hadExternID(id);
+			} else {
+				maxID = Math.max(maxID, id);
+			}
+		}
+
+
+		/** @brief Reports the collected ids to the parent
+		 */
+		void commit() {
+			if(!committed && maxID>=0) {
+				parent.hadExternID(maxID);
+			}
+			committed = true;
+		}
+
+	}
+
+
+	/** @brief Creates a temporary file next to the given file
+	 * @param fileName The name of the file the temporary file shall replace
+	 * @return The temporary file
+	 * @throws IOException When something fails
+	 */
+	static File createTempFile(String fileName) throws IOException {
+		File file = new File(fileName).getAbsoluteFile();
+		return File.createTempFile(file.getName() + ".", ".tmp", file.getParentFile());
+	}
+
+
+	/** @brief Replaces the given file by the written temporary file
+	 *
+	 * The file is moved atomically if the file system supports it.
+	 * @param tmp The written temporary file
+	 * @param fileName The name of the file to replace
+	 * @throws IOException When something fails
+	 */
+	static void replaceFile(File tmp, String fileName) throws IOException {
+		try {
+			Files.move(tmp.toPath(), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
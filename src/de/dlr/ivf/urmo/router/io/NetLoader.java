@@ -15,16 +15,12 @@
  */
 package de.dlr.ivf.urmo.router.io;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Vector;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -124,40 +120,35 @@ public class NetLoader {
 	private static DBNet loadNetFromDB(IDGiver idGiver, Utils.Format format, String[] inputParts, String vmax, int epsg, long uModes) throws IOException {
 		try {
 			Connection connection = Utils.getConnection(format, inputParts, "net");
-			connection.setAutoCommit(true);
 			connection.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
 			((PGConnection) connection).addDataType("geometry", org.postgis.PGgeometry.class);
-			String query = "SELECT oid,nodefrom,nodeto,mode_walk,mode_bike,mode_mit,"+vmax+",length,ST_AsBinary(ST_TRANSFORM(the_geom," + epsg + ")) FROM " + Utils.getTableName(format, inputParts, "net") + ";";
-			Statement s = connection.createStatement();
-			ResultSet rs = s.executeQuery(query);
+			String query = "SELECT CAST(oid AS TEXT),CAST(nodefrom AS BIGINT),CAST(nodeto AS BIGINT),mode_walk,mode_bike,mode_mit,CAST("+vmax+" AS DOUBLE PRECISION),CAST(length AS DOUBLE PRECISION),ST_AsBinary(ST_TRANSFORM(the_geom," + epsg + ")) FROM " + Utils.getTableName(format, inputParts, "net") + ";";
+			RowReader rs = Utils.readRows(connection, format, query);
 			WKBReader wkbRead = new WKBReader();
 			DBNet net = new DBNet(idGiver);
 			boolean ok = true;
 			while (rs.next()) {
 				long modes = 0;
-				if(rs.getBoolean("mode_walk")) modes = modes | Modes.getMode("foot").id;
-				if(rs.getBoolean("mode_bike")) modes = modes | Modes.getMode("bicycle").id;
-				if(rs.getBoolean("mode_mit")) modes = modes | Modes.getMode("passenger").id;
+				if(rs.getBoolean(4)) modes = modes | Modes.getMode("foot").id;
+				if(rs.getBoolean(5)) modes = modes | Modes.getMode("bicycle").id;
+				if(rs.getBoolean(6)) modes = modes | Modes.getMode("passenger").id;
 				modes = (modes&Modes.customAllowedAt)!=0 ? modes | Modes.getMode("custom").id : modes;
 				//if(rs.getBoolean("mode_walk") || rs.getBoolean("mode_bike")) modes = modes | Modes.getMode("e-scooter").id;
 				if(modes==0 && ((modes&uModes)==0)) {
 					continue;
 				}
-				ResultSetMetaData rsmd = rs.getMetaData();
-				//double length = rs.getDouble(rsmd.getColumnCount());
-				Geometry geom = wkbRead.read(rs.getBytes(rsmd.getColumnCount()));
+				Geometry geom = wkbRead.read(rs.getBytes(9));
 				// !!! hack - for some reasons, edge geometries are stored as MultiLineStrings in the database 
 				if(geom.getNumGeometries()!=1) {
-					System.err.println("Edge '" + rs.getString("oid") + "' has a multi geometries...");
+					System.err.println("Edge '" + rs.getString(1) + "' has a multi geometries...");
 				}
 				LineString geom2 = (LineString) geom.getGeometryN(0);
 				Coordinate[] cs = geom2.getCoordinates();
-				DBNode fromNode = net.getNode(rs.getLong("nodefrom"), cs[0]);
-				DBNode toNode = net.getNode(rs.getLong("nodeto"), cs[cs.length - 1]);
-				ok &= net.addEdge(net.getNextID(), rs.getString("oid"), fromNode, toNode, modes, rs.getDouble(vmax) / 3.6, geom2, rs.getDouble("length"));
+				DBNode fromNode = net.getNode(rs.getLong(2), cs[0]);
+				DBNode toNode = net.getNode(rs.getLong(3), cs[cs.length - 1]);
+				ok &= net.addEdge(net.getNextID(), rs.getString(1), fromNode, toNode, modes, rs.getDouble(7) / 3.6, geom2, rs.getDouble(8));
 			}
 			rs.close();
-			s.close();
 			connection.close();
 			return net;
 		} catch (SQLException | ParseException e) {
@@ -176,37 +167,23 @@ public class NetLoader {
 	private static DBNet loadNetFromCSVFile(IDGiver idGiver, String fileName, long uModes) throws IOException {
 		DBNet net = new DBNet(idGiver);
 		GeometryFactory gf = new GeometryFactory(new PrecisionModel());
-		BufferedReader br = new BufferedReader(new FileReader(fileName));
-		String line = null;
-		boolean ok = true;
-		do {
-			line = br.readLine();
-			if(line!=null && line.length()!=0 && line.charAt(0)!='#') {
-				String[] vals = line.split(";");
-				long modes = 0;
-				if("true".equals(vals[3].toLowerCase()) || "1".equals(vals[3])) modes = modes | Modes.getMode("foot").id;
-				if("true".equals(vals[4].toLowerCase()) || "1".equals(vals[4])) modes = modes | Modes.getMode("bicycle").id;
-				if("true".equals(vals[5].toLowerCase()) || "1".equals(vals[5])) modes = modes | Modes.getMode("passenger").id;
-				modes = (modes&Modes.customAllowedAt)!=0 ? modes | Modes.getMode("custom").id : modes;
-				if(modes==0 && ((modes&uModes)==0)) {
-					continue;
-				}
-				int num = vals.length - 8;
-				if((num % 2)!=0) {
-					throw new IOException("odd number for coordinates");
-				}
-				Coordinate[] coords = new Coordinate[(int) num/2];
-				int j = 0;
-				for(int i=8; i<vals.length; i+=2, ++j ) {
-					coords[j] = new Coordinate(Double.parseDouble(vals[i]), Double.parseDouble(vals[i+1]));
-				}
-				DBNode fromNode = net.getNode(Long.parseLong(vals[1]), coords[0]);
-				DBNode toNode = net.getNode(Long.parseLong(vals[2]), coords[coords.length - 1]);
-				LineString ls = gf.createLineString(coords);
-				ok &= net.addEdge(net.getNextID(), vals[0], fromNode, toNode, modes, Double.parseDouble(vals[6]) / 3.6, ls, Double.parseDouble(vals[7]));
+		Vector<EdgeRecord> records = ChunkedCSVReader.read(fileName, () -> line -> {
+			long modes = parseModes(line);
+			if(modes==0 && ((modes&uModes)==0)) {
+				return null;
+			}
+			int num = line.size() - 8;
+			if((num % 2)!=0) {
+				throw new IOException("odd number for coordinates");
+			}
+			Coordinate[] coords = new Coordinate[(int) num/2];
+			int j = 0;
+			for(int i=8; i<line.size(); i+=2, ++j ) {
+				coords[j] = new Coordinate(line.getDouble(i), line.getDouble(i+1));
 			}
-	    } while(line!=null);
-		br.close();
+			return new EdgeRecord(line, modes, gf.createLineString(coords));
+		});
+		addEdges(net, records);
 		return net;
 	}
 	
@@ -219,35 +196,87 @@ public class NetLoader {
 	 * @throws IOException When something fails 
 	 */
 	private static DBNet loadNetFromWKTFile(IDGiver idGiver, String fileName, long uModes) throws IOException {
-		try {
-			DBNet net = new DBNet(idGiver);
+		DBNet net = new DBNet(idGiver);
+		Vector<EdgeRecord> records = ChunkedCSVReader.read(fileName, () -> {
 			WKTReader wktReader = new WKTReader();
-			BufferedReader br = new BufferedReader(new FileReader(fileName));
-			String line = null;
-			boolean ok = true;
-			do {
-				line = br.readLine();
-				if(line!=null && line.length()!=0 && line.charAt(0)!='#') {
-					String[] vals = line.split(";");
-					long modes = 0;
-					if("true".equals(vals[3].toLowerCase()) || "1".equals(vals[3])) modes = modes | Modes.getMode("foot").id;
-					if("true".equals(vals[4].toLowerCase()) || "1".equals(vals[4])) modes = modes | Modes.getMode("bicycle").id;
-					if("true".equals(vals[5].toLowerCase()) || "1".equals(vals[5])) modes = modes | Modes.getMode("passenger").id;
-					modes = (modes&Modes.customAllowedAt)!=0 ? modes | Modes.getMode("custom").id : modes;
-					if(modes==0 && ((modes&uModes)==0)) {
-						continue;
-					}
-					LineString geom = (LineString) wktReader.read(vals[8]);
-					Coordinate cs[] = geom.getCoordinates();
-					DBNode fromNode = net.getNode(Long.parseLong(vals[1]), cs[0]);
-					DBNode toNode = net.getNode(Long.parseLong(vals[2]), cs[cs.length - 1]);
-					ok &= net.addEdge(net.getNextID(), vals[0], fromNode, toNode, modes, Double.parseDouble(vals[6]) / 3.6, geom, Double.parseDouble(vals[7]));
+			return line -> {
+				long modes = parseModes(line);
+				if(modes==0 && ((modes&uModes)==0)) {
+					return null;
 				}
-		    } while(line!=null);
-			br.close();
-			return net;
-		} catch (ParseException e) {
-			throw new IOException(e);
+				try {
+					return new EdgeRecord(line, modes, (LineString) wktReader.read(line.getString(8)));
+				} catch (ParseException e) {
+					throw new IOException(e);
+				}
+			};
+		});
+		addEdges(net, records);
+		return net;
+	}
+	
+	
+	/** @brief Parses the allowed modes of an edge read from a CSV or WKT file
+	 * @param line The read line
+	 * @return The allowed modes
+	 */
+	private static long parseModes(CSVLine line) {
+		long modes = 0;
+		if(line.isTrue(3)) modes = modes | Modes.getMode("foot").id;
+		if(line.isTrue(4)) modes = modes | Modes.getMode("bicycle").id;
+		if(line.isTrue(5)) modes = modes | Modes.getMode("passenger").id;
+		modes = (modes&Modes.customAllowedAt)!=0 ? modes | Modes.getMode("custom").id : modes;
+		return modes;
+	}
+	
+	
+	/** @brief Adds the edges read from a CSV or WKT file to the network
+	 *
+	 * The edges are added in the order of the file, so that the ids are the
+	 * same as when reading the file line by line.
+	 * @param net The network to add the edges to
+	 * @param records The read edges
+	 */
+	private static void addEdges(DBNet net, Vector<EdgeRecord> records) {
+		for(EdgeRecord r : records) {
+			Coordinate[] cs = r.geom.getCoordinates();
+			DBNode fromNode = net.getNode(r.fromID, cs[0]);
+			DBNode toNode = net.getNode(r.toID, cs[cs.length - 1]);
+			net.addEdge(net.getNextID(), r.id, fromNode, toNode, r.modes, r.vmax, r.geom, r.length);
+		}
+	}
+	
+	
+	/**
+	 * @class EdgeRecord
+	 * @brief An edge as read from a CSV or WKT file
+	 */
+	private static class EdgeRecord {
+		/// @brief The id of the edge
+		String id;
+		/// @brief The ids of the starting and the ending node
+		long fromID, toID;
+		/// @brief The allowed modes
+		long modes;
+		/// @brief The maximum velocity (in m/s) and the length of the edge
+		double vmax, length;
+		/// @brief The geometry of the edge
+		LineString geom;
+		
+		
+		/** @brief Constructor
+		 * @param line The read line
+		 * @param _modes The allowed modes
+		 * @param _geom The geometry of the edge
+		 */
+		EdgeRecord(CSVLine line, long _modes, LineString _geom) {
+			id = line.getString(0);
+			fromID = line.getLong(1);
+			toID = line.getLong(2);
+			modes = _modes;
+			vmax = line.getDouble(6) / 3.6;
+			length = line.getDouble(7);
+			geom = _geom;
 		}
 	}
 	
@@ -380,27 +409,24 @@ public class NetLoader {
 			int numFalse = 0;
 			int numOk = 0;
 			Connection connection = Utils.getConnection(format, inputParts, "travel-times");
-			connection.setAutoCommit(true);
 			connection.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
 			((PGConnection) connection).addDataType("geometry", org.postgis.PGgeometry.class);
-			String query = "SELECT ibegin,iend,eid,speed FROM " + Utils.getTableName(format, inputParts, "travel-times") + ";";
-			Statement s = connection.createStatement();
-			ResultSet rs = s.executeQuery(query);
+			String query = "SELECT CAST(ibegin AS DOUBLE PRECISION),CAST(iend AS DOUBLE PRECISION),CAST(eid AS TEXT),CAST(speed AS DOUBLE PRECISION) FROM " + Utils.getTableName(format, inputParts, "travel-times") + ";";
+			RowReader rs = Utils.readRows(connection, format, query);
 			while (rs.next()) {
-				String eid = rs.getString("eid");
+				String eid = rs.getString(3);
 				DBEdge edge = net.getEdgeByName(eid);
 				if(edge==null) {
 					++numFalse;
 					continue;
 				}
 				++numOk;
-				float ibegin = rs.getFloat("ibegin");
-				float iending = rs.getFloat("iend");
-				float speed = rs.getFloat("speed");
+				float ibegin = (float) rs.getDouble(1);
+				float iending = (float) rs.getDouble(2);
+				float speed = (float) rs.getDouble(4);
 				edge.addSpeedReduction(ibegin, iending, speed);
 			}
 			rs.close();
-			s.close();
 			connection.close();
 			if(verbose) {
 				System.out.println(" " + numFalse + " of " + (numOk+numFalse) + " informations could not been loaded.");
@@ -422,28 +448,45 @@ public class NetLoader {
 	private static int loadTravelTimesFromCSVFile(DBNet net, String fileName, boolean verbose) throws IOException {
 		int numFalse = 0;
 		int numOk = 0;
-		BufferedReader br = new BufferedReader(new FileReader(fileName));
-		String line = null;
-		do {
-			line = br.readLine();
-			if(line!=null && line.length()!=0 && line.charAt(0)!='#') {
-				String[] vals = line.split(";");
-				DBEdge edge = net.getEdgeByName(vals[0]);
-				if(edge==null) {
-					++numFalse;
-					continue;
-				}
-				++numOk;
-				edge.addSpeedReduction(Float.parseFloat(vals[1]), Float.parseFloat(vals[2]), Float.parseFloat(vals[3]));
+		Vector<TravelTimeRecord> records = ChunkedCSVReader.read(fileName, () -> line -> new TravelTimeRecord(net, line));
+		for(TravelTimeRecord r : records) {
+			if(r.edge==null) {
+				++numFalse;
+				continue;
 			}
-	    } while(line!=null);
-		br.close();
+			++numOk;
+			r.edge.addSpeedReduction(r.begin, r.end, r.speed);
+		}
 		if(verbose) {
 			System.out.println(" " + numFalse + " of " + (numOk+numFalse) + " informations could not been loaded.");
 		}
 		return numFalse;
 	}
 
-	
+
+	/**
+	 * @class TravelTimeRecord
+	 * @brief A speed information as read from a CSV file
+	 */
+	private static class TravelTimeRecord {
+		/// @brief The edge the information is valid for (null if not known)
+		DBEdge edge;
+		/// @brief The begin and the end of the interval and the speed
+		float begin, end, speed;
+		
+		
+		/** @brief Constructor
+		 * @param net The network to look up the edge in
+		 * @param line The read line
+		 */
+		TravelTimeRecord(DBNet net, CSVLine line) {
+			edge = net.getEdgeByName(line.getString(0));
+			if(edge!=null) {
+				begin = line.getFloat(1);
+				end = line.getFloat(2);
+				speed = line.getFloat(3);
+			}
+		}
+	}
 	
 }
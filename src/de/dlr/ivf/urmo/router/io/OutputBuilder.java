@@ -29,7 +29,9 @@ import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.output.AbstractResultsWriter;
 import de.dlr.ivf.urmo.router.output.AbstractSingleResult;
 import de.dlr.ivf.urmo.router.output.Aggregator;
+import de.dlr.ivf.urmo.router.output.DirectTreeWriter;
 import de.dlr.ivf.urmo.router.output.DirectWriter;
+import de.dlr.ivf.urmo.router.output.EdgeGeometryWriter;
 import de.dlr.ivf.urmo.router.output.EdgeMappingWriter;
 import de.dlr.ivf.urmo.router.output.MeasurementGenerator;
 import de.dlr.ivf.urmo.router.output.edge_use.EUMeasuresGenerator;
@@ -76,13 +78,23 @@ public class OutputBuilder {
 		boolean aggAllFrom = options.isSet("from-agg") && options.getString("from-agg").equals("all");
 		boolean aggAllTo = options.isSet("to-agg") && options.getString("to-agg").equals("all");
 		int precision = options.getInteger("precision");
+		// the aggregation areas are assigned once and shared by all outputs
+		int numThreads = options.getInteger("threads");
+		HashMap<Long, Long> originMapping = null;
+		if (fromAggLayer != null) {
+			originMapping = ZoneAssignment.get(fromLayer, fromAggLayer, numThreads, options.isSet("from-agg.cache") ? options.getString("from-agg.cache") : null);
+		}
+		HashMap<Long, Long> destinationMapping = null;
+		if (toAggLayer != null) {
+			destinationMapping = ZoneAssignment.get(toLayer, toAggLayer, numThreads, options.isSet("to-agg.cache") ? options.getString("to-agg.cache") : null);
+		}
 		String comment = options.getBool("comment") ? buildComment(options) : null;
 		if (options.isSet("nm-output")) {
 			ODMeasuresGenerator mgNM = new ODMeasuresGenerator();
 			AbstractResultsWriter<ODSingleResult> writer = buildNMOutput(options.getString("nm-output"), precision, dropExistingTables);
 			writer.createInsertStatement(rsid);
 			Aggregator<ODSingleResult> agg = buildAggregator(mgNM, options.getBool("shortest"), 
-					aggAllFrom, aggAllTo, fromLayer, fromAggLayer, toLayer, toAggLayer, writer, comment);
+					aggAllFrom, aggAllTo, fromLayer, originMapping, toLayer, destinationMapping, writer, comment);
 			aggregators.add(agg);
 		}
 		if (options.isSet("ext-nm-output")) {
@@ -90,15 +102,16 @@ public class OutputBuilder {
 			AbstractResultsWriter<ODSingleExtendedResult> writer = buildExtNMOutput(options.getString("ext-nm-output"), precision, dropExistingTables);
 			writer.createInsertStatement(rsid);
 			Aggregator<ODSingleExtendedResult> agg = buildAggregator(mg, options.getBool("shortest"), 
-					aggAllFrom, aggAllTo, fromLayer, fromAggLayer, toLayer, toAggLayer, writer, comment);
+					aggAllFrom, aggAllTo, fromLayer, originMapping, toLayer, destinationMapping, writer, comment);
 			aggregators.add(agg);
 		}
 		if (options.isSet("stat-nm-output")) {
 			ODStatsMeasuresGenerator mg = new ODStatsMeasuresGenerator();
-			AbstractResultsWriter<ODSingleStatsResult> writer = buildStatNMOutput(options.getString("stat-nm-output"), precision, dropExistingTables);
+			AbstractResultsWriter<ODSingleStatsResult> writer = buildStatNMOutput(options.getString("stat-nm-output"), precision, dropExistingTables, 
+					ODStatsWriter.parsePercentiles(options.getString("stat-percentiles")));
 			writer.createInsertStatement(rsid);
 			Aggregator<ODSingleStatsResult> agg = buildAggregator(mg, options.getBool("shortest"), 
-					aggAllFrom, aggAllTo, fromLayer, fromAggLayer, toLayer, toAggLayer, writer, comment);
+					aggAllFrom, aggAllTo, fromLayer, originMapping, toLayer, destinationMapping, writer, comment);
 			aggregators.add(agg);
 		}
 		if (options.isSet("interchanges-output")) {
@@ -106,7 +119,7 @@ public class OutputBuilder {
 			AbstractResultsWriter<InterchangeSingleResult> writer = buildInterchangeOutput(options.getString("interchanges-output"), precision, dropExistingTables);
 			writer.createInsertStatement(rsid);
 			Aggregator<InterchangeSingleResult> agg = buildAggregator(mg, options.getBool("shortest"), 
-					aggAllFrom, aggAllTo, fromLayer, fromAggLayer, toLayer, toAggLayer, writer, comment);
+					aggAllFrom, aggAllTo, fromLayer, originMapping, toLayer, destinationMapping, writer, comment);
 			aggregators.add(agg);
 		}
 		if (options.isSet("edges-output")) {
@@ -114,7 +127,7 @@ public class OutputBuilder {
 			AbstractResultsWriter<EUSingleResult> writer = buildEUOutput(options.getString("edges-output"), precision, dropExistingTables);
 			writer.createInsertStatement(rsid);
 			Aggregator<EUSingleResult> agg = buildAggregator(mg, options.getBool("shortest"), 
-					aggAllFrom, aggAllTo, fromLayer, fromAggLayer, toLayer, toAggLayer, writer, comment);
+					aggAllFrom, aggAllTo, fromLayer, originMapping, toLayer, destinationMapping, writer, comment);
 			aggregators.add(agg);
 		}
 		if (options.isSet("pt-output")) {
@@ -122,7 +135,7 @@ public class OutputBuilder {
 			AbstractResultsWriter<PTODSingleResult> writer = buildPTODOutput(options.getString("pt-output"), precision, dropExistingTables);
 			writer.createInsertStatement(rsid);
 			Aggregator<PTODSingleResult> agg = buildAggregator(mg, options.getBool("shortest"), 
-					aggAllFrom, aggAllTo, fromLayer, fromAggLayer, toLayer, toAggLayer, writer, comment);
+					aggAllFrom, aggAllTo, fromLayer, originMapping, toLayer, destinationMapping, writer, comment);
 			aggregators.add(agg);
 		}
 		return aggregators;
@@ -130,6 +143,12 @@ public class OutputBuilder {
 	
 	
 	/** @brief Builds a "direct" output
+	 * 
+	 * If the direct output shall be written as shortest path trees, the
+	 * destinations are written into an additional output, named as the tree
+	 * output with the suffix "_dest". If the edges' geometries shall be
+	 * written once, they are written into an additional output with the
+	 * suffix "_edges".
 	 * @param options The options that include the output definition
 	 * @param rsid Used projection
 	 * @param nearestToEdges Information about the destination mapping
@@ -137,14 +156,26 @@ public class OutputBuilder {
 	 * @throws IOException When something fails
 	 */
 	public static DirectWriter buildDirectOutput(OptionsCont options, int rsid, HashMap<DBEdge, Vector<MapResult>> nearestToEdges) throws IOException {
-		if (!options.isSet("direct-output")) {
+		String name = options.isSet("direct-output") ? "direct-output" : "direct-tree-output";
+		if (!options.isSet(name)) {
 			return null;
 		}
 		int precision = options.getInteger("precision");
-		String d = options.getString("direct-output");
-		Utils.Format format = Utils.getFormat(d);
-		String[] inputParts = Utils.getParts(format, d, "direct-output");
-		DirectWriter dw = new DirectWriter(format, inputParts, precision, options.getBool("dropprevious"), rsid, nearestToEdges);
+		boolean dropPrevious = options.getBool("dropprevious");
+		String d = options.getString(name);
+		Utils.Format format = Utils.getOutputFormat(d);
+		String[] inputParts = Utils.getParts(format, d, name);
+		EdgeGeometryWriter egw = null;
+		if (options.getBool("direct-edge-geometries")) {
+			egw = new EdgeGeometryWriter(format, addSuffix(format, inputParts, "_edges"), precision, dropPrevious, rsid);
+		}
+		DirectWriter dw = null;
+		if (options.isSet("direct-output")) {
+			dw = new DirectWriter(format, inputParts, precision, dropPrevious, rsid, nearestToEdges, egw);
+		} else {
+			String[] leavesParts = addSuffix(format, inputParts, "_dest");
+			dw = new DirectTreeWriter(format, inputParts, format, leavesParts, precision, dropPrevious, rsid, nearestToEdges, egw);
+		}
 		dw.createInsertStatement(rsid);
 		if(options.getBool("comment")) {
 			dw.addComment(buildComment(options));
@@ -153,6 +184,36 @@ public class OutputBuilder {
 	}
 
 	
+	/** @brief Returns the definition of an output named as the given one with an additional suffix
+	 * 
+	 * For databases, the suffix is appended to the table name, for files
+	 * it is inserted before the extension.
+	 * @param format The format of the output
+	 * @param inputParts The definition of the output
+	 * @param suffix The suffix to add
+	 * @return The definition of the additional output
+	 */
+	private static String[] addSuffix(Utils.Format format, String[] inputParts, String suffix) {
+		String[] ret = inputParts.clone();
+		if(format==Utils.Format.FORMAT_POSTGRES || format==Utils.Format.FORMAT_SQLITE) {
+			ret[1] = ret[1] + suffix;
+			return ret;
+		}
+		String name = ret[0];
+		String gz = "";
+		if(name.endsWith(".gz")) {
+			gz = ".gz";
+			name = name.substring(0, name.length()-3);
+		}
+		int dot = name.lastIndexOf('.');
+		if(dot<=Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'))) {
+			dot = name.length();
+		}
+		ret[0] = name.substring(0, dot) + suffix + name.substring(dot) + gz;
+		return ret;
+	}
+
+	
 	/**
 	 * @brief Writes the connections from objects to the road network
 	 * 
@@ -171,7 +232,7 @@ public class OutputBuilder {
 		int precision = options.getInteger("precision");
 		boolean dropPrevious = options.getBool("dropprevious");
 		String d = options.getString(outputName);
-		Utils.Format format = Utils.getFormat(d);
+		Utils.Format format = Utils.getOutputFormat(d);
 		String[] inputParts = Utils.getParts(format, d, outputName);
 		EdgeMappingWriter emw = new EdgeMappingWriter(format, inputParts, precision, dropPrevious, epsg);
 		emw.createInsertStatement(epsg);
@@ -227,9 +288,9 @@ public class OutputBuilder {
 	 * @param aggAllFrom Whether all sources shall be aggregated
 	 * @param aggAllTo Whether all destinations shall be aggregated
 	 * @param fromLayer The origins layer
-	 * @param fromAggLayer The origins aggregation layer
+	 * @param originMapping The assignment of origins to aggregation areas, null if origins are not aggregated by areas
 	 * @param toLayer The destinations layer
-	 * @param toAggLayer The destinations aggregation layer
+	 * @param destinationMapping The assignment of destinations to aggregation areas, null if destinations are not aggregated by areas
 	 * @param writer The writer to use
 	 * @param comment The comment to add
 	 * @return The built aggregator
@@ -237,16 +298,16 @@ public class OutputBuilder {
 	 */
 	private static <T extends AbstractSingleResult> Aggregator<T> buildAggregator(MeasurementGenerator measuresGenerator,
 			boolean shortest, boolean aggAllFrom, boolean aggAllTo, 
-			Layer fromLayer, Layer fromAggLayer, Layer toLayer, Layer toAggLayer,
+			Layer fromLayer, HashMap<Long, Long> originMapping, Layer toLayer, HashMap<Long, Long> destinationMapping,
 			AbstractResultsWriter<T> writer, String comment) throws IOException {
-		Aggregator<T> agg = new Aggregator<T>(measuresGenerator, fromLayer, shortest);
-		if (fromAggLayer != null) {
-			agg.setOriginAggregation(fromLayer, fromAggLayer);
+		Aggregator<T> agg = new Aggregator<T>(measuresGenerator, shortest);
+		if (originMapping != null) {
+			agg.setOriginAggregation(originMapping);
 		} else if (aggAllFrom) {
 			agg.sumOrigins();
 		}
-		if (toAggLayer != null) {
-			agg.setDestinationAggregation(toLayer, toAggLayer);
+		if (destinationMapping != null) {
+			agg.setDestinationAggregation(destinationMapping);
 		} else if (aggAllTo) {
 			agg.sumDestinations();
 		}
@@ -268,7 +329,7 @@ public class OutputBuilder {
 	 * @throws IOException When something fails
 	 */
 	private static AbstractResultsWriter<ODSingleResult> buildNMOutput(String d, int precision, boolean dropPrevious) throws IOException {
-		Utils.Format format = Utils.getFormat(d);
+		Utils.Format format = Utils.getOutputFormat(d);
 		String[] inputParts = Utils.getParts(format, d, "od-output");
 		return new ODWriter(format, inputParts, precision, dropPrevious);
 	}
@@ -283,7 +344,7 @@ public class OutputBuilder {
 	 * @throws IOException When something fails
 	 */
 	private static AbstractResultsWriter<ODSingleExtendedResult> buildExtNMOutput(String d, int precision, boolean dropPrevious) throws IOException {
-		Utils.Format format = Utils.getFormat(d);
+		Utils.Format format = Utils.getOutputFormat(d);
 		String[] inputParts = Utils.getParts(format, d, "ext-od-output");
 		return new ODExtendedWriter(format, inputParts, precision, dropPrevious);
 	}
@@ -294,13 +355,14 @@ public class OutputBuilder {
 	 * @param d The output storage definition
 	 * @param precision The precision to use when writing to a file
 	 * @param dropPrevious Whether a prior database shall be dropped
+	 * @param percentiles The percentiles to write
 	 * @return The built output
 	 * @throws IOException When something fails
 	 */
-	private static AbstractResultsWriter<ODSingleStatsResult> buildStatNMOutput(String d, int precision, boolean dropPrevious) throws IOException {
-		Utils.Format format = Utils.getFormat(d);
+	private static AbstractResultsWriter<ODSingleStatsResult> buildStatNMOutput(String d, int precision, boolean dropPrevious, double[] percentiles) throws IOException {
+		Utils.Format format = Utils.getOutputFormat(d);
 		String[] inputParts = Utils.getParts(format, d, "stat-od-output");
-		return new ODStatsWriter(format, inputParts, precision, dropPrevious);
+		return new ODStatsWriter(format, inputParts, precision, dropPrevious, percentiles);
 	}
 	
 
@@ -313,7 +375,7 @@ public class OutputBuilder {
 	 * @throws IOException When something fails
 	 */
 	private static AbstractResultsWriter<InterchangeSingleResult> buildInterchangeOutput(String d, int precision, boolean dropPrevious) throws IOException {
-		Utils.Format format = Utils.getFormat(d);
+		Utils.Format format = Utils.getOutputFormat(d);
 		String[] inputParts = Utils.getParts(format, d, "interchanges-output");
 		return new InterchangeWriter(format, inputParts, precision, dropPrevious);
 	}
@@ -328,7 +390,7 @@ public class OutputBuilder {
 	 * @throws IOException When something fails
 	 */
 	private static AbstractResultsWriter<EUSingleResult> buildEUOutput(String d, int precision, boolean dropPrevious) throws IOException {
-		Utils.Format format = Utils.getFormat(d);
+		Utils.Format format = Utils.getOutputFormat(d);
 		String[] inputParts = Utils.getParts(format, d, "edges-output");
 		return new EUWriter(format, inputParts, precision, dropPrevious);
 	}
@@ -343,7 +405,7 @@ public class OutputBuilder {
 	 * @throws IOException When something fails
 	 */
 	private static AbstractResultsWriter<PTODSingleResult> buildPTODOutput(String d, int precision, boolean dropPrevious) throws IOException {
-		Utils.Format format = Utils.getFormat(d);
+		Utils.Format format = Utils.getOutputFormat(d);
 		String[] inputParts = Utils.getParts(format, d, "pt-output");
 		return new PTODWriter(format, inputParts, precision, dropPrevious);
 	}
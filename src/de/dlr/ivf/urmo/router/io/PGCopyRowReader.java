@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyInputStream;
+
+/**
+ * @class PGCopyRowReader
+ * @brief Reads the rows of a query result from PostgreSQL using COPY in binary format
+ *
+ * The query is run as "COPY (query) TO STDOUT (FORMAT binary)" and the
+ * returned stream is decoded directly. The values of a row are kept in one
+ * reused buffer.
+ *
+ * The binary format does not name the types of the columns. Numbers are
+ * decoded by their size: 2, 4 and 8 bytes are read as smallint, integer and
+ * bigint by getLong, 4 and 8 bytes as real and double precision by
+ * getDouble. Queries should therefore cast numerical columns explicitly.
+ * getBoolean accepts booleans as well as integers.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class PGCopyRowReader implements RowReader {
+	/// @brief The signature the binary COPY format starts with
+	private static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+	/// @brief The stream to read from
+	private DataInputStream in;
+	/// @brief The values of the current row
+	private byte[] data = new byte[1024];
+	/// @brief The begins of the current row's values within data
+	private int[] begins = new int[16];
+	/// @brief The lengths of the current row's values (-1 for NULL)
+	private int[] lengths = new int[16];
+	/// @brief The number of columns of the current row
+	private int numColumns = 0;
+
+
+	/** @brief Constructor, starts the query
+	 * @param connection The connection to the database
+	 * @param query The query to execute (without a trailing ';')
+	 * @throws IOException When the query fails or the result is not in binary COPY format
+	 */
+	public PGCopyRowReader(Connection connection, String query) throws IOException {
+		try {
+			PGConnection pgConnection = connection.unwrap(PGConnection.class);
+			in = new DataInputStream(new BufferedInputStream(new PGCopyInputStream(pgConnection, "COPY (" + query + ") TO STDOUT (FORMAT binary)"), 1<<16));
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+		byte[] signature = new byte[SIGNATURE.length];
+		in.readFully(signature);
+		for(int i=0; i<SIGNATURE.length; ++i) {
+			if(signature[i]!=SIGNATURE[i]) {
+				throw new IOException("The result of '" + query + "' is not in binary COPY format.");
+			}
+		}
+		in.readInt(); // flags
+		int extensionLength = in.readInt();
+		in.skipBytes(extensionLength);
+	}
+
+
+	/** @brief Moves to the next row
+	 * @return Whether a further row was read
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public boolean next() throws IOException {
+		short num;
+		try {
+			num = in.readShort();
+		} catch(EOFException e) {
+			return false;
+		}
+		if(num<0) {
+			// trailer
+			return false;
+		}
+		numColumns = num;
+		if(begins.length<numColumns) {
+			begins = new int[numColumns];
+			lengths = new int[numColumns];
+		}
+		int pos = 0;
+		for(int i=0; i<numColumns; ++i) {
+			int length = in.readInt();
+			begins[i] = pos;
+			lengths[i] = length;
+			if(length<=0) {
+				continue;
+			}
+			if(pos+length>data.length) {
+				byte[] nData = new byte[Math.max(data.length*2, pos+length)];
+				System.arraycopy(data, 0, nData, 0, pos);
+				data = nData;
+			}
+			in.readFully(data, pos, length);
+			pos += length;
+		}
+		return true;
+	}
+
+
+	/** @brief Returns the value of the given column as a string
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (null if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public String getString(int column) throws IOException {
+		int i = check(column);
+		if(lengths[i]<0) {
+			return null;
+		}
+		return new String(data, begins[i], lengths[i], StandardCharsets.UTF_8);
+	}
+
+
+	/** @brief Returns the value of the given column as a long
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (0 if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public long getLong(int column) throws IOException {
+		int i = check(column);
+		switch(lengths[i]) {
+		case -1:
+			return 0;
+		case 2:
+			return (short) readBits(i, 2);
+		case 4:
+			return (int) readBits(i, 4);
+		case 8:
+			return readBits(i, 8);
+		default:
+			throw new IOException("Column " + column + " is not an integer; cast it to bigint.");
+		}
+	}
+
+
+	/** @brief Returns the value of the given column as a double
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (0 if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public double getDouble(int column) throws IOException {
+		int i = check(column);
+		switch(lengths[i]) {
+		case -1:
+			return 0;
+		case 4:
+			return Float.intBitsToFloat((int) readBits(i, 4));
+		case 8:
+			return Double.longBitsToDouble(readBits(i, 8));
+		default:
+			throw new IOException("Column " + column + " is not a floating point number; cast it to double precision.");
+		}
+	}
+
+
+	/** @brief Returns the value of the given column as a boolean
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (false if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public boolean getBoolean(int column) throws IOException {
+		int i = check(column);
+		if(lengths[i]<=0) {
+			return false;
+		}
+		for(int j=0; j<lengths[i]; ++j) {
+			if(data[begins[i]+j]!=0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/** @brief Returns the value of the given column as bytes
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (null if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public byte[] getBytes(int column) throws IOException {
+		int i = check(column);
+		if(lengths[i]<0) {
+			return null;
+		}
+		byte[] ret = new byte[lengths[i]];
+		System.arraycopy(data, begins[i], ret, 0, lengths[i]);
+		return ret;
+	}
+
+
+	/** @brief Closes the reader
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+
+	/** @brief Reads the given number of bytes of a value as a big-endian number
+	 * @param i The index of the column (starting at 0)
+	 * @param num The number of bytes to read
+	 * @return The read bits
+	 */
+	private long readBits(int i, int num) {
+		long ret = 0;
+		for(int j=0; j<num; ++j) {
+			ret = (ret << 8) | (data[begins[i]+j] & 0xff);
+		}
+		return ret;
+	}
+
+
+	/** @brief Checks whether the given column exists
+	 * @param column The index of the column (starting at 1)
+	 * @return The index of the column starting at 0
+	 * @throws IOException If the column does not exist
+	 */
+	private int check(int column) throws IOException {
+		if(column<1 || column>numColumns) {
+			throw new IOException("Column " + column + " does not exist.");
+		}
+		return column - 1;
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.io;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * @class ResultSetRowReader
+ * @brief Reads the rows of a JDBC query result
+ *
+ * The statement is expected to use a cursor (see Utils.createQueryStatement),
+ * so that only a bounded number of rows is held in memory.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class ResultSetRowReader implements RowReader {
+	/// @brief The statement the result was retrieved by
+	private Statement statement;
+	/// @brief The result to read
+	private ResultSet rs;
+
+
+	/** @brief Constructor
+	 * @param _statement The statement to execute the query with
+	 * @param query The query to execute
+	 * @throws IOException When the query fails
+	 */
+	public ResultSetRowReader(Statement _statement, String query) throws IOException {
+		try {
+			statement = _statement;
+			rs = statement.executeQuery(query);
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	/** @brief Moves to the next row
+	 * @return Whether a further row was read
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public boolean next() throws IOException {
+		try {
+			return rs.next();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	/** @brief Returns the value of the given column as a string
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (null if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public String getString(int column) throws IOException {
+		try {
+			return rs.getString(column);
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	/** @brief Returns the value of the given column as a long
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (0 if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public long getLong(int column) throws IOException {
+		try {
+			return rs.getLong(column);
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	/** @brief Returns the value of the given column as a double
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (0 if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public double getDouble(int column) throws IOException {
+		try {
+			return rs.getDouble(column);
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	/** @brief Returns the value of the given column as a boolean
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (false if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public boolean getBoolean(int column) throws IOException {
+		try {
+			return rs.getBoolean(column);
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	/** @brief Returns the value of the given column as bytes
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (null if not set)
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public byte[] getBytes(int column) throws IOException {
+		try {
+			return rs.getBytes(column);
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	/** @brief Closes the reader
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			rs.close();
+			statement.close();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.io;
+
+import java.io.IOException;
+
+/**
+ * @interface RowReader
+ * @brief Reads the rows of a query result column by column
+ *
+ * Columns are addressed by their position within the query, starting at 1,
+ * so that no names have to be looked up per row.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public interface RowReader {
+	/** @brief Moves to the next row
+	 * @return Whether a further row was read
+	 * @throws IOException When something fails
+	 */
+	public boolean next() throws IOException;
+
+
+	/** @brief Returns the value of the given column as a string
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (null if not set)
+	 * @throws IOException When something fails
+	 */
+	public String getString(int column) throws IOException;
+
+
+	/** @brief Returns the value of the given column as a long
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (0 if not set)
+	 * @throws IOException When something fails
+	 */
+	public long getLong(int column) throws IOException;
+
+
+	/** @brief Returns the value of the given column as a double
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (0 if not set)
+	 * @throws IOException When something fails
+	 */
+	public double getDouble(int column) throws IOException;
+
+
+	/** @brief Returns the value of the given column as a boolean
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (false if not set)
+	 * @throws IOException When something fails
+	 */
+	public boolean getBoolean(int column) throws IOException;
+
+
+	/** @brief Returns the value of the given column as bytes
+	 * @param column The index of the column (starting at 1)
+	 * @return The value (null if not set)
+	 * @throws IOException When something fails
+	 */
+	public byte[] getBytes(int column) throws IOException;
+
+
+	/** @brief Closes the reader
+	 * @throws IOException When something fails
+	 */
+	public void close() throws IOException;
+
+}
@@ -43,10 +43,158 @@ public class Utils {
 		FORMAT_GEOPACKAGE,
 		/// @brief SUMO files
 		FORMAT_SUMO,
+		/// @brief columnar binary files
+		FORMAT_COLUMNAR,
 		/// @brief unknown format
 		FORMAT_UNKNOWN
 	}
 	
+	/// @brief The number of rows to fetch at once when reading from a database
+	private static int fetchSize = 10000;
+	/// @brief Whether PostgreSQL query results shall be read using binary COPY
+	private static boolean useCopy = false;
+	/// @brief The number of connections large layers are read using in parallel
+	private static int partitions = 1;
+	/// @brief Whether results shall be written into PostgreSQL using COPY
+	private static boolean copyOutput = false;
+	/// @brief Whether PostgreSQL output tables shall be created unlogged
+	private static boolean unloggedOutput = false;
+	/// @brief Whether an index shall be built after writing a database output
+	private static boolean indexOutput = false;
+	/// @brief Whether results shall be written into SQLite using the bulk mode
+	private static boolean sqliteBulkOutput = false;
+	/// @brief The number of threads used to compress outputs
+	private static int compressionThreads = 1;
+	
+	
+	/** @brief Sets how query results are read from databases
+	 * @param _fetchSize The number of rows to fetch at once
+	 * @param _useCopy Whether PostgreSQL query results shall be read using binary COPY
+	 * @param _partitions The number of connections layers are read using in parallel
+	 */
+	public static void setDBReadOptions(int _fetchSize, boolean _useCopy, int _partitions) {
+		fetchSize = _fetchSize;
+		useCopy = _useCopy;
+		partitions = _partitions;
+	}
+	
+	
+	/** @brief Returns the number of connections layers are read using in parallel
+	 * @return The number of partitions to read layers in
+	 */
+	public static int getDBPartitions() {
+		return partitions;
+	}
+	
+	
+	/** @brief Sets how results are written into databases
+	 * @param _copyOutput Whether results shall be written into PostgreSQL using COPY
+	 * @param _unloggedOutput Whether PostgreSQL output tables shall be created unlogged
+	 * @param _indexOutput Whether an index shall be built after writing a database output
+	 * @param _sqliteBulkOutput Whether results shall be written into SQLite using the bulk mode
+	 */
+	public static void setDBWriteOptions(boolean _copyOutput, boolean _unloggedOutput, boolean _indexOutput, boolean _sqliteBulkOutput) {
+		copyOutput = _copyOutput;
+		unloggedOutput = _unloggedOutput;
+		indexOutput = _indexOutput;
+		sqliteBulkOutput = _sqliteBulkOutput;
+	}
+	
+	
+	/** @brief Returns whether results shall be written into PostgreSQL using COPY
+	 * @return Whether COPY shall be used
+	 */
+	public static boolean getDBCopyOutput() {
+		return copyOutput;
+	}
+	
+	
+	/** @brief Returns whether PostgreSQL output tables shall be created unlogged
+	 * @return Whether output tables shall be unlogged
+	 */
+	public static boolean getDBUnloggedOutput() {
+		return unloggedOutput;
+	}
+	
+	
+	/** @brief Returns whether an index shall be built after writing a database output
+	 * @return Whether an index shall be built
+	 */
+	public static boolean getDBIndexOutput() {
+		return indexOutput;
+	}
+	
+	
+	/** @brief Returns whether results shall be written into SQLite using the bulk mode
+	 * 
+	 * In bulk mode, the database is written using a write-ahead log without
+	 * synchronisation and rows are inserted using multi-row statements.
+	 * @return Whether the SQLite bulk mode shall be used
+	 */
+	public static boolean getSQLiteBulkOutput() {
+		return sqliteBulkOutput;
+	}
+	
+	
+	/** @brief Sets the number of threads used to compress outputs
+	 * @param _compressionThreads The number of compressing threads
+	 */
+	public static void setCompressionThreads(int _compressionThreads) {
+		compressionThreads = _compressionThreads;
+	}
+	
+	
+	/** @brief Returns the number of threads used to compress outputs
+	 * @return The number of compressing threads
+	 */
+	public static int getCompressionThreads() {
+		return compressionThreads;
+	}
+	
+	
+	/** @brief Builds a statement that reads query results using a cursor
+	 * 
+	 * Auto-commit is switched off, as the PostgreSQL driver otherwise
+	 * retrieves the complete result at once. Only the set number of rows is
+	 * fetched at once.
+	 * 
+	 * @param connection The connection to the database
+	 * @return The statement to use for reading
+	 * @throws SQLException If something fails
+	 */
+	public static Statement createQueryStatement(Connection connection) throws SQLException {
+		connection.setAutoCommit(false);
+		Statement s = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		s.setFetchSize(fetchSize);
+		return s;
+	}
+	
+	
+	/** @brief Executes the query and returns a reader for the resulting rows
+	 * 
+	 * PostgreSQL results are read using binary COPY if this was chosen,
+	 * otherwise a cursor is used (see createQueryStatement).
+	 * 
+	 * @param connection The connection to the database
+	 * @param format The format of the connection
+	 * @param query The query to execute
+	 * @return The reader for the resulting rows
+	 * @throws IOException If something fails
+	 */
+	public static RowReader readRows(Connection connection, Format format, String query) throws IOException {
+		if(useCopy && format==Format.FORMAT_POSTGRES) {
+			if(query.endsWith(";")) {
+				query = query.substring(0, query.length()-1);
+			}
+			return new PGCopyRowReader(connection, query);
+		}
+		try {
+			return new ResultSetRowReader(createQueryStatement(connection), query);
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+	
 	
 	/** @brief Checks the input/output definition and returns it split to it's sub-parts
 	 * @param format The recognized format
@@ -83,6 +231,7 @@ public class Utils {
 		case FORMAT_SHAPEFILE:
 		case FORMAT_GEOPACKAGE:
 		case FORMAT_SUMO:
+		case FORMAT_COLUMNAR:
 			if(parsed.length==1) {
 				return parsed;
 			}
@@ -117,12 +266,28 @@ public class Utils {
 			return "gpkg";
 		case FORMAT_SUMO:
 			return "simo";
+		case FORMAT_COLUMNAR:
+			return "ucol";
 		default:
 			throw new IOException("Format '" + getFormatMMLName(format) + "' is not known.");
 		}
 	}
 
 
+	/** @brief Determine and return the format of the given output definition
+	 *
+	 * Outputs may be compressed; they are recognised by the extension before ".gz".
+	 * @param output The definition of the output destination
+	 * @return The determined format
+	 */
+	public static Format getOutputFormat(String output) {
+		if(output.endsWith(".gz")) {
+			output = output.substring(0, output.length()-3);
+		}
+		return getFormat(output);
+	}
+
+
 	/** @brief Determine and return the format of the given input/output definition
 	 * @param input The definition of the input/output source/destination
 	 * @return The determined format
@@ -149,7 +314,8 @@ public class Utils {
 			return Format.FORMAT_POSTGRES;
 		} else if(input.startsWith("jdbc:sqlite:")) {
 			return Format.FORMAT_SQLITE;
-		} else if(input.endsWith(".csv") || input.endsWith(".txt")) {
+		}
+		if(input.endsWith(".csv") || input.endsWith(".txt")) {
 			return Format.FORMAT_CSV;
 		} else if(input.endsWith(".wkt")) {
 			return Format.FORMAT_WKT;
@@ -159,6 +325,8 @@ public class Utils {
 			return Format.FORMAT_GEOPACKAGE;
 		} else if(input.endsWith(".net.xml") || input.endsWith(".poi.xml")) {
 			return Format.FORMAT_SUMO;
+		} else if(input.endsWith(".ucol")) {
+			return Format.FORMAT_COLUMNAR;
 		}   
 		
 		return Format.FORMAT_UNKNOWN;
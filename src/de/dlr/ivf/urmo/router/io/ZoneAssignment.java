@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import de.dlr.ivf.urmo.router.algorithms.edgemapper.EdgeMappable;
+import de.dlr.ivf.urmo.router.shapes.Layer;
+
+/**
+ * @class ZoneAssignment
+ * @brief Assigns the objects of a layer to the aggregation areas (zones) they lie within
+ *
+ * The zones are prepared (see PreparedGeometry) and stored in a spatial
+ * index; the objects are assigned in parallel. An object lying within
+ * several zones is assigned to the first one returned by the index.
+ * Objects outside all zones are assigned to -1.
+ *
+ * The assignment can be stored in a binary file and read from it in later
+ * runs. It is only used if its key matches; the key contains hashes of
+ * the objects' ids and positions and of the zones' ids and geometries.
+ * The file is replaced only when completely written; a file that can not
+ * be read is ignored, and the assignment is computed and written again.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class ZoneAssignment {
+	/// @brief The magic number an assignment file starts with ("UZON")
+	private static final int MAGIC = 0x555a4f4e;
+	/// @brief The version of the file format
+	private static final int VERSION = 1;
+
+
+	/** @brief Returns the assignment of the objects to the zones, using the given file as cache
+	 * @param objects The layer with the objects to assign
+	 * @param zones The layer with the zones
+	 * @param numThreads The number of threads to use
+	 * @param cacheFile The file to read the assignment from / to write it to, null if no cache is used
+	 * @return A map from object id to zone id (-1 if the object is not within a zone)
+	 * @throws IOException When something fails
+	 */
+	public static HashMap<Long, Long> get(Layer objects, Layer zones, int numThreads, String cacheFile) throws IOException {
+		String key = null;
+		if(cacheFile!=null) {
+			key = buildKey(objects, zones);
+			HashMap<Long, Long> ret = read(cacheFile, key);
+			if(ret!=null) {
+				return ret;
+			}
+		}
+		HashMap<Long, Long> ret = assign(objects, zones, numThreads);
+		if(cacheFile!=null) {
+			write(ret, cacheFile, key);
+		}
+		return ret;
+	}
+
+
+	/** @brief Assigns the objects to the zones they lie within
+	 * @param objects The layer with the objects to assign
+	 * @param zones The layer with the zones
+	 * @param numThreads The number of threads to use
+	 * @return A map from object id to zone id (-1 if the object is not within a zone)
+	 * @throws IOException When something fails
+	 */
+	public static HashMap<Long, Long> assign(Layer objects, Layer zones, int numThreads) throws IOException {
+		// build the index of prepared zones
+		STRtree tree = new STRtree();
+		for (EdgeMappable zone : zones.getObjects()) {
+			tree.insert(zone.getGeometry().getEnvelopeInternal(), new Object[] { zone, PreparedGeometryFactory.prepare(zone.getGeometry()) });
+		}
+		tree.build();
+		// assign the objects in chunks
+		Vector<EdgeMappable> objs = objects.getObjects();
+		numThreads = Math.max(1, numThreads);
+		int chunkSize = Math.max(1024, (objs.size() + numThreads - 1) / numThreads);
+		long[] zoneIDs = new long[objs.size()];
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			Vector<Future<Void>> results = new Vector<>();
+			for(int begin=0; begin<objs.size(); begin+=chunkSize) {
+				final int chunkBegin = begin;
+				final int chunkEnd = Math.min(objs.size(), begin + chunkSize);
+				Callable<Void> task = () -> {
+					for(int i=chunkBegin; i<chunkEnd; ++i) {
+						zoneIDs[i] = findZone(tree, objs.get(i).getPoint());
+					}
+					return null;
+				};
+				results.add(executor.submit(task));
+			}
+			for(Future<Void> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		HashMap<Long, Long> ret = new HashMap<>();
+		for(int i=0; i<zoneIDs.length; ++i) {
+			ret.put(objs.get(i).getOuterID(), zoneIDs[i]);
+		}
+		return ret;
+	}
+
+
+	/** @brief Returns the id of the zone the given point lies within
+	 * @param tree The index of prepared zones
+	 * @param p The point
+	 * @return The id of the zone, -1 if the point is not within a zone
+	 */
+	private static long findZone(STRtree tree, Point p) {
+		List objs = tree.query(p.getEnvelopeInternal());
+		for(Object o : objs) {
+			Object[] entry = (Object[]) o;
+			if(((PreparedGeometry) entry[1]).contains(p)) {
+				return ((EdgeMappable) entry[0]).getOuterID();
+			}
+		}
+		return -1;
+	}
+
+
+	/** @brief Builds the key that describes the objects and the zones
+	 * @param objects The layer with the objects to assign
+	 * @param zones The layer with the zones
+	 * @return The key describing the assignment's input
+	 */
+	public static String buildKey(Layer objects, Layer zones) {
+		// order-independent hashes of the objects and the zones
+		long objectsHash = 0;
+		for(EdgeMappable em : objects.getObjects()) {
+			Point p = em.getPoint();
+			long h = em.getOuterID();
+			h = h * 31 + Double.doubleToLongBits(p.getX());
+			h = h * 31 + Double.doubleToLongBits(p.getY());
+			objectsHash += h ^ (h >>> 29);
+		}
+		long zonesHash = 0;
+		for(EdgeMappable zone : zones.getObjects()) {
+			long h = zone.getOuterID();
+			for(Coordinate c : zone.getGeometry().getCoordinates()) {
+				h = h * 31 + Double.doubleToLongBits(c.x);
+				h = h * 31 + Double.doubleToLongBits(c.y);
+			}
+			zonesHash += h ^ (h >>> 29);
+		}
+		return objects.getObjects().size() + ";" + objectsHash + ";" + zones.getObjects().size() + ";" + zonesHash;
+	}
+
+
+	/** @brief Writes the assignment into a file
+	 * @param assignment The assignment to write
+	 * @param fileName The name of the file to write
+	 * @param key The key describing the assignment's input
+	 * @throws IOException When something fails
+	 */
+	public static void write(HashMap<Long, Long> assignment, String fileName, String key) throws IOException {
+		File tmp = NetCache.createTempFile(fileName);
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1<<16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				NetCache.writeString(out, key);
+				out.writeInt(assignment.size());
+				for(Map.Entry<Long, Long> e : assignment.entrySet()) {
+					out.writeLong(e.getKey());
+					out.writeLong(e.getValue());
+				}
+			}
+			NetCache.replaceFile(tmp, fileName);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+
+	/** @brief Reads the assignment from a file
+	 * @param fileName The name of the file to read
+	 * @param key The key describing the assignment's input
+	 * @return The read assignment, null if the file does not exist, does not match the key or version or can not be read
+	 */
+	public static HashMap<Long, Long> read(String fileName, String key) {
+		File file = new File(fileName);
+		if(!file.exists()) {
+			return null;
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1<<16))) {
+			if(in.readInt()!=MAGIC || in.readInt()!=VERSION || !key.equals(NetCache.readString(in))) {
+				return null;
+			}
+			int num = in.readInt();
+			HashMap<Long, Long> ret = new HashMap<>();
+			for(int i=0; i<num; ++i) {
+				long id = in.readLong();
+				ret.put(id, in.readLong());
+			}
+			return ret;
+		} catch(EOFException e) {
+			System.err.println("Warning: the zone assignment '" + fileName + "' is truncated; it is rebuilt.");
+			return null;
+		} catch(IOException e) {
+			System.err.println("Warning: the zone assignment '" + fileName + "' can not be read (" + e.getMessage() + "); it is rebuilt.");
+			return null;
+		}
+	}
+
+}
@@ -23,6 +23,8 @@ package de.dlr.ivf.urmo.router.modes;
 public class Mode {
 	/// @brief This mode's id (must be a power of two result, bitset)
 	public long id;
+	/// @brief The position of this mode's bit within the id (used to index lookup tables)
+	public int index;
 	/// @brief A human readable name of the mode
 	public String mml;
 	/// @brief This mode's vmax
@@ -49,6 +51,7 @@ public class Mode {
 	 */
 	public Mode(long _id, String _mml, double _vmax, double _maxDist, double _kkcPerHour, double _co2PerKm, double _pricePerKm) {
 		id = _id;
+		index = Long.numberOfTrailingZeros(_id);
 		mml = _mml;
 		vmax = _vmax / 3.6;
 		maxDist = _maxDist * 1000;
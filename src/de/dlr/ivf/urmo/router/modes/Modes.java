@@ -41,6 +41,8 @@ public class Modes {
 	static public Vector<Mode> modes;
 	/// @brief The lanes the custom mode is allowed at /// @todo: don't make it public
 	static public long customAllowedAt = 0;
+	/// @brief The mode chosen for each combination of available modes (indexed by the combination)
+	static private Mode[] modeSelection = null;
 
 
 	/**
@@ -59,6 +61,7 @@ public class Modes {
 		add(new Mode(8, "passenger", 200, 500, 170, 150, 31)); // kcal: 16010
 		add(new Mode(16, "bus", 80, 500, 85, 75, 0)); // kcal: 16016
 		//add(new Mode(8, "custom", custom_vmax, 300, custom_kkc, custom_co2, custom_price));
+		buildModeSelection();
 	}
 
 
@@ -70,6 +73,7 @@ public class Modes {
 		mml2mode.put(m.mml, m);
 		id2mode.put(m.id, m);
 		modes.add(m);
+		modeSelection = null;
 	}
 
 
@@ -87,6 +91,7 @@ public class Modes {
 		custom.co2PerKm = custom_co2;
 		custom.pricePerKm = custom_price;
 		customAllowedAt = allowedModes;
+		buildModeSelection();
 	}
 		
 	
@@ -138,15 +143,45 @@ public class Modes {
 	}
 
 	
+	/**
+	 * @brief Builds the table of modes to choose for all combinations of the known modes
+	 */
+	private static void buildModeSelection() {
+		long all = 0;
+		for(Mode m : modes) {
+			all |= m.id;
+		}
+		Mode[] selection = new Mode[1 << (64 - Long.numberOfLeadingZeros(all))];
+		for(int i=1; i<selection.length; ++i) {
+			selection[i] = findFastestMode(i);
+		}
+		modeSelection = selection;
+	}
+
+
 	/**
 	 * @brief Chooses the next mode to use
 	 * 
-	 * The fastest mode is chosen
+	 * The fastest mode is chosen. The choice is read from a precomputed
+	 * table if the combination of modes is covered by it.
 	 * @param availableModes
 	 * @return The chosen mode
 	 * @todo Play with this
 	 */
 	public static Mode selectModeFrom(long availableModes) {
+		if(modeSelection!=null && availableModes>0 && availableModes<modeSelection.length) {
+			return modeSelection[(int) availableModes];
+		}
+		return findFastestMode(availableModes);
+	}
+
+
+	/**
+	 * @brief Determines the fastest mode of the given ones
+	 * @param availableModes The modes to choose from
+	 * @return The fastest mode
+	 */
+	private static Mode findFastestMode(long availableModes) {
 		Mode selected = null;
 		double vmax = 0;
 		long modeID = 1;
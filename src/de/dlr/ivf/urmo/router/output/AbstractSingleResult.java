@@ -16,8 +16,6 @@
 package de.dlr.ivf.urmo.router.output;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
-import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
-import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.shapes.LayerObject;
 
 /**
@@ -54,63 +52,21 @@ public abstract class AbstractSingleResult {
 	/**
 	 * @brief Constructor 
 	 * 
-	 * Computes the distance and the travel time
+	 * Takes the distance and the travel time from the reached destination
 	 * @param _srcID The id of the origin the represented trip starts at
 	 * @param _destID The id of the destination the represented trip ends at
 	 * @param from The mapped source
-	 * @param to The mapped destination
-	 * @param dr The path between the source and the destination
+	 * @param reached The reached destination with the distance and travel time to it
 	 */
-	public AbstractSingleResult(long _srcID, long _destID, MapResult from, MapResult to, DijkstraResult dr) {
+	public AbstractSingleResult(long _srcID, long _destID, MapResult from, ReachedDestination reached) {
 		srcID = _srcID;
 		destID = _destID;
 
-		DijkstraEntry toEdgeEntry = dr.getEdgeInfo(to.edge);
 		val = ((LayerObject) from.em).getAttachedValue();
-		double firstTT = toEdgeEntry.first.ttt;
-		if(from.edge==to.edge) {
-			tt = firstTT;
-			if(from.pos>to.pos) {
-				dist = from.pos - to.pos;
-			} else {
-				dist = to.pos - from.pos;				
-			}
-			tt = tt / to.edge.length * dist;
-		} else if(from.edge.opposite==to.edge) {
-			tt = firstTT;
-			if(from.pos>(to.edge.length - to.pos)) {
-				dist = from.pos - (to.edge.length - to.pos);
-			} else {
-				dist = (to.edge.length - to.pos) - from.pos;				
-			}
-			tt = tt / to.edge.length * dist;
-		} else {
-			dist = toEdgeEntry.distance;
-			tt = toEdgeEntry.tt;
-			if(toEdgeEntry.first.e==from.edge.opposite) {
-				dist -= (from.edge.length - from.pos);
-				tt -= (firstTT - firstTT * from.pos / from.edge.length);
-			} else {
-				dist -= from.pos;
-				tt -= (firstTT * from.pos / from.edge.length);
-			}
-			if(toEdgeEntry.wasOpposite) {
-				dist -= to.pos;
-				tt -= toEdgeEntry.ttt * to.pos / to.edge.length;
-			} else {
-				dist -= (to.edge.length - to.pos);
-				tt -= (toEdgeEntry.ttt - toEdgeEntry.ttt * (to.pos / to.edge.length));
-			}
-		}
-		if(dist<0&&dist>-.1) {
-			dist = 0;
-		}
-		if(tt<0&&tt>-.1) {
-			tt = 0;
-		}
-		
+		dist = reached.dist;
+		tt = reached.tt;
 		if(dist<0||tt<0) {
-			System.err.println("Negative distance or travel time occured between '" + from.em.getOuterID() + "' to '" + to.em.getOuterID() + "'.");
+			System.err.println("Negative distance or travel time occured between '" + from.em.getOuterID() + "' to '" + reached.to.em.getOuterID() + "'.");
 		}
 	}
 	
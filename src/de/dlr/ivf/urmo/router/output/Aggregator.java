@@ -18,13 +18,13 @@ package de.dlr.ivf.urmo.router.output;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Vector;
-
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Envelope;
-import org.locationtech.jts.geom.Point;
-import org.locationtech.jts.index.strtree.STRtree;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.EdgeMappable;
 import de.dlr.ivf.urmo.router.shapes.DBEdge;
@@ -48,26 +48,30 @@ public class Aggregator<T extends AbstractSingleResult> {
 	private boolean sumOrigins = false;
 	/// @brief Whether all destinations shall be aggregated
 	private boolean sumDestinations = false;
-	/// @brief The map of measurements collected so far
-	private HashMap<Long, HashMap<Long, T>> measurements = new HashMap<>();
+	/// @brief The measurements collected so far, null if results are not aggregated
+	private ZoneMatrix<T> measurements = null;
 	/// @brief The writers to use
 	private Vector<AbstractResultsWriter<T>> writers = new Vector<>();
 	/// @brief The measurements generator to use
 	public MeasurementGenerator<T> parent; 
-	/// @brief The layer to retrieve all source objects from
-	private Layer fromLayer;
+	/// @brief The number of sources per (aggregated) origin, indexed by the origin's ordinal
+	private int[] numSources = null;
+	/// @brief The sum of the sources' weights per (aggregated) origin, indexed by the origin's ordinal
+	private double[] weightSources = null;
+	/// @brief The number of sources per origin whose results are still missing, null if origins are not streamed
+	private int[] pendingSources = null;
+	/// @brief Whether an origin's results were already written, null if origins are not streamed
+	private boolean[] writtenOrigins = null;
 
 
 	/**
 	 * @brief Constructor
 	 * @param _parent The measurements generator to use
-	 * @param _fromLayer The layer to retrieve all source objects from
 	 * @param _shortest Whether only the shortestpath shall be computed (@todo: explain why it's here)
 	 */
-	public Aggregator(MeasurementGenerator<T> _parent, Layer _fromLayer, boolean _shortest) {
+	public Aggregator(MeasurementGenerator<T> _parent, boolean _shortest) {
 		parent = _parent;
 		shortest = _shortest;
-		fromLayer = _fromLayer;
 	}
 
 
@@ -88,26 +92,24 @@ public class Aggregator<T extends AbstractSingleResult> {
 
 
 	/**
-	 * @brief Builds a map of the origins aggregation
-	 * @param orig The layer with origins
-	 * @param origAgg The layer with origin aggregation objects
-	 * @return The number of origins that could not be allocated in aggregation areas
+	 * @brief Sets the origins aggregation
+	 * 
+	 * The map may be shared with other aggregators; it is not changed.
+	 * @param mapping The map from origin ids to the ids of the aggregation areas they lie within (see ZoneAssignment)
 	 */
-	public int setOriginAggregation(Layer orig, Layer origAgg) {
-		origin2aggMap = new HashMap<>();
-		return buildAggregationMapping(orig, origAgg, origin2aggMap);
+	public void setOriginAggregation(HashMap<Long, Long> mapping) {
+		origin2aggMap = mapping;
 	}
 
 
 	/**
-	 * @brief Builds a map of the destination aggregation
-	 * @param dest The layer with destinations
-	 * @param destAgg The layer with destination aggregation objects
-	 * @return The number of destinations that could not be allocated in aggregation areas
+	 * @brief Sets the destination aggregation
+	 * 
+	 * The map may be shared with other aggregators; it is not changed.
+	 * @param mapping The map from destination ids to the ids of the aggregation areas they lie within (see ZoneAssignment)
 	 */
-	public int setDestinationAggregation(Layer dest, Layer destAgg) {
-		dest2aggMap = new HashMap<>();
-		return buildAggregationMapping(dest, destAgg, dest2aggMap);
+	public void setDestinationAggregation(HashMap<Long, Long> mapping) {
+		dest2aggMap = mapping;
 	}
 
 
@@ -121,7 +123,11 @@ public class Aggregator<T extends AbstractSingleResult> {
 
 
 	/**
-	 * @brief Builds a map to collect aggregated measures within
+	 * @brief Builds the matrix to collect aggregated measures within
+	 * 
+	 * Only the (aggregated) origin and destination ids are collected; the 
+	 * cells are built when results are added to them. The number of sources
+	 * and the sum of their weights are counted per aggregated origin.
 	 * @param orig The layer with origins
 	 * @param dest The layer with destinations
 	 */
@@ -129,63 +135,27 @@ public class Aggregator<T extends AbstractSingleResult> {
 		if (origin2aggMap == null && dest2aggMap == null && !sumOrigins && !sumDestinations) {
 			return;
 		}
-		HashMap<Long, T> destMap = new HashMap<>();
+		HashSet<Long> destIDs = new HashSet<>();
 		for (EdgeMappable d : dest.getObjects()) {
-			long destID = getMappedDestID(d.getOuterID());
-			if(!destMap.containsKey(destID)) {
-				destMap.put(destID, parent.buildEmptyEntry(-1, -1));
-			}
+			destIDs.add(getMappedDestID(d.getOuterID()));
 		}
+		HashSet<Long> srcIDs = new HashSet<>();
 		for (EdgeMappable o : orig.getObjects()) {
-			long srcID = getMappedSrcID(o.getOuterID());
-			// add
-			if (!measurements.containsKey(srcID)) {
-				HashMap<Long, T> nDestMap = new HashMap<>();
-				for(Long l : destMap.keySet()) {
-					nDestMap.put(l, parent.buildEmptyEntry(srcID, l));
-				}
-				measurements.put(srcID, nDestMap);
-			}
+			srcIDs.add(getMappedSrcID(o.getOuterID()));
 		}
-	}
-
-
-	/**
-	 * @brief Builds an aggregation map
-	 * @param orig The layer with unaggregated origins/destinations
-	 * @param dest The aggregation geometries
-	 * @param into The map to store the aggregation within
-	 * @return The number of origins/destination that could not be assigned to an aggregation area
-	 */
-	private int buildAggregationMapping(Layer orig, Layer origAgg, HashMap<Long, Long> into) {
-		// build temporary tree
-		STRtree tree = new STRtree();
-		for (EdgeMappable e : origAgg.getObjects()) {
-			tree.insert(e.getGeometry().getEnvelopeInternal(), e);
+		measurements = new ZoneMatrix<>(srcIDs, destIDs, parent);
+		numSources = new int[measurements.getOriginNumber()];
+		weightSources = new double[measurements.getOriginNumber()];
+		for (EdgeMappable o : orig.getObjects()) {
+			int origin = measurements.getOriginIndex(getMappedSrcID(o.getOuterID()));
+			++numSources[origin];
+			weightSources[origin] += ((LayerObject) o).getAttachedValue();
 		}
-		// build look-up
-		int missing = 0;
-		for (EdgeMappable em : orig.getObjects()) {
-			long destID = -1;
-			Point p = em.getPoint();
-			double viewDist = .1;
-			Envelope env = new Envelope(new Coordinate(p.getX()-viewDist, p.getY()-viewDist), new Coordinate(p.getX()+viewDist, p.getY()+viewDist));
-			List objs = tree.query(env);
-			for(Object o : objs) {
-				EdgeMappable aggArea = (EdgeMappable) o;
-				if (aggArea.getGeometry().contains(em.getPoint())) {
-					destID = aggArea.getOuterID();
-					break;
-				}
-			}
-			if (destID >= 0) {
-				into.put(em.getOuterID(), destID);
-			} else {
-				into.put(em.getOuterID(), -1l);
-				++missing;
-			}
+		// only destinations are aggregated: an origin's row is complete once its sources are processed
+		if (origin2aggMap == null && !sumOrigins) {
+			pendingSources = numSources.clone();
+			writtenOrigins = new boolean[numSources.length];
 		}
-		return missing;
 	}
 
 
@@ -204,8 +174,68 @@ public class Aggregator<T extends AbstractSingleResult> {
 		entry.srcID = getMappedSrcID(entry.srcID);
 		entry.destID = getMappedDestID(entry.destID);
 		// TODO: check if we could write directly if no origin aggregation and destination=="all" add
-		HashMap<Long, T> destMap = measurements.get(entry.srcID);
-		destMap.get(entry.destID).addCounting(entry);
+		measurements.add(entry);
+	}
+	
+
+	/**
+	 * @brief Adds the results of a single origin
+	 * 
+	 * If the measurement generator combines results, the results are
+	 * grouped by the destination they are aggregated into and each group
+	 * is added as one combined result.
+	 * @param results The results to add
+	 * @throws IOException When writing fails
+	 */
+	public void addResults(Vector<T> results) throws IOException {
+		if(!parent.combinesResults()) {
+			for(T entry : results) {
+				add(entry);
+			}
+			return;
+		}
+		LinkedHashMap<Long, Vector<T>> groups = new LinkedHashMap<>();
+		for(T entry : results) {
+			long destID = getMappedDestID(entry.destID);
+			if(!groups.containsKey(destID)) {
+				groups.put(destID, new Vector<>());
+			}
+			groups.get(destID).add(entry);
+		}
+		for(Vector<T> group : groups.values()) {
+			add(parent.combineResults(group));
+		}
+	}
+	
+
+	/**
+	 * @brief Reports that all results of the given origin were added
+	 * 
+	 * If origins are not aggregated, the origin's row is written as soon as
+	 * all sources with the origin's id were reported and its collected
+	 * measures are released, so that the memory needed does not grow with
+	 * the number of origins. Otherwise, nothing is done and the results are
+	 * written when finishing.
+	 * @param srcID The id of the origin
+	 * @throws IOException When writing fails
+	 */
+	public void finishOrigin(long srcID) throws IOException {
+		if (pendingSources == null) {
+			return;
+		}
+		int origin = measurements.getOriginIndex(srcID);
+		synchronized (pendingSources) {
+			if (origin<0 || --pendingSources[origin]>0) {
+				return;
+			}
+		}
+		Vector<T> normed = buildNormed(origin);
+		synchronized (this) {
+			for (T entry : normed) {
+				write(entry);
+			}
+			writtenOrigins[origin] = true;
+		}
 	}
 	
 
@@ -234,28 +264,39 @@ public class Aggregator<T extends AbstractSingleResult> {
 
 	/**
 	 * @brief Finishes writing, optionally generating normed collected measures and flushing outputs
+	 * 
+	 * The aggregated origins are normed in parallel; the normed results are
+	 * written in the order of the origins. Origins already written by 
+	 * finishOrigin are skipped.
+	 * @param numThreads The number of threads to use for norming
 	 * @throws IOException When something fails
 	 */
-	public void finish() throws IOException {
-		Vector<EdgeMappable> sources = fromLayer.getObjects();
-		for (Long srcID : measurements.keySet()) {
-			// compute number of sources in this layer
-			double weightSources = 0;
-			int numSources = 0;
-			for (EdgeMappable o : sources) {
-				long cSrc = getMappedSrcID(o.getOuterID());
-				if(cSrc==srcID) {
-					weightSources += ((LayerObject) o).getAttachedValue();
-					++numSources;
+	public void finish(int numThreads) throws IOException {
+		int numOrigins = measurements!=null ? measurements.getOriginNumber() : 0;
+		numThreads = Math.max(1, numThreads);
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			Vector<Future<Vector<T>>> pending = new Vector<>();
+			int next = 0;
+			for (int i=0; i<numOrigins; ++i) {
+				// keep a bounded number of origins in process
+				while(next<numOrigins && next<i+4*numThreads) {
+					final int origin = next++;
+					pending.add(executor.submit(() -> buildNormed(origin)));
+				}
+				for(T normed : pending.remove(0).get()) {
+					write(normed);
 				}
 			}
-			// build normed results
-			HashMap<Long, T> dests = measurements.get(srcID);
-			for (Long destID : dests.keySet()) {
-				T normed = (T) dests.get(destID).getNormed(numSources, weightSources);
-				write(normed);
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
 			}
-//			flush();
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
 		for (AbstractResultsWriter<T> bw : writers) {
 			bw.close();
@@ -263,6 +304,35 @@ public class Aggregator<T extends AbstractSingleResult> {
 	}
 	
 
+	/**
+	 * @brief Builds the normed results of an aggregated origin and releases its collected measures
+	 * @param origin The ordinal of the origin
+	 * @return The normed results to all destinations
+	 */
+	@SuppressWarnings("unchecked")
+	private Vector<T> buildNormed(int origin) {
+		Vector<T> ret = new Vector<>();
+		if (writtenOrigins != null) {
+			synchronized (this) {
+				if (writtenOrigins[origin]) {
+					return ret;
+				}
+			}
+		}
+		long srcID = measurements.getOriginID(origin);
+		for (int j=0; j<measurements.getDestinationNumber(); ++j) {
+			T cell = measurements.get(origin, j);
+			if(cell==null) {
+				// nothing reached this pair
+				cell = parent.buildEmptyEntry(srcID, measurements.getDestinationID(j));
+			}
+			ret.add((T) cell.getNormed(numSources[origin], weightSources[origin]));
+		}
+		measurements.clearOrigin(origin);
+		return ret;
+	}
+	
+
 	/**
 	 * @brief Returns the ID of the aggregation area the given origin belongs to
 	 * @param srcID The id of the origin
@@ -15,15 +15,25 @@
  */
 package de.dlr.ivf.urmo.router.output;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.WKBWriter;
 import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 
 import de.dlr.ivf.urmo.router.gtfs.GTFSConnection;
 import de.dlr.ivf.urmo.router.io.Utils;
@@ -41,13 +51,55 @@ public abstract class BasicCombinedWriter {
 	protected PreparedStatement _ps = null;
 	/// @brief The name of the table to write to
 	protected String _tableName = null;
+	/// @brief The number of rows added to the batch so far
+	private int _batchCount = 0;
+	/// @brief The projection used for geometries
+	private int _rsid = 0;
+	/// @brief Whether an index on the ids shall be built after writing
+	private boolean _buildIndex = false;
+	/// @}
+
+	/// @{ COPY settings
+	/// @brief Whether the rows are written using COPY
+	private boolean _useCopy = false;
+	/// @brief The stream the rows are copied into (opened with the first row)
+	private PGCopyOutputStream _copyStream = null;
+	/// @brief The values of the current row
+	private String[] _copyFields = new String[16];
+	/// @brief The number of values of the current row
+	private int _copyFieldsNumber = 0;
+	/// @brief The builder for a row's line
+	private StringBuilder _copyLine = new StringBuilder();
+	/// @brief The writer used to encode geometries
+	private WKBWriter _wkbWriter = null;
+	/// @}
+
+	/// @{ SQLite bulk settings
+	/// @brief Whether the rows are inserted into SQLite using multi-row statements
+	private boolean _sqliteBulk = false;
+	/// @brief The statement that inserts several rows at once
+	private PreparedStatement _psMulti = null;
+	/// @brief The number of values per row
+	private int _numColumns = 0;
+	/// @brief The number of rows inserted by _psMulti
+	private int _rowsPerInsert = 0;
+	/// @brief The values of the rows not inserted so far
+	private Object[] _bulkValues = null;
+	/// @brief The number of rows not inserted so far
+	private int _bulkRows = 0;
 	/// @}
 
 	/// @{ file settings
 	/// @brief The writer to use to write to the file
-	protected FileWriter _fileWriter = null;
-	/// @brief The floating point precision format string to use
-	protected String _FS;
+	protected Writer _fileWriter = null;
+	/// @brief The formatter for floating point numbers
+	protected FixedPrecisionFormatter _formatter;
+	/// @brief The builder for the lines to write (reused)
+	private StringBuilder _line = new StringBuilder(256);
+	/// @brief The characters of the line to write (reused)
+	private char[] _lineChars = new char[256];
+	/// @brief The writer for columnar outputs
+	private ColumnarWriter _columnar = null;
 	/// @}
 	
 	/// @brief The file format
@@ -83,17 +135,28 @@ public abstract class BasicCombinedWriter {
 				if(format==Utils.Format.FORMAT_POSTGRES) {
 					((PGConnection) _connection).addDataType("geometry", org.postgis.PGgeometry.class);
 				}
+				if(format==Utils.Format.FORMAT_SQLITE && Utils.getSQLiteBulkOutput()) {
+					// the journal mode can not be changed within a transaction
+					Statement s = _connection.createStatement();
+					s.execute("PRAGMA journal_mode=WAL;");
+					s.execute("PRAGMA synchronous=OFF;");
+					s.close();
+					_sqliteBulk = true;
+				}
 				if(dropPrevious) {
 					String sql = "DROP TABLE IF EXISTS " + _tableName + ";";
 					_connection.createStatement().executeUpdate(sql);
 				}
-				String sql = "CREATE TABLE " + _tableName + " " + tableDef + ";";
+				boolean unlogged = format==Utils.Format.FORMAT_POSTGRES && Utils.getDBUnloggedOutput();
+				String sql = "CREATE " + (unlogged ? "UNLOGGED " : "") + "TABLE " + _tableName + " " + tableDef + ";";
 				Statement s = _connection.createStatement();
 				s.executeUpdate(sql);
 				_connection.setAutoCommit(false);
 				if(format==Utils.Format.FORMAT_POSTGRES) {
 					_allowsComments = true;
+					_useCopy = Utils.getDBCopyOutput();
 				}
+				_buildIndex = Utils.getDBIndexOutput();
 			} catch (SQLException e) {
 				throw new IOException(e);
 			}
@@ -102,8 +165,26 @@ public abstract class BasicCombinedWriter {
 		case FORMAT_SHAPEFILE:
 		case FORMAT_GEOPACKAGE:
 		case FORMAT_SUMO:
-			_fileWriter = new FileWriter(inputParts[0]);
-			_FS = "%." + precision + "f";
+			OutputStream os = new FileOutputStream(inputParts[0]);
+			if(inputParts[0].endsWith(".gz")) {
+				os = new ParallelGZIPOutputStream(os, Utils.getCompressionThreads());
+			}
+			_fileWriter = new BufferedWriter(new OutputStreamWriter(os, Charset.defaultCharset()), 1<<20);
+			_formatter = new FixedPrecisionFormatter(precision);
+			break;
+		case FORMAT_COLUMNAR:
+			OutputStream cos = new FileOutputStream(inputParts[0]);
+			if(inputParts[0].endsWith(".gz")) {
+				cos = new ParallelGZIPOutputStream(cos, Utils.getCompressionThreads());
+			}
+			_columnar = new ColumnarWriter(cos);
+			// the columns are taken from the table definition
+			for(String column : tableDef.substring(tableDef.indexOf('(')+1, tableDef.lastIndexOf(')')).split(",")) {
+				column = column.trim();
+				int split = column.indexOf(' ');
+				_columnar.addColumn(column.substring(0, split), ColumnarWriter.getType(column.substring(split+1)));
+			}
+			_wkbWriter = new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN);
 			break;
 		case FORMAT_UNKNOWN:
 		default:
@@ -121,6 +202,17 @@ public abstract class BasicCombinedWriter {
 	}
 
 
+	/**
+	 * @brief Whether this writer writes rows using the set... methods and addRow
+	 * 
+	 * This is the case for databases and columnar outputs.
+	 * @return Whether rows are written instead of lines
+	 */
+	protected boolean writesRows() {
+		return _connection != null || _columnar != null;
+	}
+
+
 	/**
 	 * @brief Closes the writing process
 	 * @throws IOException When something fails
@@ -128,12 +220,28 @@ public abstract class BasicCombinedWriter {
 	public synchronized void close() throws IOException {
 		if (intoDB()) {
 			try {
-				_ps.executeBatch();
+				if(_useCopy) {
+					if(_copyStream!=null) {
+						_copyStream.endCopy();
+					}
+				} else {
+					insertBulkRows();
+					_ps.executeBatch();
+				}
+				if(_buildIndex) {
+					String columns = getIndexColumns();
+					if(columns!=null) {
+						String name = _tableName.substring(_tableName.lastIndexOf('.')+1) + "_idx";
+						_connection.createStatement().executeUpdate("CREATE INDEX " + name + " ON " + _tableName + " (" + columns + ");");
+					}
+				}
 				_connection.commit();
 				_connection.close();
 			} catch (SQLException e) {
 				throw new IOException(e);
 			}
+		} else if(_columnar!=null) {
+			_columnar.close();
 		} else {
 			_fileWriter.close();
 		}
@@ -176,6 +284,8 @@ public abstract class BasicCombinedWriter {
 			} else if(_format==Utils.Format.FORMAT_SQLITE) {
 				_connection.createStatement().executeUpdate("ALTER TABLE " + _tableName + " ADD COLUMN " + name + " text;");
 				_connection.commit();
+			} else if(_columnar!=null) {
+				_columnar.addColumn(name, ColumnarWriter.TYPE_BINARY);
 			}
 		} catch (SQLException e) {
 			throw new IOException(e);
@@ -191,8 +301,27 @@ public abstract class BasicCombinedWriter {
 		if(_format!=Utils.Format.FORMAT_POSTGRES && _format!=Utils.Format.FORMAT_SQLITE) {
 			return;
 		}
+		_rsid = rsid;
+		if(_useCopy) {
+			// the COPY is started with the first row, so that the table can still be commented
+			_wkbWriter = new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN);
+			return;
+		}
 		try {
-			_ps = _connection.prepareStatement("INSERT INTO " + _tableName + " " + getInsertStatement(_format, rsid) + ";");
+			String values = getInsertStatement(_format, rsid);
+			_ps = _connection.prepareStatement("INSERT INTO " + _tableName + " " + values + ";");
+			if(_sqliteBulk) {
+				// SQLite allows up to 999 parameters per statement
+				_numColumns = values.length() - values.replace("?", "").length();
+				_rowsPerInsert = Math.max(1, 999 / _numColumns);
+				_bulkValues = new Object[_rowsPerInsert*_numColumns];
+				String row = values.substring(values.indexOf('('));
+				StringBuilder sql = new StringBuilder("INSERT INTO " + _tableName + " VALUES ");
+				for(int i=0; i<_rowsPerInsert; ++i) {
+					sql.append(i!=0 ? "," : "").append(row);
+				}
+				_psMulti = _connection.prepareStatement(sql.append(";").toString());
+			}
 		} catch (SQLException e) {
 			throw new IOException(e);
 		}
@@ -207,19 +336,314 @@ public abstract class BasicCombinedWriter {
 	protected abstract String getInsertStatement(Utils.Format format, int rsid);  
 
 	
+	/** @brief Returns the columns to build an index on after writing
+	 * @return The columns to index, null if no index shall be built
+	 */
+	protected String getIndexColumns() {
+		return "fid, sid";
+	}
+	
+	
+	/** @brief Sets a long value of the current database row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set
+	 * @throws SQLException When something fails
+	 */
+	protected void setLong(int index, long value) throws SQLException {
+		if(_useCopy) {
+			setCopyField(index, Long.toString(value));
+		} else if(_sqliteBulk) {
+			setBulkValue(index, value);
+		} else if(_columnar!=null) {
+			_columnar.setLong(index, value);
+		} else {
+			_ps.setLong(index, value);
+		}
+	}
+	
+	
+	/** @brief Sets an int value of the current database row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set
+	 * @throws SQLException When something fails
+	 */
+	protected void setInt(int index, int value) throws SQLException {
+		if(_useCopy) {
+			setCopyField(index, Integer.toString(value));
+		} else if(_sqliteBulk) {
+			setBulkValue(index, value);
+		} else if(_columnar!=null) {
+			_columnar.setLong(index, value);
+		} else {
+			_ps.setInt(index, value);
+		}
+	}
+	
+	
+	/** @brief Sets a float value of the current database row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set
+	 * @throws SQLException When something fails
+	 */
+	protected void setFloat(int index, float value) throws SQLException {
+		if(_useCopy) {
+			setCopyField(index, Float.toString(value));
+		} else if(_sqliteBulk) {
+			setBulkValue(index, value);
+		} else if(_columnar!=null) {
+			_columnar.setDouble(index, value);
+		} else {
+			_ps.setFloat(index, value);
+		}
+	}
+	
+	
+	/** @brief Sets a double value of the current database row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set
+	 * @throws SQLException When something fails
+	 */
+	protected void setDouble(int index, double value) throws SQLException {
+		if(_useCopy) {
+			setCopyField(index, Double.toString(value));
+		} else if(_sqliteBulk) {
+			setBulkValue(index, value);
+		} else if(_columnar!=null) {
+			_columnar.setDouble(index, value);
+		} else {
+			_ps.setDouble(index, value);
+		}
+	}
+	
+	
+	/** @brief Sets a string value of the current database row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set
+	 * @throws SQLException When something fails
+	 */
+	protected void setString(int index, String value) throws SQLException {
+		if(_useCopy) {
+			setCopyField(index, value!=null ? escapeCopyValue(value) : "\\N");
+		} else if(_sqliteBulk) {
+			setBulkValue(index, value);
+		} else if(_columnar!=null) {
+			_columnar.setString(index, value);
+		} else {
+			_ps.setString(index, value);
+		}
+	}
+	
+	
+	/** @brief Sets the geometry of the current database row
+	 * 
+	 * When using COPY, the geometry is sent as hex-encoded EWKB, otherwise
+	 * as WKT. Columnar outputs store the geometry as WKB.
+	 * @param index The index of the column (starting at 1)
+	 * @param geom The geometry to set
+	 * @throws SQLException When something fails
+	 */
+	protected void setGeometry(int index, Geometry geom) throws SQLException {
+		if(_useCopy) {
+			byte[] wkb = _wkbWriter.write(geom);
+			// insert the SRID into the little-endian WKB
+			byte[] ewkb = new byte[wkb.length+4];
+			System.arraycopy(wkb, 0, ewkb, 0, 5);
+			ewkb[4] |= 0x20;
+			ewkb[5] = (byte) _rsid;
+			ewkb[6] = (byte) (_rsid >> 8);
+			ewkb[7] = (byte) (_rsid >> 16);
+			ewkb[8] = (byte) (_rsid >> 24);
+			System.arraycopy(wkb, 5, ewkb, 9, wkb.length-5);
+			setCopyField(index, WKBWriter.toHex(ewkb));
+		} else if(_sqliteBulk) {
+			setBulkValue(index, geom.toText());
+		} else if(_columnar!=null) {
+			_columnar.setBytes(index, _wkbWriter.write(geom));
+		} else {
+			_ps.setString(index, geom.toText());
+		}
+	}
+	
+	
+	/** @brief Adds the current database row
+	 * 
+	 * The rows are either sent using COPY, inserted into SQLite using
+	 * multi-row statements, collected in row groups of a columnar output,
+	 * or collected in batches of 10000 rows.
+	 * @throws SQLException When something fails
+	 */
+	protected void addRow() throws SQLException {
+		if(_columnar!=null) {
+			try {
+				_columnar.addRow();
+			} catch (IOException e) {
+				throw new SQLException(e);
+			}
+			return;
+		}
+		if(_sqliteBulk) {
+			++_bulkRows;
+			if(_bulkRows==_rowsPerInsert) {
+				for(int i=0; i<_bulkValues.length; ++i) {
+					_psMulti.setObject(i+1, _bulkValues[i]);
+				}
+				_psMulti.executeUpdate();
+				_bulkRows = 0;
+			}
+			return;
+		}
+		if(_useCopy) {
+			if(_copyStream==null) {
+				_copyStream = new PGCopyOutputStream((PGConnection) _connection, "COPY " + _tableName + " FROM STDIN", 1<<16);
+			}
+			_copyLine.setLength(0);
+			for(int i=0; i<_copyFieldsNumber; ++i) {
+				if(i!=0) {
+					_copyLine.append('\t');
+				}
+				_copyLine.append(_copyFields[i]);
+			}
+			_copyLine.append('\n');
+			_copyFieldsNumber = 0;
+			try {
+				_copyStream.write(_copyLine.toString().getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new SQLException(e);
+			}
+			return;
+		}
+		_ps.addBatch();
+		++_batchCount;
+		if(_batchCount>10000) {
+			_ps.executeBatch();
+			_batchCount = 0;
+		}
+	}
+	
+	
+	/** @brief Stores a value of the current row to insert into SQLite
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value
+	 */
+	private void setBulkValue(int index, Object value) {
+		_bulkValues[_bulkRows*_numColumns+index-1] = value;
+	}
+	
+	
+	/** @brief Inserts the rows that did not fill a multi-row statement
+	 * @throws SQLException When something fails
+	 */
+	private void insertBulkRows() throws SQLException {
+		if(!_sqliteBulk) {
+			return;
+		}
+		for(int row=0; row<_bulkRows; ++row) {
+			for(int i=0; i<_numColumns; ++i) {
+				_ps.setObject(i+1, _bulkValues[row*_numColumns+i]);
+			}
+			_ps.addBatch();
+		}
+		_bulkRows = 0;
+	}
+	
+	
+	/** @brief Stores a value of the current row to copy
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value as text
+	 */
+	private void setCopyField(int index, String value) {
+		if(index>_copyFields.length) {
+			String[] fields = new String[index*2];
+			System.arraycopy(_copyFields, 0, fields, 0, _copyFields.length);
+			_copyFields = fields;
+		}
+		_copyFields[index-1] = value;
+		_copyFieldsNumber = Math.max(_copyFieldsNumber, index);
+	}
+	
+	
+	/** @brief Escapes a string for the text format of COPY
+	 * @param value The string to escape
+	 * @return The escaped string
+	 */
+	private static String escapeCopyValue(String value) {
+		StringBuilder sb = null;
+		for(int i=0; i<value.length(); ++i) {
+			char c = value.charAt(i);
+			String r = c=='\\' ? "\\\\" : c=='\t' ? "\\t" : c=='\n' ? "\\n" : c=='\r' ? "\\r" : null;
+			if(r!=null && sb==null) {
+				sb = new StringBuilder(value.length()+8);
+				sb.append(value, 0, i);
+			}
+			if(sb!=null) {
+				if(r!=null) {
+					sb.append(r);
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb!=null ? sb.toString() : value;
+	}
+
+	
+	/** @brief Returns the (emptied) builder for the next line to write
+	 * 
+	 * The builder is reused, so a line has to be written before the next
+	 * one is begun.
+	 * @return The line builder
+	 */
+	protected StringBuilder beginLine() {
+		_line.setLength(0);
+		return _line;
+	}
+	
+	
+	/** @brief Appends a floating point number using the set precision
+	 * @param line The line to append the number to
+	 * @param value The number to append
+	 * @return The given line
+	 */
+	protected StringBuilder appendNumber(StringBuilder line, double value) {
+		return _formatter.append(line, value);
+	}
+	
+	
+	/** @brief Writes the given line to the file
+	 * @param line The line to write
+	 * @throws IOException When something fails
+	 */
+	protected void writeLine(StringBuilder line) throws IOException {
+		int length = line.length();
+		if(length>_lineChars.length) {
+			_lineChars = new char[Math.max(length, _lineChars.length*2)];
+		}
+		line.getChars(0, length, _lineChars, 0);
+		_fileWriter.write(_lineChars, 0, length);
+	}
+	
+	
 	/**
 	 * @brief Flushes the results added so far to the database / file
 	 * @throws IOException When something fails
 	 */
 	protected synchronized void flush() throws IOException {
 		if (intoDB()) {
+			if(_useCopy) {
+				if(_copyStream!=null) {
+					_copyStream.flush();
+				}
+				return;
+			}
 			try {
+				insertBulkRows();
 				_ps.executeBatch();
+				_batchCount = 0;
 				_connection.commit();
 			} catch (SQLException e) {
 				throw new IOException(e);
 			}
-		} else {
+		} else if(_fileWriter!=null) {
 			_fileWriter.flush();
 		}
 	}
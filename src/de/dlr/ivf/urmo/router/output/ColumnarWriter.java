@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * @class ColumnarWriter
+ * @brief Writes rows of typed values into a columnar binary file
+ *
+ * The rows are collected in row groups of up to 65536 rows. Each row group
+ * is written column by column, so that a column of a row group can be read
+ * as one array (e.g. using numpy.frombuffer). Strings are dictionary
+ * encoded; each row group has an own dictionary that is written in front
+ * of the row group's columns, so that the dictionaries do not grow with
+ * the number of written rows. tools/other/readUCOL.py reads the files.
+ *
+ * All values are little-endian. The file is laid out as follows:
+ * - int32 magic number ("UCOL"), int32 version, int32 number of columns
+ * - per column: string name, int8 type (see TYPE_*)
+ * - per row group: int32 number of rows (>0), then per dictionary column
+ *   int32 number of the row group's dictionary entries followed by the
+ *   entries (strings), then the columns' values:
+ *   - int32/int64/float32/float64: one value per row
+ *   - dictionary: int32 index of the string within the row group's
+ *     dictionary per row (-1 for null)
+ *   - binary: int32 offsets (number of rows + 1), followed by the bytes
+ * - int32 0 (end of the row groups)
+ *
+ * Strings are written as int32 number of bytes followed by the UTF-8 bytes.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class ColumnarWriter {
+	/// @brief Column type: 32 bit integer
+	public static final byte TYPE_INT32 = 1;
+	/// @brief Column type: 64 bit integer
+	public static final byte TYPE_INT64 = 2;
+	/// @brief Column type: 32 bit floating point number
+	public static final byte TYPE_FLOAT32 = 3;
+	/// @brief Column type: 64 bit floating point number
+	public static final byte TYPE_FLOAT64 = 4;
+	/// @brief Column type: dictionary encoded string
+	public static final byte TYPE_DICTIONARY = 5;
+	/// @brief Column type: variable length bytes (e.g. WKB geometries)
+	public static final byte TYPE_BINARY = 6;
+	/// @brief The magic number the file starts with ("UCOL")
+	private static final int MAGIC = 0x4c4f4355;
+	/// @brief The version of the file format
+	private static final int VERSION = 2;
+	/// @brief The maximum number of rows of a row group
+	private static final int ROW_GROUP_SIZE = 65536;
+
+
+	/**
+	 * @class Column
+	 * @brief A column and the values of the current row group
+	 */
+	private static class Column {
+		/// @brief The name of the column
+		String name;
+		/// @brief The type of the column
+		byte type;
+		/// @brief The values of integer columns and the indices of dictionary columns
+		long[] longs = null;
+		/// @brief The values of floating point columns
+		double[] doubles = null;
+		/// @brief The values of binary columns
+		byte[][] bytes = null;
+		/// @brief The indices of the dictionary entries of the current row group
+		HashMap<String, Integer> dictionary = null;
+		/// @brief The dictionary entries of the current row group
+		Vector<String> entries = null;
+
+
+		/** @brief Constructor
+		 * @param _name The name of the column
+		 * @param _type The type of the column
+		 */
+		Column(String _name, byte _type) {
+			name = _name;
+			type = _type;
+			switch(type) {
+			case TYPE_FLOAT32:
+			case TYPE_FLOAT64:
+				doubles = new double[ROW_GROUP_SIZE];
+				break;
+			case TYPE_BINARY:
+				bytes = new byte[ROW_GROUP_SIZE][];
+				break;
+			case TYPE_DICTIONARY:
+				dictionary = new HashMap<>();
+				entries = new Vector<>();
+				// fall through
+			default:
+				longs = new long[ROW_GROUP_SIZE];
+				break;
+			}
+		}
+	}
+
+
+	/// @brief The channel to write to
+	private WritableByteChannel out;
+	/// @brief The columns
+	private Vector<Column> columns = new Vector<>();
+	/// @brief The number of rows in the current row group
+	private int numRows = 0;
+	/// @brief Whether the header was written
+	private boolean headerWritten = false;
+	/// @brief The buffer used for writing (grown if needed)
+	private ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+
+	/** @brief Constructor
+	 * @param _out The stream to write to
+	 */
+	public ColumnarWriter(OutputStream _out) {
+		out = Channels.newChannel(_out);
+	}
+
+
+	/** @brief Returns the column type to use for the given SQL type
+	 * @param sqlType The SQL type as used in the table definitions
+	 * @return The column type
+	 * @throws IOException If the type is not supported
+	 */
+	public static byte getType(String sqlType) throws IOException {
+		switch(sqlType.trim().toLowerCase()) {
+		case "integer":
+		case "int":
+			return TYPE_INT32;
+		case "bigint":
+			return TYPE_INT64;
+		case "real":
+			return TYPE_FLOAT32;
+		case "double precision":
+			return TYPE_FLOAT64;
+		case "text":
+			return TYPE_DICTIONARY;
+		default:
+			throw new IOException("The type '" + sqlType + "' is not supported by columnar outputs.");
+		}
+	}
+
+
+	/** @brief Adds a column
+	 * @param name The name of the column
+	 * @param type The type of the column
+	 * @throws IOException If rows were already written
+	 */
+	public void addColumn(String name, byte type) throws IOException {
+		if(headerWritten || numRows!=0) {
+			throw new IOException("Columns must be added before the first row.");
+		}
+		columns.add(new Column(name, type));
+	}
+
+
+	/** @brief Sets an integer value of the current row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set
+	 */
+	public void setLong(int index, long value) {
+		Column c = columns.get(index-1);
+		if(c.longs!=null) {
+			c.longs[numRows] = value;
+		} else {
+			c.doubles[numRows] = value;
+		}
+	}
+
+
+	/** @brief Sets a floating point value of the current row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set
+	 */
+	public void setDouble(int index, double value) {
+		Column c = columns.get(index-1);
+		if(c.doubles!=null) {
+			c.doubles[numRows] = value;
+		} else {
+			c.longs[numRows] = (long) value;
+		}
+	}
+
+
+	/** @brief Sets a string value of the current row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set (may be null)
+	 */
+	public void setString(int index, String value) {
+		Column c = columns.get(index-1);
+		if(c.dictionary==null) {
+			c.bytes[numRows] = value!=null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+			return;
+		}
+		if(value==null) {
+			c.longs[numRows] = -1;
+			return;
+		}
+		Integer id = c.dictionary.get(value);
+		if(id==null) {
+			id = c.dictionary.size();
+			c.dictionary.put(value, id);
+			c.entries.add(value);
+		}
+		c.longs[numRows] = id;
+	}
+
+
+	/** @brief Sets a binary value of the current row
+	 * @param index The index of the column (starting at 1)
+	 * @param value The value to set
+	 */
+	public void setBytes(int index, byte[] value) {
+		columns.get(index-1).bytes[numRows] = value;
+	}
+
+
+	/** @brief Adds the current row, writes the row group if it is full
+	 * @throws IOException When something fails
+	 */
+	public void addRow() throws IOException {
+		++numRows;
+		if(numRows==ROW_GROUP_SIZE) {
+			writeRowGroup();
+		}
+	}
+
+
+	/** @brief Writes the remaining rows and the end marker
+	 * @throws IOException When something fails
+	 */
+	public void close() throws IOException {
+		writeRowGroup();
+		buffer.clear();
+		buffer.putInt(0);
+		write();
+		out.close();
+	}
+
+
+	/** @brief Writes the header (if not done before) and the current row group
+	 * @throws IOException When something fails
+	 */
+	private void writeRowGroup() throws IOException {
+		buffer.clear();
+		if(!headerWritten) {
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(columns.size());
+			for(Column c : columns) {
+				putString(c.name);
+				ensure(1);
+				buffer.put(c.type);
+			}
+			headerWritten = true;
+		}
+		if(numRows==0) {
+			write();
+			return;
+		}
+		ensure(4);
+		buffer.putInt(numRows);
+		for(Column c : columns) {
+			if(c.entries!=null) {
+				ensure(4);
+				buffer.putInt(c.entries.size());
+				for(String s : c.entries) {
+					putString(s);
+				}
+				c.entries.clear();
+				c.dictionary.clear();
+			}
+		}
+		for(Column c : columns) {
+			switch(c.type) {
+			case TYPE_INT32:
+			case TYPE_DICTIONARY:
+				ensure(4*numRows);
+				for(int i=0; i<numRows; ++i) {
+					buffer.putInt((int) c.longs[i]);
+				}
+				break;
+			case TYPE_INT64:
+				ensure(8*numRows);
+				for(int i=0; i<numRows; ++i) {
+					buffer.putLong(c.longs[i]);
+				}
+				break;
+			case TYPE_FLOAT32:
+				ensure(4*numRows);
+				for(int i=0; i<numRows; ++i) {
+					buffer.putFloat((float) c.doubles[i]);
+				}
+				break;
+			case TYPE_FLOAT64:
+				ensure(8*numRows);
+				for(int i=0; i<numRows; ++i) {
+					buffer.putDouble(c.doubles[i]);
+				}
+				break;
+			case TYPE_BINARY:
+				ensure(4*(numRows+1));
+				int offset = 0;
+				buffer.putInt(offset);
+				for(int i=0; i<numRows; ++i) {
+					offset += c.bytes[i]!=null ? c.bytes[i].length : 0;
+					buffer.putInt(offset);
+				}
+				for(int i=0; i<numRows; ++i) {
+					if(c.bytes[i]!=null) {
+						ensure(c.bytes[i].length);
+						buffer.put(c.bytes[i]);
+						c.bytes[i] = null;
+					}
+				}
+				break;
+			default:
+				throw new IOException("Unknown column type " + c.type + ".");
+			}
+		}
+		numRows = 0;
+		write();
+	}
+
+
+	/** @brief Appends a string to the buffer
+	 * @param s The string to append
+	 */
+	private void putString(String s) {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		ensure(4+b.length);
+		buffer.putInt(b.length);
+		buffer.put(b);
+	}
+
+
+	/** @brief Grows the buffer if it can not take the given number of bytes
+	 * @param numBytes The number of bytes to add
+	 */
+	private void ensure(int numBytes) {
+		if(buffer.remaining()>=numBytes) {
+			return;
+		}
+		ByteBuffer nb = ByteBuffer.allocate(Math.max(buffer.capacity()*2, buffer.position()+numBytes)).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.flip();
+		nb.put(buffer);
+		buffer = nb;
+	}
+
+
+	/** @brief Writes the buffer's contents
+	 * @throws IOException When something fails
+	 */
+	private void write() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
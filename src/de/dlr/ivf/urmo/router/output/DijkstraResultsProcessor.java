@@ -17,13 +17,16 @@ package de.dlr.ivf.urmo.router.output;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.PriorityQueue;
 import java.util.Vector;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.shapes.DBEdge;
+import de.dlr.ivf.urmo.router.shapes.LayerObject;
 
 /**
  * @class DijkstraResultsProcessor
@@ -37,12 +40,12 @@ public class DijkstraResultsProcessor {
 	HashMap<DBEdge, Vector<MapResult>> nearestToEdges;
 	/// @brief The aggregators to use
 	public Vector<Aggregator> aggs;
-	/// @brief The results comparator to use
-	public AbstractSingleResultComparator_TT comparator = new AbstractSingleResultComparator_TT();
 	/// @brief An optional direct output
 	DirectWriter directWriter;
 	/// @brief The begin time of route computation
 	int beginTime;
+	/// @brief Whether each origin is processed once, so that its results are complete afterwards
+	boolean originsComplete;
 	
 
 	/**
@@ -52,19 +55,29 @@ public class DijkstraResultsProcessor {
 	 * @param _aggs The aggregators to use
 	 * @param _nearestFromEdges A mapping from an edge to allocated sources
 	 * @param _nearestToEdges A mapping from an edge to allocated destinations
+	 * @param _originsComplete Whether each origin is processed once (forward routing without explicit O/D-connections)
 	 */
 	public DijkstraResultsProcessor(int _beginTime, DirectWriter dw, Vector<Aggregator> _aggs,
-			HashMap<DBEdge, Vector<MapResult>> _nearestFromEdges, HashMap<DBEdge, Vector<MapResult>> _nearestToEdges) {
+			HashMap<DBEdge, Vector<MapResult>> _nearestFromEdges, HashMap<DBEdge, Vector<MapResult>> _nearestToEdges,
+			boolean _originsComplete) {
 		aggs = _aggs;
 		nearestFromEdges = _nearestFromEdges;
 		nearestToEdges = _nearestToEdges;
 		directWriter = dw;
 		beginTime = _beginTime;
+		originsComplete = _originsComplete;
 	}
 	
 	
 	/**
 	 * @brief Processes a single result
+	 * 
+	 * The reached destinations and the ones within the bounds are determined
+	 * once for all aggregators; the aggregators' results are only built for
+	 * the accepted destinations.
+	 * 
+	 * If each origin is processed once, the aggregators are told that the
+	 * origin's results are complete afterwards.
 	 * @param mr The origin result
 	 * @param dr The path to process
 	 * @param needsPT Whether only entries that contain a public transport path shall be processed
@@ -75,60 +88,102 @@ public class DijkstraResultsProcessor {
 		if(directWriter!=null) {
 			directWriter.writeResult(dr, mr, needsPT, singleDestination);
 		}
+		if(aggs.size()==0) {
+			return;
+		}
+		Vector<ReachedDestination> accepted = selectDestinations(mr, dr, needsPT, singleDestination);
 		// multiple sources and multiple destinations
 		for(Aggregator agg : aggs) {
 			Vector<AbstractSingleResult> results = new Vector<>();
-			for(DBEdge destEdge : dr.edgeMap.keySet()) {
-				DijkstraEntry toEdgeEntry = dr.getEdgeInfo(destEdge);
-				if(!toEdgeEntry.matchesRequirements(needsPT)) {
-					continue;
-				}
-				Vector<MapResult> toObjects = nearestToEdges.get(destEdge);
-				if(toObjects!=null) {
-					for(MapResult toObject : toObjects) {
-						if(singleDestination<0||toObject.em.getOuterID()==singleDestination) {
-							AbstractSingleResult result = agg.parent.buildResult(beginTime, mr, toObject, dr);
-							results.add(result);
-						}
-					}
-				}
+			for(ReachedDestination reached : accepted) {
+				results.add(agg.parent.buildResult(dr.time, mr, reached, dr));
+			}
+			agg.addResults(results);
+			if(originsComplete) {
+				agg.finishOrigin(mr.em.getOuterID());
+			}
+		}
+	}
+
+
+	/**
+	 * @brief Determines the reached destinations that are within the bounds of the routing result
+	 * 
+	 * Destinations beyond the travel time / distance bounds are skipped.
+	 * The remaining ones are taken in the order of their travel times until
+	 * the bounds on number / variable sum are reached; if such bounds are
+	 * given, only the taken destinations are ordered.
+	 * @param mr The origin result
+	 * @param dr The path to process
+	 * @param needsPT Whether only entries that contain a public transport path shall be processed
+	 * @param singleDestination If >0 only this destination shall be regarded
+	 * @return The accepted destinations, sorted by travel time
+	 */
+	private Vector<ReachedDestination> selectDestinations(MapResult mr, DijkstraResult dr, boolean needsPT, long singleDestination) {
+		Vector<ReachedDestination> candidates = new Vector<>();
+		for(DBEdge destEdge : dr.edgeMap.keySet()) {
+			DijkstraEntry toEdgeEntry = dr.getEdgeInfo(destEdge);
+			if(!toEdgeEntry.matchesRequirements(needsPT)) {
+				continue;
+			}
+			Vector<MapResult> toObjects = nearestToEdges.get(destEdge);
+			if(toObjects==null) {
+				continue;
 			}
-			results.sort(comparator);
-			double var = 0;
-			int num = 0;
-			for(AbstractSingleResult result : results) {
-				if(dr.boundTT>0&&result.tt>dr.boundTT) {
+			for(MapResult toObject : toObjects) {
+				if(singleDestination>=0&&toObject.em.getOuterID()!=singleDestination) {
 					continue;
 				}
-				if(dr.boundDist>0&&result.dist>dr.boundDist) {
+				ReachedDestination reached = new ReachedDestination(mr, toObject, dr);
+				if(dr.boundTT>0&&reached.tt>dr.boundTT) {
 					continue;
 				}
-				agg.add(result);
-				if(dr.shortestOnly) {
-					break;
-				}
-				num += 1;
-				var += result.val;
-				if(dr.boundNumber>0&&num>=dr.boundNumber) {
-					break;
-				}
-				if(dr.boundVar>0&&var>=dr.boundVar) {
-					break;
+				if(dr.boundDist>0&&reached.dist>dr.boundDist) {
+					continue;
 				}
+				candidates.add(reached);
+			}
+		}
+		if(!dr.shortestOnly&&dr.boundNumber<=0&&dr.boundVar<=0) {
+			Collections.sort(candidates);
+			return candidates;
+		}
+		// take the nearest destinations until a bound is reached
+		Vector<ReachedDestination> accepted = new Vector<>();
+		if(candidates.size()==0) {
+			return accepted;
+		}
+		if(dr.shortestOnly) {
+			accepted.add(Collections.min(candidates));
+			return accepted;
+		}
+		PriorityQueue<ReachedDestination> queue = new PriorityQueue<>(candidates);
+		double var = 0;
+		while(!queue.isEmpty()) {
+			ReachedDestination reached = queue.poll();
+			accepted.add(reached);
+			var += ((LayerObject) mr.em).getAttachedValue();
+			if(dr.boundNumber>0&&accepted.size()>=dr.boundNumber) {
+				break;
+			}
+			if(dr.boundVar>0&&var>=dr.boundVar) {
+				break;
 			}
 		}
+		return accepted;
 	}
 
 
 	/**
 	 * @brief Finishes the processing
+	 * @param numThreads The number of threads to use for norming aggregated results
 	 */
-	public void finish() throws IOException {
+	public void finish(int numThreads) throws IOException {
 		if(directWriter!=null) {
 			directWriter.close();
 		}
 		for(Aggregator agg : aggs) {
-			agg.finish();
+			agg.finish(numThreads);
 		}
 	}
 	
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Vector;
+
+import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
+import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
+import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
+import de.dlr.ivf.urmo.router.gtfs.GTFSStop;
+import de.dlr.ivf.urmo.router.io.Utils;
+import de.dlr.ivf.urmo.router.shapes.DBEdge;
+
+/**
+ * @class DirectTreeWriter
+ * @brief Writes the "direct" output as shortest path trees
+ *
+ * Instead of writing each path to each destination, the shortest path tree
+ * of an origin is written once. Each step of the tree is written as a row
+ * that contains the step's number within the tree (nid) and the number of
+ * its predecessor (pid, -1 for the first step). Only steps that are part of
+ * a path to a destination are written.
+ *
+ * A second output assigns the destinations to the tree's steps they are
+ * reached at. A path is reconstructed by following the predecessors from
+ * the destination's step to the origin.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class DirectTreeWriter extends DirectWriter {
+	/// @brief The output of the destinations' steps
+	private LeavesWriter leaves;
+
+
+	/**
+	 * @class LeavesWriter
+	 * @brief Writes the assignment of destinations to the steps of a tree
+	 */
+	private static class LeavesWriter extends BasicCombinedWriter {
+		/**
+		 * @brief Constructor
+		 * @param format The used format
+		 * @param inputParts The definition of the input/output source/destination
+		 * @param precision The floating point precision to use
+		 * @param dropPrevious Whether a previous table with the name shall be dropped
+		 * @throws IOException When something fails
+		 */
+		LeavesWriter(Utils.Format format, String[] inputParts, int precision, boolean dropPrevious) throws IOException {
+			super(format, inputParts, "direct-tree-output", precision, dropPrevious, "(fid bigint, sid bigint, nid integer)");
+		}
+
+
+		/** @brief Get the insert statement string
+		 * @param[in] format The used output format
+		 * @param[in] rsid The used projection
+		 * @return The insert statement string
+		 */
+		protected String getInsertStatement(Utils.Format format, int rsid) {
+			return "VALUES (?, ?, ?)";
+		}
+
+
+		/** @brief Writes the assignment of a destination to a step
+		 * @param fid The id of the origin
+		 * @param sid The id of the destination
+		 * @param nid The number of the step within the origin's tree
+		 * @throws IOException When something fails
+		 */
+		void writeLeaf(long fid, long sid, int nid) throws IOException {
+			if (writesRows()) {
+				try {
+					setLong(1, fid);
+					setLong(2, sid);
+					setInt(3, nid);
+					addRow();
+				} catch (SQLException ex) {
+					throw new IOException(ex);
+				}
+			} else {
+				StringBuilder line = beginLine();
+				line.append(fid).append(';').append(sid).append(';').append(nid).append('\n');
+				writeLine(line);
+			}
+		}
+	}
+
+
+	/**
+	 * @brief Constructor
+	 *
+	 * Opens the connection to a PostGIS database and builds the tables
+	 * @param format The used format
+	 * @param inputParts The definition of the tree output
+	 * @param leavesFormat The format of the destinations output
+	 * @param leavesParts The definition of the destinations output
+	 * @param precision The floating point precision to use
+	 * @param dropPrevious Whether a previous table with the name shall be dropped
+	 * @param rsid The RSID to use
+	 * @param _nearestToEdges A map of edges to assigned destinations
+	 * @param _edgeGeometries The output of the edges' geometries, null if the geometries shall be written into the rows
+	 * @throws IOException When something fails
+	 */
+	public DirectTreeWriter(Utils.Format format, String[] inputParts, Utils.Format leavesFormat, String[] leavesParts,
+			int precision, boolean dropPrevious, int rsid, HashMap<DBEdge, Vector<MapResult>> _nearestToEdges, 
+			EdgeGeometryWriter _edgeGeometries) throws IOException {
+		super(format, inputParts, "direct-tree-output", precision, dropPrevious, rsid, _nearestToEdges, _edgeGeometries,
+				"(fid bigint, nid integer, pid integer, edge text, line text, mode text, tt real, node text)");
+		leaves = new LeavesWriter(leavesFormat, leavesParts, precision, dropPrevious);
+	}
+
+
+	/** @brief Prepare the insert statements of both outputs
+	 * @param[in] rsid The used projection
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void createInsertStatement(int rsid) throws IOException {
+		super.createInsertStatement(rsid);
+		leaves.createInsertStatement(rsid);
+	}
+
+
+	/** @brief Returns the columns to build an index on after writing
+	 * @return The columns to index
+	 */
+	@Override
+	protected String getIndexColumns() {
+		return "fid, nid";
+	}
+
+
+	/**
+	 * @brief Adds a comment to both outputs (if they are database connections)
+	 * @param comment The comment to add
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void addComment(String comment) throws IOException {
+		super.addComment(comment);
+		leaves.addComment(comment);
+	}
+
+
+	/**
+	 * @brief Closes both outputs
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		super.close();
+		leaves.close();
+	}
+
+
+	/**
+	 * @brief Writes the shortest path tree of the result
+	 *
+	 * The paths to the destinations are followed backwards until a step
+	 * that was already written is found; the missing steps are then written
+	 * in driving direction, so that predecessors are written first.
+	 * @param result The result to write
+	 * @param from The origin
+	 * @param needsPT Whether only results that contain a public transport trip shall be written
+	 * @param singleDestination If >0 only this destination shall be regarded
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public synchronized void writeResult(DijkstraResult result, MapResult from, boolean needsPT, long singleDestination) throws IOException {
+		long fid = from.em.getOuterID();
+		IdentityHashMap<DijkstraEntry, Integer> written = new IdentityHashMap<>();
+		Vector<DijkstraEntry> missing = new Vector<>();
+		for(DBEdge e : result.edgeMap.keySet()) {
+			DijkstraEntry toEdgeEntry = result.getEdgeInfo(e);
+			if(!toEdgeEntry.matchesRequirements(needsPT)) {
+				continue;
+			}
+			Vector<MapResult> toObjects = nearestToEdges.get(e);
+			if(toObjects==null) {
+				continue;
+			}
+			for(MapResult toObject : toObjects) {
+				if(singleDestination>=0 && toObject.em.getOuterID()!=singleDestination) {
+					continue;
+				}
+				// collect the steps not written so far
+				missing.clear();
+				DijkstraEntry c = toEdgeEntry;
+				while(c!=null && !written.containsKey(c)) {
+					missing.add(c);
+					c = c.prev;
+				}
+				int pid = c!=null ? written.get(c) : -1;
+				for(int i=missing.size()-1; i>=0; --i) {
+					DijkstraEntry current = missing.get(i);
+					int nid = written.size();
+					writeStep(fid, nid, pid, current);
+					written.put(current, nid);
+					pid = nid;
+				}
+				leaves.writeLeaf(fid, toObject.em.getOuterID(), written.get(toEdgeEntry));
+			}
+		}
+	}
+
+
+	/**
+	 * @brief Writes a single step of the tree
+	 * @param fid The id of the origin
+	 * @param nid The number of the step
+	 * @param pid The number of the previous step, -1 if it is the first one
+	 * @param current The step to write
+	 * @throws IOException When something fails
+	 */
+	private void writeStep(long fid, int nid, int pid, DijkstraEntry current) throws IOException {
+		String id = Long.toString(current.n.id);
+		if(current.n instanceof GTFSStop) {
+			id = ((GTFSStop) current.n).mid;
+		}
+		String routeID = getLineID(current.line);
+		if (writesRows()) {
+			try {
+				setLong(1, fid);
+				setInt(2, nid);
+				setInt(3, pid);
+				setString(4, current.e.id);
+				setString(5, routeID);
+				setString(6, current.usedMode.mml);
+				setDouble(7, current.ttt);
+				setString(8, id);
+				setEdgeGeometry(9, current.e);
+				addRow();
+			} catch (SQLException ex) {
+				throw new IOException(ex);
+			}
+		} else {
+			StringBuilder line = beginLine();
+			line.append(fid).append(';').append(nid).append(';').append(pid).append(';')
+					.append(current.e.id).append(';').append(routeID).append(';').append(current.usedMode.mml).append(';');
+			appendNumber(line, current.ttt).append(';').append(id);
+			appendEdgeGeometry(line, current.e);
+			writeLine(line.append('\n'));
+		}
+	}
+
+}
@@ -19,7 +19,6 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Locale;
 import java.util.Vector;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
@@ -35,10 +34,10 @@ import de.dlr.ivf.urmo.router.shapes.DBEdge;
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  */
 public class DirectWriter extends BasicCombinedWriter {
-	/// @brief Counter of results added to the database / file so far
-	private int batchCount = 0;
 	/// @brief A map of edges to assigned destinations
 	HashMap<DBEdge, Vector<MapResult>> nearestToEdges;
+	/// @brief The output of the edges' geometries, null if the geometries are written into the rows
+	private EdgeGeometryWriter edgeGeometries;
 
 	
 	/**
@@ -51,13 +50,41 @@ public class DirectWriter extends BasicCombinedWriter {
 	 * @param dropPrevious Whether a previous table with the name shall be dropped 
 	 * @param rsid The RSID to use
 	 * @param _nearestToEdges A map of edges to assigned destinations
+	 * @param _edgeGeometries The output of the edges' geometries, null if the geometries shall be written into the rows
 	 * @throws IOException When something fails
 	 */
 	public DirectWriter(Utils.Format format, String[] inputParts, int precision, boolean dropPrevious, 
-			int rsid, HashMap<DBEdge, Vector<MapResult>> _nearestToEdges) throws IOException {
-		super(format, inputParts, "direct-output", precision, dropPrevious,
+			int rsid, HashMap<DBEdge, Vector<MapResult>> _nearestToEdges, EdgeGeometryWriter _edgeGeometries) throws IOException {
+		this(format, inputParts, "direct-output", precision, dropPrevious, rsid, _nearestToEdges, _edgeGeometries,
 				"(fid bigint, sid bigint, edge text, line text, mode text, tt real, node text, idx integer)");
-		addGeometryColumn("geom", rsid, "LINESTRING", 2);
+	}
+	
+	
+	/**
+	 * @brief Constructor for derived outputs with a different table definition
+	 * 
+	 * A geometry column is appended to the given table definition unless
+	 * the geometries are written into an own output. The table must have
+	 * eight columns.
+	 * @param format The used format
+	 * @param inputParts The definition of the input/output source/destination
+	 * @param fileType The name of the output (option name)
+	 * @param precision The floating point precision to use
+	 * @param dropPrevious Whether a previous table with the name shall be dropped 
+	 * @param rsid The RSID to use
+	 * @param _nearestToEdges A map of edges to assigned destinations
+	 * @param _edgeGeometries The output of the edges' geometries, null if the geometries shall be written into the rows
+	 * @param tableDef The definition of the database table 
+	 * @throws IOException When something fails
+	 */
+	protected DirectWriter(Utils.Format format, String[] inputParts, String fileType, int precision, boolean dropPrevious, 
+			int rsid, HashMap<DBEdge, Vector<MapResult>> _nearestToEdges, EdgeGeometryWriter _edgeGeometries, 
+			String tableDef) throws IOException {
+		super(format, inputParts, fileType, precision, dropPrevious, tableDef);
+		edgeGeometries = _edgeGeometries;
+		if(edgeGeometries==null) {
+			addGeometryColumn("geom", rsid, "LINESTRING", 2);
+		}
 		nearestToEdges = _nearestToEdges;
 	}
 	
@@ -68,6 +95,9 @@ public class DirectWriter extends BasicCombinedWriter {
 	 * @return The insert statement string
 	 */
 	protected String getInsertStatement(Utils.Format format, int rsid) {
+		if(edgeGeometries!=null) {
+			return "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+		}
 		if(format==Utils.Format.FORMAT_POSTGRES) {
 			return "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ST_GeomFromText(?, " + rsid + "))";
 		}
@@ -75,6 +105,81 @@ public class DirectWriter extends BasicCombinedWriter {
 	}
 
 
+	/** @brief Prepare the insert statements of this output and of the edges' geometries output
+	 * @param[in] rsid The used projection
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void createInsertStatement(int rsid) throws IOException {
+		super.createInsertStatement(rsid);
+		if(edgeGeometries!=null) {
+			edgeGeometries.createInsertStatement(rsid);
+		}
+	}
+
+
+	/**
+	 * @brief Adds a comment to this output and to the edges' geometries output
+	 * @param comment The comment to add
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void addComment(String comment) throws IOException {
+		super.addComment(comment);
+		if(edgeGeometries!=null) {
+			edgeGeometries.addComment(comment);
+		}
+	}
+
+
+	/**
+	 * @brief Closes this output and the edges' geometries output
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		super.close();
+		if(edgeGeometries!=null) {
+			edgeGeometries.close();
+		}
+	}
+
+
+	/** @brief Sets the geometry of the given edge as the last column of the current row
+	 * 
+	 * If the geometries are written into an own output, the edge is
+	 * written there instead.
+	 * @param index The index of the geometry column (starting at 1)
+	 * @param e The edge
+	 * @throws SQLException When something fails
+	 * @throws IOException When something fails
+	 */
+	protected void setEdgeGeometry(int index, DBEdge e) throws SQLException, IOException {
+		if(edgeGeometries!=null) {
+			edgeGeometries.writeEdge(e);
+		} else {
+			setGeometry(index, e.geom);
+		}
+	}
+
+
+	/** @brief Appends the geometry of the given edge as the last column of the current line
+	 * 
+	 * If the geometries are written into an own output, the edge is
+	 * written there instead.
+	 * @param line The line to append the geometry to
+	 * @param e The edge
+	 * @throws IOException When something fails
+	 */
+	protected void appendEdgeGeometry(StringBuilder line, DBEdge e) throws IOException {
+		if(edgeGeometries!=null) {
+			edgeGeometries.writeEdge(e);
+		} else {
+			line.append(';').append(e.geom.toText());
+		}
+	}
+
+
 	/**
 	 * @brief Writes the "direct" representation of the result
 	 * @param result The result to write
@@ -111,47 +216,33 @@ public class DirectWriter extends BasicCombinedWriter {
 						id = ((GTFSStop) current.n).mid;
 					}
 					String routeID = getLineID(current.line);
-					if (intoDB()) {
+					if (writesRows()) {
 						try {
-							_ps.setLong(1, from.em.getOuterID());
-							_ps.setLong(2, toObject.em.getOuterID());
-							_ps.setString(3, current.e.id);
-							_ps.setString(4, routeID);
-							_ps.setString(5, current.usedMode.mml);
-							_ps.setDouble(6, current.ttt);
-							_ps.setString(7, id);
-							_ps.setInt(8, index);
-							_ps.setString(9, current.e.geom.toText());
-							_ps.addBatch();
-							++batchCount;
-							if(batchCount>100) {
-								_ps.executeBatch();
-								_connection.commit();
-								batchCount = 0;
-							}
+							setLong(1, from.em.getOuterID());
+							setLong(2, toObject.em.getOuterID());
+							setString(3, current.e.id);
+							setString(4, routeID);
+							setString(5, current.usedMode.mml);
+							setDouble(6, current.ttt);
+							setString(7, id);
+							setInt(8, index);
+							setEdgeGeometry(9, current.e);
+							addRow();
 						} catch (SQLException ex) {
 							throw new IOException(ex);
 						}
 					} else {
-						_fileWriter.append(from.em.getOuterID() + ";" + toObject.em.getOuterID() + ";" 
-								+ current.e.id + ";" + routeID + ";"
-								+ current.usedMode.mml + ";"  
-								+ String.format(Locale.US, _FS, current.ttt) + ";" + id + ";" + index + ";"
-								+ current.e.geom.toText() 
-								+ "\n");
+						StringBuilder line = beginLine();
+						line.append(from.em.getOuterID()).append(';').append(toObject.em.getOuterID()).append(';')
+								.append(current.e.id).append(';').append(routeID).append(';').append(current.usedMode.mml).append(';');
+						appendNumber(line, current.ttt).append(';').append(id).append(';').append(index);
+						appendEdgeGeometry(line, current.e);
+						writeLine(line.append('\n'));
 					}
 					++index;
 				}
 			}
 		}
-		if (intoDB()) {
-			try {
-				_ps.executeBatch();
-				_connection.commit();
-			} catch (SQLException ex) {
-				throw new IOException(ex);
-			}	
-		}
 	}
 
 
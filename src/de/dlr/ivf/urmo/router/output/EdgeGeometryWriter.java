@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashSet;
+
+import de.dlr.ivf.urmo.router.io.Utils;
+import de.dlr.ivf.urmo.router.shapes.DBEdge;
+
+/**
+ * @class EdgeGeometryWriter
+ * @brief Writes the geometries of the edges used by path outputs
+ *
+ * Each edge is written once, when it is used for the first time. Path
+ * outputs reference the edges by their ids, the geometries can be obtained
+ * by joining this output on the edge id.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class EdgeGeometryWriter extends BasicCombinedWriter {
+	/// @brief The edges written so far
+	private HashSet<DBEdge> written = new HashSet<>();
+
+
+	/**
+	 * @brief Constructor
+	 *
+	 * Opens the connection to a PostGIS database and builds the table
+	 * @param format The used format
+	 * @param inputParts The definition of the input/output source/destination
+	 * @param precision The floating point precision to use
+	 * @param dropPrevious Whether a previous table with the name shall be dropped
+	 * @param rsid The RSID to use
+	 * @throws IOException When something fails
+	 */
+	public EdgeGeometryWriter(Utils.Format format, String[] inputParts, int precision,
+			boolean dropPrevious, int rsid) throws IOException {
+		super(format, inputParts, "edge-geometries", precision, dropPrevious, "(eid text)");
+		addGeometryColumn("geom", rsid, "LINESTRING", 2);
+	}
+
+
+	/** @brief Get the insert statement string
+	 * @param[in] format The used output format
+	 * @param[in] rsid The used projection
+	 * @return The insert statement string
+	 */
+	protected String getInsertStatement(Utils.Format format, int rsid) {
+		if(format==Utils.Format.FORMAT_POSTGRES) {
+			return "VALUES (?, ST_GeomFromText(?, " + rsid + "))";
+		}
+		return "VALUES (?, ?)";
+	}
+
+
+	/** @brief Returns the columns to build an index on after writing
+	 * @return The columns to index
+	 */
+	@Override
+	protected String getIndexColumns() {
+		return "eid";
+	}
+
+
+	/**
+	 * @brief Writes the given edge's geometry if it was not written before
+	 * @param e The edge to write
+	 * @throws IOException When something fails
+	 */
+	public synchronized void writeEdge(DBEdge e) throws IOException {
+		if(!written.add(e)) {
+			return;
+		}
+		if (writesRows()) {
+			try {
+				setString(1, e.id);
+				setGeometry(2, e.geom);
+				addRow();
+			} catch (SQLException ex) {
+				throw new IOException(ex);
+			}
+		} else {
+			StringBuilder line = beginLine();
+			line.append(e.id).append(';').append(e.geom.toText()).append('\n');
+			writeLine(line);
+		}
+	}
+
+}
@@ -21,9 +21,9 @@ import java.sql.Statement;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Locale;
 import java.util.Vector;
 
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.operation.buffer.validate.DistanceToPointFinder;
 import org.locationtech.jts.operation.buffer.validate.PointPairDistance;
 import org.opengis.referencing.FactoryException;
@@ -72,6 +72,15 @@ public class EdgeMappingWriter extends BasicCombinedWriter {
 	}
 
 
+	/** @brief Returns the columns to build an index on after writing
+	 * @return The columns to index
+	 */
+	@Override
+	protected String getIndexColumns() {
+		return "gid";
+	}
+
+
 	/**
 	 * Writes the mapping results
 	 * @param nearestEdges The map of edges to objects to write
@@ -97,27 +106,27 @@ public class EdgeMappingWriter extends BasicCombinedWriter {
 			for (MapResult o : ress) {
 				PointPairDistance ppd = new PointPairDistance();
 				DistanceToPointFinder.computeDistance(e.geom, o.em.getPoint().getCoordinate(), ppd);
-				if (intoDB()) {
+				if (writesRows()) {
 					try {
-						_ps.setLong(1, o.em.getOuterID());
-						_ps.setString(2, e.id);
-						_ps.setFloat(3, (float) o.pos);
-						_ps.setFloat(4, (float) o.dist);
-						String p1 = ppd.getCoordinate(0).x + " " + ppd.getCoordinate(0).y;
-						String p2 = ppd.getCoordinate(1).x + " " + ppd.getCoordinate(1).y;
-						_ps.setString(5, "LINESTRING(" + p1 + "," + p2 + ")");
-						_ps.addBatch();
+						setLong(1, o.em.getOuterID());
+						setString(2, e.id);
+						setFloat(3, (float) o.pos);
+						setFloat(4, (float) o.dist);
+						setGeometry(5, e.geom.getFactory().createLineString(new Coordinate[]{ppd.getCoordinate(0), ppd.getCoordinate(1)}));
+						addRow();
 					} catch (SQLException ex) {
 						throw new IOException(ex);
 					}
 				} else {
-					_fileWriter.append(o.em.getOuterID() + ";" + e.id + ";" 
-							+ String.format(Locale.US, _FS, o.pos) + ";" 
-							+ String.format(Locale.US, _FS, o.dist) + ";" 
-							+ String.format(Locale.US, _FS, ppd.getCoordinate(0).x) + ";" 
-							+ String.format(Locale.US, _FS, ppd.getCoordinate(0).y) + ";" 
-							+ String.format(Locale.US, _FS, ppd.getCoordinate(1).x) + ";" 
-							+ String.format(Locale.US, _FS, ppd.getCoordinate(1).y) + "\n");
+					StringBuilder line = beginLine();
+					line.append(o.em.getOuterID()).append(';').append(e.id).append(';');
+					appendNumber(line, o.pos).append(';');
+					appendNumber(line, o.dist).append(';');
+					appendNumber(line, ppd.getCoordinate(0).x).append(';');
+					appendNumber(line, ppd.getCoordinate(0).y).append(';');
+					appendNumber(line, ppd.getCoordinate(1).x).append(';');
+					appendNumber(line, ppd.getCoordinate(1).y).append('\n');
+					writeLine(line);
 				}
 			}
 		}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output;
+
+import java.util.Locale;
+
+/**
+ * @class FixedPrecisionFormatter
+ * @brief Appends floating point numbers with a fixed number of decimal places
+ *
+ * The result is the same as the one of String.format(Locale.US, "%.nf", v),
+ * but no format string has to be parsed and no intermediate objects are
+ * built. The number is scaled and rounded using integer arithmetic. Values
+ * that are too large or that lie too close to a rounding boundary to decide
+ * on the rounding exactly are formatted using String.format.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class FixedPrecisionFormatter {
+	/// @brief Powers of ten
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 
+			1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 
+			1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L };
+	/// @brief The largest scaled value that is rounded using integer arithmetic
+	private static final double MAX_SCALED = 1e9;
+	/// @brief The distance to a rounding boundary below which String.format is used
+	private static final double TIE_EPSILON = 1e-6;
+	/// @brief The number of decimal places
+	private final int precision;
+	/// @brief The format string used for the fallback
+	private final String format;
+
+
+	/** @brief Constructor
+	 * @param _precision The number of decimal places
+	 */
+	public FixedPrecisionFormatter(int _precision) {
+		precision = _precision;
+		format = "%." + precision + "f";
+	}
+
+
+	/** @brief Appends the given value
+	 * @param sb The builder to append the value to
+	 * @param v The value to append
+	 * @return The given builder
+	 */
+	public StringBuilder append(StringBuilder sb, double v) {
+		if(precision>=POW10.length) {
+			return sb.append(String.format(Locale.US, format, v));
+		}
+		boolean negative = Double.doubleToRawLongBits(v)<0;
+		double scaled = Math.abs(v) * POW10[precision];
+		// also catches NaN
+		if(!(scaled<MAX_SCALED)) {
+			return sb.append(String.format(Locale.US, format, v));
+		}
+		double floor = Math.floor(scaled);
+		double fraction = scaled - floor;
+		if(Math.abs(fraction-.5)<TIE_EPSILON) {
+			return sb.append(String.format(Locale.US, format, v));
+		}
+		long rounded = (long) floor + (fraction>.5 ? 1 : 0);
+		if(negative) {
+			sb.append('-');
+		}
+		sb.append(rounded / POW10[precision]);
+		if(precision>0) {
+			sb.append('.');
+			long decimals = rounded % POW10[precision];
+			for(int i=precision-1; i>0 && decimals<POW10[i]; --i) {
+				sb.append('0');
+			}
+			sb.append(decimals);
+		}
+		return sb;
+	}
+
+
+	/** @brief Returns the number of decimal places
+	 * @return The precision
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+}
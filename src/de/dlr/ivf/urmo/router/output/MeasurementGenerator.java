@@ -15,6 +15,8 @@
  */
 package de.dlr.ivf.urmo.router.output;
 
+import java.util.Vector;
+
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 
@@ -29,11 +31,11 @@ public abstract class MeasurementGenerator<T extends AbstractSingleResult> {
 	 * @brief Interprets the path to build a result
 	 * @param beginTime The start time of the path
 	 * @param from The origin the path started at
-	 * @param to The destination accessed by this path
+	 * @param reached The destination accessed by this path with the distance and travel time to it
 	 * @param dr The routing result
 	 * @return T - an abstract result type
 	 */
-	public abstract T buildResult(int beginTime, MapResult from, MapResult to, DijkstraResult dr);
+	public abstract T buildResult(int beginTime, MapResult from, ReachedDestination reached, DijkstraResult dr);
 	
 	
 	/**
@@ -44,4 +46,36 @@ public abstract class MeasurementGenerator<T extends AbstractSingleResult> {
 	 */
 	public abstract T buildEmptyEntry(long srcID, long destID);
 
+
+	/**
+	 * @brief Returns whether the results of an origin that are aggregated into the same destination have to be combined
+	 * 
+	 * If so, the results built by buildResult are not added one by one, but
+	 * are combined using combineResults first.
+	 * @return Whether results have to be combined
+	 */
+	public boolean combinesResults() {
+		return false;
+	}
+
+
+	/**
+	 * @brief Combines the results of an origin that are aggregated into the same destination
+	 * 
+	 * The combined result keeps the ids and the origin's value of the first
+	 * result. By default, the measures of all results are added to an empty
+	 * entry using addCounting.
+	 * @param results The results to combine
+	 * @return The combined result
+	 */
+	public T combineResults(Vector<T> results) {
+		T first = results.get(0);
+		T ret = buildEmptyEntry(first.srcID, first.destID);
+		ret.val = first.val;
+		for(T r : results) {
+			ret.addCounting(r);
+		}
+		return ret;
+	}
+
 }
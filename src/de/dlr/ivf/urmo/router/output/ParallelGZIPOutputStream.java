@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @class ParallelGZIPOutputStream
+ * @brief A gzip output stream that compresses on separate threads
+ *
+ * The written data is collected in blocks. Each block is compressed into
+ * an own gzip member by a pool of compressing threads, while an additional
+ * thread writes the compressed members in the order of the blocks. The
+ * resulting file is a valid gzip file that can be read using gzip, zcat
+ * or GZIPInputStream.
+ *
+ * The number of blocks that are compressed or waiting to be written is
+ * bounded, so that writing waits if compression can not keep up. The
+ * threads are daemon threads, so that a stream that is not closed does
+ * not keep the application alive.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+	/// @brief The size of a block
+	private static final int BLOCK_SIZE = 1 << 20;
+	/// @brief Builds the daemon threads used for compressing and writing
+	private static final ThreadFactory DAEMON_THREADS = r -> {
+		Thread t = Executors.defaultThreadFactory().newThread(r);
+		t.setDaemon(true);
+		return t;
+	};
+	/// @brief The stream to write the compressed data to
+	private OutputStream out;
+	/// @brief The threads compressing the blocks
+	private ExecutorService compressors;
+	/// @brief The thread writing the compressed blocks in order
+	private ExecutorService writer;
+	/// @brief Bounds the number of blocks in process
+	private Semaphore pending;
+	/// @brief The block currently filled
+	private byte[] block = new byte[BLOCK_SIZE];
+	/// @brief The number of bytes in the current block
+	private int blockLength = 0;
+	/// @brief The first error that occurred while compressing or writing
+	private volatile IOException error = null;
+	/// @brief Whether the stream was closed
+	private boolean closed = false;
+
+
+	/** @brief Constructor
+	 * @param _out The stream to write the compressed data to
+	 * @param numThreads The number of threads to compress blocks
+	 */
+	public ParallelGZIPOutputStream(OutputStream _out, int numThreads) {
+		out = _out;
+		numThreads = Math.max(1, numThreads);
+		compressors = Executors.newFixedThreadPool(numThreads, DAEMON_THREADS);
+		writer = Executors.newSingleThreadExecutor(DAEMON_THREADS);
+		pending = new Semaphore(2 * numThreads + 1);
+	}
+
+
+	/** @brief Writes a byte
+	 * @param b The byte to write
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		block[blockLength++] = (byte) b;
+		if(blockLength==BLOCK_SIZE) {
+			submitBlock();
+		}
+	}
+
+
+	/** @brief Writes a part of the given bytes
+	 * @param b The bytes to write
+	 * @param off The offset to start at
+	 * @param len The number of bytes to write
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while(len>0) {
+			int num = Math.min(len, BLOCK_SIZE - blockLength);
+			System.arraycopy(b, off, block, blockLength, num);
+			blockLength += num;
+			off += num;
+			len -= num;
+			if(blockLength==BLOCK_SIZE) {
+				submitBlock();
+			}
+		}
+	}
+
+
+	/** @brief Writes the data collected so far, including an incomplete block, and flushes the underlying stream
+	 *
+	 * The incomplete block is written as an own gzip member, so flushing
+	 * often worsens the compression.
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void flush() throws IOException {
+		if(closed) {
+			return;
+		}
+		if(blockLength>0) {
+			submitBlock();
+		}
+		Future<?> flushed = writer.submit(() -> {
+			if(error==null) {
+				out.flush();
+			}
+			return null;
+		});
+		try {
+			flushed.get();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+		checkError();
+	}
+
+
+	/** @brief Writes the remaining data, waits for all blocks to be written and closes the stream
+	 * @throws IOException When something fails
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if(blockLength>0) {
+				submitBlock();
+			}
+			compressors.shutdown();
+			writer.shutdown();
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} finally {
+			compressors.shutdownNow();
+			out.close();
+		}
+		checkError();
+	}
+
+
+	/** @brief Hands the current block over to compression and begins a new one
+	 * @throws IOException When something failed before
+	 */
+	private void submitBlock() throws IOException {
+		checkError();
+		try {
+			pending.acquire();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+		final byte[] data = block;
+		final int length = blockLength;
+		Future<byte[]> compressed = compressors.submit(() -> {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4 + 64);
+			GZIPOutputStream gz = new GZIPOutputStream(bytes, 1 << 16);
+			gz.write(data, 0, length);
+			gz.close();
+			return bytes.toByteArray();
+		});
+		writer.execute(() -> {
+			try {
+				if(error==null) {
+					out.write(compressed.get());
+				}
+			} catch (Exception e) {
+				if(error==null) {
+					error = e instanceof IOException ? (IOException) e : new IOException(e);
+				}
+			} finally {
+				pending.release();
+			}
+		});
+		block = new byte[BLOCK_SIZE];
+		blockLength = 0;
+	}
+
+
+	/** @brief Throws the first error that occurred while compressing or writing
+	 * @throws IOException The error
+	 */
+	private void checkError() throws IOException {
+		if(error!=null) {
+			throw error;
+		}
+	}
+
+}
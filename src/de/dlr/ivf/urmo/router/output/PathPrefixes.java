@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.Vector;
+
+import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
+import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
+import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
+
+/**
+ * @class PathPrefixes
+ * @brief Computes values along the paths of a shortest path tree once per step
+ *
+ * A prefix describes the path from the origin to a step of the tree. It is
+ * computed from the prefix of the step's predecessor, so that the paths to
+ * all destinations of an origin are interpreted in time proportional to the
+ * size of the tree instead of the sum of the paths' lengths.
+ *
+ * The prefixes are kept per thread for the routing result and origin
+ * processed last.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ * @param <P> The type of the prefixes
+ */
+public class PathPrefixes<P> {
+	/**
+	 * @interface Extender
+	 * @brief Computes the prefix of a step from the prefix of its predecessor
+	 */
+	public interface Extender<P> {
+		/** @brief Computes the prefix of the given step
+		 * @param prev The prefix of the step's predecessor, null if the step is the first one
+		 * @param entry The step
+		 * @return The prefix of the step
+		 */
+		public P extend(P prev, DijkstraEntry entry);
+	}
+
+
+	/**
+	 * @class Memo
+	 * @brief The prefixes computed for a routing result and origin
+	 */
+	private static class Memo<P> {
+		/// @brief The routing result the prefixes were computed for
+		DijkstraResult result = null;
+		/// @brief The origin the prefixes were computed for
+		MapResult from = null;
+		/// @brief The computed prefixes
+		IdentityHashMap<DijkstraEntry, P> prefixes = new IdentityHashMap<>();
+		/// @brief The steps the prefixes have to be computed for (reused)
+		Vector<DijkstraEntry> missing = new Vector<>();
+	}
+
+
+	/// @brief The prefixes of the threads
+	private ThreadLocal<Memo<P>> memos = ThreadLocal.withInitial(Memo::new);
+
+
+	/** @brief Returns the prefix of the given step
+	 *
+	 * The prefixes of the step and of its predecessors are computed if they
+	 * were not computed before.
+	 * @param dr The routing result the step belongs to
+	 * @param from The origin of the routing result
+	 * @param entry The step
+	 * @param extender Computes the prefixes
+	 * @return The prefix of the step
+	 */
+	public P get(DijkstraResult dr, MapResult from, DijkstraEntry entry, Extender<P> extender) {
+		Memo<P> memo = memos.get();
+		if(memo.result!=dr || memo.from!=from) {
+			memo.result = dr;
+			memo.from = from;
+			memo.prefixes.clear();
+		}
+		P prefix = null;
+		memo.missing.clear();
+		for(DijkstraEntry c=entry; c!=null; c=c.prev) {
+			prefix = memo.prefixes.get(c);
+			if(prefix!=null) {
+				break;
+			}
+			memo.missing.add(c);
+		}
+		for(int i=memo.missing.size()-1; i>=0; --i) {
+			DijkstraEntry c = memo.missing.get(i);
+			prefix = extender.extend(prefix, c);
+			memo.prefixes.put(c, prefix);
+		}
+		return prefix;
+	}
+
+
+	/** @brief Returns a set that contains the elements of the given set and the given element
+	 *
+	 * The sets are not modified, so that they can be shared by the prefixes
+	 * of succeeding steps. The given set is returned if it already contains
+	 * the element.
+	 * @param set The set to extend (may be null)
+	 * @param element The element to add
+	 * @return An unmodifiable set that contains the element
+	 */
+	public static Set<String> addToSet(Set<String> set, String element) {
+		if(set!=null && set.contains(element)) {
+			return set;
+		}
+		HashSet<String> ret = set!=null ? new HashSet<>(set) : new HashSet<>();
+		ret.add(element);
+		return Collections.unmodifiableSet(ret);
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output;
+
+import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
+import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
+import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
+
+/**
+ * @class ReachedDestination
+ * @brief A destination reached from an origin with the distance and travel time to it
+ *
+ * The distance and travel time regard the positions of the origin and the
+ * destination at their edges. Reached destinations are ordered by their
+ * travel time, then by the destinations' ids.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class ReachedDestination implements Comparable<ReachedDestination> {
+	/// @brief The reached destination
+	public MapResult to;
+	/// @brief The distance to the destination
+	public double dist = 0;
+	/// @brief The travel time to the destination
+	public double tt = 0;
+
+
+	/**
+	 * @brief Constructor
+	 *
+	 * Computes the distance and the travel time
+	 * @param from The mapped source
+	 * @param _to The mapped destination
+	 * @param dr The path between the source and the destination
+	 */
+	public ReachedDestination(MapResult from, MapResult _to, DijkstraResult dr) {
+		to = _to;
+		DijkstraEntry toEdgeEntry = dr.getEdgeInfo(to.edge);
+		double firstTT = toEdgeEntry.first.ttt;
+		if(from.edge==to.edge) {
+			tt = firstTT;
+			if(from.pos>to.pos) {
+				dist = from.pos - to.pos;
+			} else {
+				dist = to.pos - from.pos;
+			}
+			tt = tt / to.edge.length * dist;
+		} else if(from.edge.opposite==to.edge) {
+			tt = firstTT;
+			if(from.pos>(to.edge.length - to.pos)) {
+				dist = from.pos - (to.edge.length - to.pos);
+			} else {
+				dist = (to.edge.length - to.pos) - from.pos;
+			}
+			tt = tt / to.edge.length * dist;
+		} else {
+			dist = toEdgeEntry.distance;
+			tt = toEdgeEntry.tt;
+			if(toEdgeEntry.first.e==from.edge.opposite) {
+				dist -= (from.edge.length - from.pos);
+				tt -= (firstTT - firstTT * from.pos / from.edge.length);
+			} else {
+				dist -= from.pos;
+				tt -= (firstTT * from.pos / from.edge.length);
+			}
+			if(toEdgeEntry.wasOpposite) {
+				dist -= to.pos;
+				tt -= toEdgeEntry.ttt * to.pos / to.edge.length;
+			} else {
+				dist -= (to.edge.length - to.pos);
+				tt -= (toEdgeEntry.ttt - toEdgeEntry.ttt * (to.pos / to.edge.length));
+			}
+		}
+		if(dist<0&&dist>-.1) {
+			dist = 0;
+		}
+		if(tt<0&&tt>-.1) {
+			tt = 0;
+		}
+	}
+
+
+	/**
+	 * @brief Compares the travel times, then the destinations' ids
+	 * @param other The reached destination to compare to
+	 * @return Comparison
+	 */
+	@Override
+	public int compareTo(ReachedDestination other) {
+		if(tt<other.tt) {
+			return -1;
+		} else if(tt>other.tt) {
+			return 1;
+		}
+		return Long.compare(to.em.getOuterID(), other.to.em.getOuterID());
+	}
+
+}
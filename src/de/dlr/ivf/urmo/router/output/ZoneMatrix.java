@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * @class ZoneMatrix
+ * @brief Stores aggregated results indexed by the ordinals of origin and destination zones
+ *
+ * Zones are numbered in ascending order of their ids. The cells of an
+ * origin zone are stored in blocks of BLOCK_SIZE destination zones; blocks
+ * and cells are only allocated when a result is added to them, so that
+ * the memory needed grows with the number of reached zone pairs instead of
+ * the number of all zone pairs.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ * @param <T> The type of the aggregated results
+ */
+public class ZoneMatrix<T extends AbstractSingleResult> {
+	/// @brief The number of destination zones per block
+	private static final int BLOCK_SIZE = 256;
+	/// @brief The ids of the origin zones, sorted
+	private long[] originIDs;
+	/// @brief The ids of the destination zones, sorted
+	private long[] destinationIDs;
+	/// @brief Map from origin zone id to its ordinal
+	private HashMap<Long, Integer> originIndices = new HashMap<>();
+	/// @brief Map from destination zone id to its ordinal
+	private HashMap<Long, Integer> destinationIndices = new HashMap<>();
+	/// @brief The cells by origin ordinal, block, and position within the block
+	private Object[][][] cells;
+	/// @brief The measurements generator used to build empty cells
+	private MeasurementGenerator<T> generator;
+
+
+	/**
+	 * @brief Constructor
+	 * @param origins The ids of the origin zones
+	 * @param destinations The ids of the destination zones
+	 * @param _generator The measurements generator used to build empty cells
+	 */
+	public ZoneMatrix(Collection<Long> origins, Collection<Long> destinations, MeasurementGenerator<T> _generator) {
+		generator = _generator;
+		originIDs = toSortedArray(origins, originIndices);
+		destinationIDs = toSortedArray(destinations, destinationIndices);
+		cells = new Object[originIDs.length][][];
+	}
+
+
+	/** @brief Returns the number of origin zones
+	 * @return The number of origin zones
+	 */
+	public int getOriginNumber() {
+		return originIDs.length;
+	}
+
+
+	/** @brief Returns the number of destination zones
+	 * @return The number of destination zones
+	 */
+	public int getDestinationNumber() {
+		return destinationIDs.length;
+	}
+
+
+	/** @brief Returns the id of the origin zone with the given ordinal
+	 * @param origin The ordinal of the origin zone
+	 * @return The id of the origin zone
+	 */
+	public long getOriginID(int origin) {
+		return originIDs[origin];
+	}
+
+
+	/** @brief Returns the id of the destination zone with the given ordinal
+	 * @param destination The ordinal of the destination zone
+	 * @return The id of the destination zone
+	 */
+	public long getDestinationID(int destination) {
+		return destinationIDs[destination];
+	}
+
+
+	/** @brief Returns the ordinal of the origin zone with the given id
+	 * @param id The id of the origin zone
+	 * @return The ordinal of the origin zone, -1 if it is not known
+	 */
+	public int getOriginIndex(long id) {
+		Integer index = originIndices.get(id);
+		return index!=null ? index : -1;
+	}
+
+
+	/**
+	 * @brief Adds a result to the cell of its (aggregated) origin and destination
+	 * @param entry The result to add
+	 */
+	public void add(T entry) {
+		int origin = originIndices.get(entry.srcID);
+		int destination = destinationIndices.get(entry.destID);
+		getCell(origin, destination).addCounting(entry);
+	}
+
+
+	/**
+	 * @brief Returns the given cell, null if nothing was added to it
+	 * @param origin The ordinal of the origin zone
+	 * @param destination The ordinal of the destination zone
+	 * @return The cell or null
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized T get(int origin, int destination) {
+		Object[][] row = cells[origin];
+		if(row==null || row[destination/BLOCK_SIZE]==null) {
+			return null;
+		}
+		return (T) row[destination/BLOCK_SIZE][destination%BLOCK_SIZE];
+	}
+
+
+	/**
+	 * @brief Releases the cells of the given origin zone
+	 * @param origin The ordinal of the origin zone
+	 */
+	public synchronized void clearOrigin(int origin) {
+		cells[origin] = null;
+	}
+
+
+	/**
+	 * @brief Returns the given cell, building it if needed
+	 * @param origin The ordinal of the origin zone
+	 * @param destination The ordinal of the destination zone
+	 * @return The cell
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized T getCell(int origin, int destination) {
+		if(cells[origin]==null) {
+			cells[origin] = new Object[(destinationIDs.length+BLOCK_SIZE-1)/BLOCK_SIZE][];
+		}
+		Object[][] row = cells[origin];
+		int block = destination / BLOCK_SIZE;
+		if(row[block]==null) {
+			row[block] = new Object[Math.min(BLOCK_SIZE, destinationIDs.length - block*BLOCK_SIZE)];
+		}
+		T cell = (T) row[block][destination%BLOCK_SIZE];
+		if(cell==null) {
+			cell = generator.buildEmptyEntry(originIDs[origin], destinationIDs[destination]);
+			row[block][destination%BLOCK_SIZE] = cell;
+		}
+		return cell;
+	}
+
+
+	/**
+	 * @brief Sorts the given ids and fills the map from id to ordinal
+	 * @param ids The ids to number
+	 * @param indices The map to fill
+	 * @return The sorted ids
+	 */
+	private static long[] toSortedArray(Collection<Long> ids, HashMap<Long, Integer> indices) {
+		TreeSet<Long> sorted = new TreeSet<>(ids);
+		long[] ret = new long[sorted.size()];
+		int i = 0;
+		for(Long id : sorted) {
+			indices.put(id, i);
+			ret[i++] = id;
+		}
+		return ret;
+	}
+
+}
@@ -15,40 +15,203 @@
  */
 package de.dlr.ivf.urmo.router.output.edge_use;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Vector;
+
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.output.MeasurementGenerator;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 import de.dlr.ivf.urmo.router.shapes.LayerObject;
 
 /**
  * @class EUMeasuresGenerator
  * @brief Interprets a path to build an EUSingleResult
+ *
+ * The paths are not followed when building a single result. Instead, the
+ * results of an origin that are aggregated into the same destination are
+ * combined by accumulating the destinations' values up the shortest path
+ * tree, so that each step of the tree is visited once.
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  * @param <T>
  */
 public class EUMeasuresGenerator extends MeasurementGenerator<EUSingleResult> {
+	/**
+	 * @class FlowBuffer
+	 * @brief The steps of the paths to combine and the flows accumulated at them
+	 * 
+	 * The arrays are reused by the combinations done by the same thread.
+	 */
+	private static class FlowBuffer {
+		/// @brief The index of each collected step
+		IdentityHashMap<DijkstraEntry, Integer> indices = new IdentityHashMap<>();
+		/// @brief The collected steps
+		DijkstraEntry[] entries = new DijkstraEntry[1024];
+		/// @brief The index of each step's predecessor (-1 if it's the first one)
+		int[] parents = new int[1024];
+		/// @brief The number of each step's successors that were not yet accumulated
+		int[] pending = new int[1024];
+		/// @brief The sum of the values of the destinations reached over each step
+		double[] values = new double[1024];
+		/// @brief The number of destinations reached over each step
+		double[] counts = new double[1024];
+		/// @brief The number of collected steps
+		int size = 0;
+
+
+		/** @brief Collects the steps of the path ending at the given step
+		 * 
+		 * The path is followed until a step that was already collected is
+		 * reached.
+		 * @param end The last step of the path
+		 * @return The index of the last step
+		 */
+		int addPath(DijkstraEntry end) {
+			int ret = -1;
+			int child = -1;
+			for(DijkstraEntry c=end; c!=null; c=c.prev) {
+				Integer index = indices.get(c);
+				int i = index!=null ? index : add(c);
+				if(child>=0) {
+					parents[child] = i;
+					++pending[i];
+				}
+				if(ret<0) {
+					ret = i;
+				}
+				if(index!=null) {
+					break;
+				}
+				child = i;
+			}
+			return ret;
+		}
+
+
+		/** @brief Adds a step
+		 * @param entry The step to add
+		 * @return The index of the step
+		 */
+		private int add(DijkstraEntry entry) {
+			if(size==entries.length) {
+				int n = size * 2;
+				entries = Arrays.copyOf(entries, n);
+				parents = Arrays.copyOf(parents, n);
+				pending = Arrays.copyOf(pending, n);
+				values = Arrays.copyOf(values, n);
+				counts = Arrays.copyOf(counts, n);
+			}
+			entries[size] = entry;
+			parents[size] = -1;
+			pending[size] = 0;
+			values[size] = 0;
+			counts[size] = 0;
+			indices.put(entry, size);
+			return size++;
+		}
+
+
+		/** @brief Accumulates the flows up the collected tree and adds them to the given result
+		 * 
+		 * A step is processed after all its successors were, so that each
+		 * step is visited once.
+		 * @param into The result to add the flows to
+		 * @param sourcesWeight The weight of the origin
+		 */
+		void accumulate(EUSingleResult into, double sourcesWeight) {
+			int[] stack = new int[size];
+			int stackSize = 0;
+			for(int i=0; i<size; ++i) {
+				if(pending[i]==0) {
+					stack[stackSize++] = i;
+				}
+			}
+			while(stackSize>0) {
+				int i = stack[--stackSize];
+				into.addFlow(entries[i].e, values[i], counts[i]*sourcesWeight);
+				int p = parents[i];
+				if(p>=0) {
+					values[p] += values[i];
+					counts[p] += counts[i];
+					if(--pending[p]==0) {
+						stack[stackSize++] = p;
+					}
+				}
+			}
+		}
+
+
+		/** @brief Removes the collected steps
+		 */
+		void clear() {
+			Arrays.fill(entries, 0, size, null);
+			indices.clear();
+			size = 0;
+		}
+	}
+
+
+	/// @brief The buffers of the threads combining results
+	private ThreadLocal<FlowBuffer> buffers = ThreadLocal.withInitial(FlowBuffer::new);
+
+
 	/**
 	 * @brief Interprets the path to build an EUSingleResult
+	 * 
+	 * The path is only stored; the edges' usage is computed when
+	 * combining the results.
 	 * @param beginTime The start time of the path
 	 * @param from The origin the path started at
-	 * @param to The destination accessed by this path
+	 * @param reached The destination accessed by this path with the distance and travel time to it
 	 * @param dr The routing result
 	 * @return An EUSingleResult computed using the given path
 	 */
-	public EUSingleResult buildResult(int beginTime, MapResult from, MapResult to, DijkstraResult dr) {
-		DijkstraEntry current = dr.getEdgeInfo(to.edge);
-		EUSingleResult e = new EUSingleResult(from.em.getOuterID(), to.em.getOuterID(), from, to, dr);
-		double value = ((LayerObject) to.em).getAttachedValue() * e.val;
-		do {
-			DijkstraEntry next = current;
-			e.addSingle(next.e, value, e.val);
-			current = current.prev;
-		} while(current!=null);
+	public EUSingleResult buildResult(int beginTime, MapResult from, ReachedDestination reached, DijkstraResult dr) {
+		MapResult to = reached.to;
+		EUSingleResult e = new EUSingleResult(from.em.getOuterID(), to.em.getOuterID(), from, reached);
+		e.pathEnd = dr.getEdgeInfo(to.edge);
+		e.pathValue = ((LayerObject) to.em).getAttachedValue() * e.val;
 		return e;
 	}	
 	
 	
+	/**
+	 * @brief Returns that results have to be combined
+	 * @return Always true
+	 */
+	@Override
+	public boolean combinesResults() {
+		return true;
+	}
+
+
+	/**
+	 * @brief Combines the results of an origin by accumulating their flows up the shortest path tree
+	 * @param results The results to combine
+	 * @return The combined result
+	 */
+	@Override
+	public EUSingleResult combineResults(Vector<EUSingleResult> results) {
+		EUSingleResult first = results.get(0);
+		EUSingleResult ret = new EUSingleResult(first.srcID, first.destID);
+		ret.val = first.val;
+		FlowBuffer buffer = buffers.get();
+		try {
+			for(EUSingleResult r : results) {
+				int end = buffer.addPath(r.pathEnd);
+				buffer.values[end] += r.pathValue;
+				buffer.counts[end] += 1;
+			}
+			buffer.accumulate(ret, first.val);
+		} finally {
+			buffer.clear();
+		}
+		return ret;
+	}
+	
+	
 	/**
 	 * @brief Builds an empty entry of type EUSingleResult
 	 * @param srcID The id of the origin the path started at
@@ -19,8 +19,9 @@ import java.util.HashMap;
 import java.util.Map;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
-import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
+import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
 import de.dlr.ivf.urmo.router.output.AbstractSingleResult;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 import de.dlr.ivf.urmo.router.shapes.DBEdge;
 
 /**
@@ -44,6 +45,10 @@ public class EUSingleResult extends AbstractSingleResult {
 	
 	/// @brief Map of edges to numbers
 	public Map<String, EdgeParam> stats = new HashMap<>(); 
+	/// @brief The routing element the path ends at (the stats are filled when combining results)
+	DijkstraEntry pathEnd = null;
+	/// @brief The destination's value weighted by the origin's one
+	double pathValue = 0;
 	
 	
 	/**
@@ -61,15 +66,14 @@ public class EUSingleResult extends AbstractSingleResult {
 	/**
 	 * @brief Constructor 
 	 * 
-	 * Computes the distance and the travel time
+	 * Takes the distance and the travel time from the reached destination
 	 * @param srcID The id of the origin the represented trip starts at
 	 * @param destID The id of the destination the represented trip ends at
 	 * @param from The mapped source
-	 * @param to The mapped destination
-	 * @param dr The path between the source and the destination
+	 * @param reached The reached destination with the distance and travel time to it
 	 */
-	public EUSingleResult(long srcID, long destID, MapResult from, MapResult to, DijkstraResult dr) {
-		super(srcID, destID, from, to, dr);
+	public EUSingleResult(long srcID, long destID, MapResult from, ReachedDestination reached) {
+		super(srcID, destID, from, reached);
 	}
 	
 	
@@ -126,4 +130,21 @@ public class EUSingleResult extends AbstractSingleResult {
 		curr.num += value;
 		curr.sourcesWeight = sourcesWeight;
 	}
+	
+
+	/**
+	 * @brief Adds the flow of several paths over a single edge
+	 * @param e The edge to add the information about
+	 * @param value The sum of the (variable) values of the paths' destinations
+	 * @param sourcesWeight The sum of the source's weight over the paths
+	 */
+	void addFlow(DBEdge e, double value, double sourcesWeight) {
+		EdgeParam curr = stats.get(e.id);
+		if(curr==null) {
+			curr = new EdgeParam();
+			stats.put(e.id, curr);
+		}
+		curr.num += value;
+		curr.sourcesWeight += sourcesWeight;
+	}
 }
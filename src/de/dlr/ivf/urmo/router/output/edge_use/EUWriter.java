@@ -17,7 +17,6 @@ package de.dlr.ivf.urmo.router.output.edge_use;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Locale;
 
 import de.dlr.ivf.urmo.router.io.Utils;
 import de.dlr.ivf.urmo.router.output.AbstractResultsWriter;
@@ -29,8 +28,6 @@ import de.dlr.ivf.urmo.router.output.edge_use.EUSingleResult.EdgeParam;
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  */
 public class EUWriter extends AbstractResultsWriter<EUSingleResult> {
-	/// @brief Counter of results added to the database / file so far
-	private int batchCount = 0;
 	
 	
 	/**
@@ -66,22 +63,17 @@ public class EUWriter extends AbstractResultsWriter<EUSingleResult> {
 	 */
 	@Override
 	public void writeResult(EUSingleResult result) throws IOException {
-		if (intoDB()) {
+		if (writesRows()) {
 			try {
 				for(String id : result.stats.keySet()) {
 					EdgeParam ep = result.stats.get(id);
-						_ps.setLong(1, result.srcID);
-						_ps.setLong(2, result.destID);
-						_ps.setString(3, id);
-						_ps.setFloat(4, (float) ep.num);
-						_ps.setFloat(5, (float) ep.sourcesWeight);
-						_ps.setFloat(6, (float) (ep.num / ep.sourcesWeight));
-						_ps.addBatch();
-						++batchCount;
-						if(batchCount>10000) {
-							_ps.executeBatch();
-							batchCount = 0;
-						}
+						setLong(1, result.srcID);
+						setLong(2, result.destID);
+						setString(3, id);
+						setFloat(4, (float) ep.num);
+						setFloat(5, (float) ep.sourcesWeight);
+						setFloat(6, (float) (ep.num / ep.sourcesWeight));
+						addRow();
 				}
 			} catch (SQLException ex) {
 				throw new IOException(ex);
@@ -89,10 +81,12 @@ public class EUWriter extends AbstractResultsWriter<EUSingleResult> {
 		} else {
 			for(String id : result.stats.keySet()) {
 				EdgeParam ep = result.stats.get(id);
-				_fileWriter.append(result.srcID + ";" + result.destID + ";" + id + ";" 
-						+ String.format(Locale.US, _FS, ep.num) + ";" 
-						+ String.format(Locale.US, _FS, ep.sourcesWeight) + ";" 
-						+ String.format(Locale.US, _FS, (ep.num / ep.sourcesWeight)) + "\n");
+				StringBuilder line = beginLine();
+				line.append(result.srcID).append(';').append(result.destID).append(';').append(id).append(';');
+				appendNumber(line, ep.num).append(';');
+				appendNumber(line, ep.sourcesWeight).append(';');
+				appendNumber(line, ep.num / ep.sourcesWeight).append('\n');
+				writeLine(line);
 			}
 		}
 	}
@@ -20,45 +20,67 @@ import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.gtfs.GTFSStop;
 import de.dlr.ivf.urmo.router.output.MeasurementGenerator;
+import de.dlr.ivf.urmo.router.output.PathPrefixes;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 
 /**
  * @class InterchangeMeasuresGenerator
  * @brief Interprets a path to build an InterchangeSingleResult
+ *
+ * The interchanges are collected once per step of the shortest path tree
+ * (see PathPrefixes); the interchanges of a path are kept as a list that is
+ * shared with the paths that continue it.
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  * @param <T>
  */
 public class InterchangeMeasuresGenerator extends MeasurementGenerator<InterchangeSingleResult> {
+	/**
+	 * @class Interchange
+	 * @brief An interchange on a path and the interchanges before it
+	 */
+	private static class Interchange {
+		/// @brief The id of the halt the interchange takes place at
+		final String haltID;
+		/// @brief The key of the changed lines
+		final String key;
+		/// @brief The interchange before this one, null if this is the path's begin
+		final Interchange before;
+
+
+		/** @brief Constructor
+		 * @param _haltID The id of the halt the interchange takes place at
+		 * @param _key The key of the changed lines
+		 * @param _before The interchange before this one
+		 */
+		Interchange(String _haltID, String _key, Interchange _before) {
+			haltID = _haltID;
+			key = _key;
+			before = _before;
+		}
+	}
+
+
+	/// @brief The begin of the paths, used for paths without interchanges
+	private static final Interchange BEGIN = new Interchange(null, null, null);
+	/// @brief The interchanges computed for the processed origins
+	private PathPrefixes<Interchange> prefixes = new PathPrefixes<>();
+
+
 	/**
 	 * @brief Interprets the path to build an InterchangeSingleResult
 	 * @param beginTime The start time of the path
 	 * @param from The origin the path started at
-	 * @param to The destination accessed by this path
+	 * @param reached The destination accessed by this path with the distance and travel time to it
 	 * @param dr The routing result
 	 * @return An InterchangeSingleResult computed using the given path
 	 */
-	public InterchangeSingleResult buildResult(int beginTime, MapResult from, MapResult to, DijkstraResult dr) {
-		DijkstraEntry current = dr.getEdgeInfo(to.edge);
+	public InterchangeSingleResult buildResult(int beginTime, MapResult from, ReachedDestination reached, DijkstraResult dr) {
+		MapResult to = reached.to;
 		InterchangeSingleResult e = new InterchangeSingleResult(from.em.getOuterID(), to.em.getOuterID());
-		
-		do {
-			DijkstraEntry next = current;
-			current = current.prev;
-			if(current==null) {
-				continue;
-			}
-			if( (next.line==null&&current.line==null) || (next.line!=null && next.line.equals(current.line)&&next.usedMode.equals(current.usedMode)) ) {
-				continue;
-			}
-			//++numInterchanges;
-			String currentLine = current.buildLineModeID();
-			String nextLine = next.buildLineModeID();
-			String key = InterchangeSingleResult.buildLinesKey(currentLine, nextLine);
-			String haltID = Long.toString(current.n.id);
-			if(current.n instanceof GTFSStop) {
-				haltID = ((GTFSStop) current.n).mid;
-			}
-			e.addSingle(haltID, key, 1, 0);
-		} while(current!=null);
+		Interchange i = prefixes.get(dr, from, dr.getEdgeInfo(to.edge), (prev, entry) -> extend(prev, entry));
+		for(; i!=BEGIN; i=i.before) {
+			e.addSingle(i.haltID, i.key, 1, 0);
+		}
 		
 		/*
 		if(numInterchanges>5) {
@@ -97,6 +119,31 @@ public class InterchangeMeasuresGenerator extends MeasurementGenerator<Interchan
 	}	
 	
 	
+	/**
+	 * @brief Returns the last interchange on the path to the given step
+	 * @param prev The last interchange on the path to the predecessor, null if the step is the first one
+	 * @param next The step
+	 * @return The last interchange on the path to the step
+	 */
+	private Interchange extend(Interchange prev, DijkstraEntry next) {
+		DijkstraEntry current = next.prev;
+		if(current==null) {
+			return BEGIN;
+		}
+		if( (next.line==null&&current.line==null) || (next.line!=null && next.line.equals(current.line)&&next.usedMode.equals(current.usedMode)) ) {
+			return prev;
+		}
+		String currentLine = current.buildLineModeID();
+		String nextLine = next.buildLineModeID();
+		String key = InterchangeSingleResult.buildLinesKey(currentLine, nextLine);
+		String haltID = Long.toString(current.n.id);
+		if(current.n instanceof GTFSStop) {
+			haltID = ((GTFSStop) current.n).mid;
+		}
+		return new Interchange(haltID, key, prev);
+	}
+	
+	
 	/**
 	 * @brief Builds an empty entry of type InterchangeSingleResult
 	 * @param srcID The id of the origin the path started at
@@ -17,7 +17,6 @@ package de.dlr.ivf.urmo.router.output.interchanges;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Locale;
 import java.util.Map;
 
 import de.dlr.ivf.urmo.router.io.Utils;
@@ -30,8 +29,6 @@ import de.dlr.ivf.urmo.router.output.interchanges.InterchangeSingleResult.Interc
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  */
 public class InterchangeWriter extends AbstractResultsWriter<InterchangeSingleResult> {
-	/// @brief Counter of results added to the database / file so far
-	private int batchCount = 0;
 	
 	
 	/**
@@ -67,27 +64,22 @@ public class InterchangeWriter extends AbstractResultsWriter<InterchangeSingleRe
 	 */
 	@Override
 	public void writeResult(InterchangeSingleResult result) throws IOException {
-		if (intoDB()) {
+		if (writesRows()) {
 			try {
 				for(String id : result.stats.keySet()) {
 					Map<String, InterchangeParam> ssstats = result.stats.get(id);
 					for(String id2 : ssstats.keySet()) {
 						String[] lineIDs = InterchangeSingleResult.splitLinesKey(id2);
-							_ps.setLong(1, result.srcID);
-							_ps.setLong(2, result.destID);
-							_ps.setString(3, id);
-							_ps.setString(4, lineIDs[0]);
-							_ps.setString(5, lineIDs[1]);
-							_ps.setLong(6, ssstats.get(id2).number);
-							_ps.setFloat(7, (float) ssstats.get(id2).weightedTT);
-							_ps.addBatch();
-							++batchCount;
+							setLong(1, result.srcID);
+							setLong(2, result.destID);
+							setString(3, id);
+							setString(4, lineIDs[0]);
+							setString(5, lineIDs[1]);
+							setLong(6, ssstats.get(id2).number);
+							setFloat(7, (float) ssstats.get(id2).weightedTT);
+							addRow();
 					}
 				}
-				if(batchCount>10000) {
-					_ps.executeBatch();
-					batchCount = 0;
-				}
 			} catch (SQLException ex) {
 				throw new IOException(ex);
 			}
@@ -96,10 +88,10 @@ public class InterchangeWriter extends AbstractResultsWriter<InterchangeSingleRe
 				Map<String, InterchangeParam> ssstats = result.stats.get(id);
 				for(String id2 : ssstats.keySet()) {
 					String[] lineIDs = InterchangeSingleResult.splitLinesKey(id2);
-					_fileWriter.append(result.srcID + ";" + result.destID + ";" + id + ";" + 
-							lineIDs[0] + ";" + lineIDs[1] + ";" 
-							+ ssstats.get(id2).number + ";" 
-							+ String.format(Locale.US, _FS, ssstats.get(id2).weightedTT) + "\n");
+					StringBuilder line = beginLine();
+					line.append(result.srcID).append(';').append(result.destID).append(';').append(id).append(';').append(lineIDs[0]).append(';').append(lineIDs[1]).append(';').append(ssstats.get(id2).number).append(';');
+					appendNumber(line, ssstats.get(id2).weightedTT).append('\n');
+					writeLine(line);
 				}
 			}
 			
@@ -18,6 +18,7 @@ package de.dlr.ivf.urmo.router.output.od;
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.output.MeasurementGenerator;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 import de.dlr.ivf.urmo.router.shapes.LayerObject;
 
 /**
@@ -31,12 +32,13 @@ public class ODMeasuresGenerator extends MeasurementGenerator<ODSingleResult> {
 	 * @brief Interprets the path to build an ODSingleResult
 	 * @param beginTime The start time of the path
 	 * @param from The origin the path started at
-	 * @param to The destination accessed by this path
+	 * @param reached The destination accessed by this path with the distance and travel time to it
 	 * @param dr The routing result
 	 * @return An ODSingleResult computed using the given path
 	 */
-	public ODSingleResult buildResult(int beginTime, MapResult from, MapResult to, DijkstraResult dr) {
-		ODSingleResult e = new ODSingleResult(from.em.getOuterID(), to.em.getOuterID(), from, to, dr);
+	public ODSingleResult buildResult(int beginTime, MapResult from, ReachedDestination reached, DijkstraResult dr) {
+		MapResult to = reached.to;
+		ODSingleResult e = new ODSingleResult(from.em.getOuterID(), to.em.getOuterID(), from, reached);
 		e.weightedDistance = e.dist * e.val;
 		e.weightedTravelTime = e.tt * e.val;
 		e.weightedValue = ((LayerObject) to.em).getAttachedValue() * e.val;
@@ -16,8 +16,8 @@
 package de.dlr.ivf.urmo.router.output.od;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
-import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.output.AbstractSingleResult;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 
 /**
  * @class ODSingleResult
@@ -50,15 +50,14 @@ public class ODSingleResult extends AbstractSingleResult {
 	/**
 	 * @brief Constructor 
 	 * 
-	 * Computes the distance and the travel time
+	 * Takes the distance and the travel time from the reached destination
 	 * @param srcID The id of the origin the represented trip starts at
 	 * @param destID The id of the destination the represented trip ends at
 	 * @param from The mapped source
-	 * @param to The mapped destination
-	 * @param dr The path between the source and the destination
+	 * @param reached The reached destination with the distance and travel time to it
 	 */
-	public ODSingleResult(long srcID, long destID, MapResult from, MapResult to, DijkstraResult dr) {
-		super(srcID, destID, from, to, dr);
+	public ODSingleResult(long srcID, long destID, MapResult from, ReachedDestination reached) {
+		super(srcID, destID, from, reached);
 	}
 	
 	
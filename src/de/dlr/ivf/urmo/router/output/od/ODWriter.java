@@ -17,7 +17,6 @@ package de.dlr.ivf.urmo.router.output.od;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Locale;
 
 import de.dlr.ivf.urmo.router.io.Utils;
 import de.dlr.ivf.urmo.router.output.AbstractResultsWriter;
@@ -28,8 +27,6 @@ import de.dlr.ivf.urmo.router.output.AbstractResultsWriter;
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  */
 public class ODWriter extends AbstractResultsWriter<ODSingleResult> {
-	/// @brief Counter of results added to the database / file so far
-	private int batchCount = 0;
 		
 	
 	/**
@@ -66,29 +63,26 @@ public class ODWriter extends AbstractResultsWriter<ODSingleResult> {
 	 */
 	@Override
 	public void writeResult(ODSingleResult result) throws IOException {
-		if (intoDB()) {
+		if (writesRows()) {
 			try {
-				_ps.setLong(1, result.srcID);
-				_ps.setLong(2, result.destID);
-				_ps.setFloat(3, (float) result.weightedDistance);
-				_ps.setFloat(4, (float) result.weightedTravelTime);
-				_ps.setFloat(5, (float) result.connectionsWeightSum);
-				_ps.setFloat(6, (float) result.weightedValue);
-				_ps.addBatch();
-				++batchCount;
-				if(batchCount>10000) {
-					_ps.executeBatch();
-					batchCount = 0;
-				}
+				setLong(1, result.srcID);
+				setLong(2, result.destID);
+				setFloat(3, (float) result.weightedDistance);
+				setFloat(4, (float) result.weightedTravelTime);
+				setFloat(5, (float) result.connectionsWeightSum);
+				setFloat(6, (float) result.weightedValue);
+				addRow();
 			} catch (SQLException ex) {
 				throw new IOException(ex);
 			}
 		} else {
-			_fileWriter.append(result.srcID + ";" + result.destID + ";" 
-					+ String.format(Locale.US, _FS, result.weightedDistance) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedTravelTime) + ";"
-					+ String.format(Locale.US, _FS, result.connectionsWeightSum) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedValue) + "\n");
+			StringBuilder line = beginLine();
+			line.append(result.srcID).append(';').append(result.destID).append(';');
+			appendNumber(line, result.weightedDistance).append(';');
+			appendNumber(line, result.weightedTravelTime).append(';');
+			appendNumber(line, result.connectionsWeightSum).append(';');
+			appendNumber(line, result.weightedValue).append('\n');
+			writeLine(line);
 		}
 	}
 
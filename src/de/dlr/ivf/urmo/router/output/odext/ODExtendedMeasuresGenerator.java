@@ -15,6 +15,7 @@
  */
 package de.dlr.ivf.urmo.router.output.odext;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -22,27 +23,109 @@ import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.output.MeasurementGenerator;
+import de.dlr.ivf.urmo.router.output.PathPrefixes;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 import de.dlr.ivf.urmo.router.shapes.DBEdge;
 import de.dlr.ivf.urmo.router.shapes.LayerObject;
 
 /**
  * @class ODExtendedMeasuresGenerator
  * @brief Interprets a path to build an ODSingleExtendedResult
+ *
+ * The measures are computed once per step of the shortest path tree as
+ * prefixes along the paths (see PathPrefixes). The result for a destination
+ * is then built from the prefix of the step it is reached at, correcting the
+ * contribution of the partially used last edge.
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  * @param <T>
  */
 public class ODExtendedMeasuresGenerator extends MeasurementGenerator<ODSingleExtendedResult> {
+	/**
+	 * @class Prefix
+	 * @brief The measures of a path from the origin to a step of the tree
+	 *
+	 * The first step is weighted by the used part of the origin's edge.
+	 */
+	private static class Prefix {
+		/// @brief Consumed kcal
+		double kcal = 0;
+		/// @brief Price
+		double price = 0;
+		/// @brief Emitted CO2
+		double co2 = 0;
+		/// @brief Travel time before the first public transport step
+		double access = 0;
+		/// @brief Travel time since the last public transport step
+		double egress = 0;
+		/// @brief Number of interchanges
+		double interchanges = 0;
+		/// @brief Interchange time
+		double interchangeTime = 0;
+		/// @brief Waiting time
+		double waitingTime = 0;
+		/// @brief Waiting time at the first public transport step
+		double initialWaitingTime = 0;
+		/// @brief Travel time within public transport
+		double ptTravelTime = 0;
+		/// @brief Whether a public transport step was passed
+		boolean hadPT = false;
+		/// @brief The trip of the last public transport step
+		String lastTrip = null;
+		/// @brief The used lines / modes
+		Set<String> lines = null;
+		/// @brief The lines a fare was paid for (see DBEdge.getPrice)
+		Set<String> paidLines = null;
+		/// @brief The kcal consumed at this step
+		double stepKCal = 0;
+		/// @brief The price of this step
+		double stepPrice = 0;
+		/// @brief The CO2 emitted at this step
+		double stepCO2 = 0;
+		/// @brief The travel time of this step
+		double stepTT = 0;
+
+
+		/** @brief Constructor
+		 * @param prev The prefix to continue, null if this is the first step
+		 */
+		Prefix(Prefix prev) {
+			if(prev==null) {
+				return;
+			}
+			kcal = prev.kcal;
+			price = prev.price;
+			co2 = prev.co2;
+			access = prev.access;
+			egress = prev.egress;
+			interchanges = prev.interchanges;
+			interchangeTime = prev.interchangeTime;
+			waitingTime = prev.waitingTime;
+			initialWaitingTime = prev.initialWaitingTime;
+			ptTravelTime = prev.ptTravelTime;
+			hadPT = prev.hadPT;
+			lastTrip = prev.lastTrip;
+			lines = prev.lines;
+			paidLines = prev.paidLines;
+		}
+	}
+
+
+	/// @brief The prefixes computed for the processed origins
+	private PathPrefixes<Prefix> prefixes = new PathPrefixes<>();
+
+
 	/**
 	 * @brief Interprets the path to build an ODSingleExtendedResult
 	 * @param beginTime The start time of the path
 	 * @param from The origin the path started at
-	 * @param to The destination accessed by this path
+	 * @param reached The destination accessed by this path with the distance and travel time to it
 	 * @param dr The routing result
 	 * @return An ODSingleExtendedResult computed using the given path
 	 */
-	public ODSingleExtendedResult buildResult(int beginTime, MapResult from, MapResult to, DijkstraResult dr) {
+	public ODSingleExtendedResult buildResult(int beginTime, MapResult from, ReachedDestination reached, DijkstraResult dr) {
+		MapResult to = reached.to;
 		DijkstraEntry toEdgeEntry = dr.getEdgeInfo(to.edge);
-		ODSingleExtendedResult e = new ODSingleExtendedResult(from.em.getOuterID(), to.em.getOuterID(), from, to, dr);
+		ODSingleExtendedResult e = new ODSingleExtendedResult(from.em.getOuterID(), to.em.getOuterID(), from, reached);
 		e.weightedDistance = e.dist * e.val;
 		e.weightedTravelTime = e.tt * e.val;
 		e.weightedSpeed = e.tt!=0 ? (e.dist/e.tt) * e.val : -1; /// TODO: document
@@ -53,29 +136,132 @@ public class ODExtendedMeasuresGenerator extends MeasurementGenerator<ODSingleEx
 		e.weightedInterchangeTime = 0;
 		e.connectionsWeightSum = e.val;
 
+		if(from.edge==to.edge || from.edge.opposite==to.edge) {
+			addSingleEdgeMeasures(e, beginTime, from, to, toEdgeEntry);
+		} else {
+			Prefix p = prefixes.get(dr, from, toEdgeEntry, (prev, entry) -> extend(prev, entry, beginTime, from));
+			// correct the last edge's contribution by its used part
+			double factor = toEdgeEntry.wasOpposite ? (to.edge.length - to.pos) / to.edge.length : to.pos / to.edge.length;
+			double correction = toEdgeEntry.prev!=null ? 1. - factor : 0;
+			e.weightedKCal = p.kcal - p.stepKCal * correction;
+			e.weightedPrice = p.price - p.stepPrice * correction;
+			e.weightedCO2 = p.co2 - p.stepCO2 * correction;
+			e.weightedAccess = p.access;
+			e.weightedEgress = p.egress;
+			if(toEdgeEntry.line==null) {
+				e.weightedEgress -= p.stepTT * correction;
+			}
+			e.weightedInterchanges = p.interchanges;
+			e.weightedInterchangeTime = p.interchangeTime;
+			e.weightedWaitingTime = p.waitingTime;
+			e.weightedInitialWaitingTime = p.initialWaitingTime;
+			e.weightedPTTravelTime = p.ptTravelTime;
+			e.lines = p.lines;
+			if(!p.hadPT) {
+				e.weightedAccess = 0;
+				e.weightedEgress = 0;
+			}
+		}
+		
+		e.weightedKCal *= e.val;
+		e.weightedPrice *= e.val; 
+		e.weightedCO2 *= e.val;
+		e.weightedInterchanges *= e.val;
+		e.weightedWaitingTime *= e.val;
+		e.weightedPTTravelTime *= e.val;
+		return e;
+	}	
+	
+	
+	/**
+	 * @brief Computes the prefix of a step from the prefix of its predecessor
+	 * @param prev The prefix of the predecessor, null if the step is the first one
+	 * @param current The step
+	 * @param beginTime The start time of the path
+	 * @param from The origin the path started at
+	 * @return The step's prefix
+	 */
+	private Prefix extend(Prefix prev, DijkstraEntry current, int beginTime, MapResult from) {
+		Prefix p = new Prefix(prev);
+		double ttt = current.prev==null ? current.tt : current.tt - current.prev.tt;
+		double factor = 1.;
+		if(current.prev==null) {
+			// compute offset to edge's begin / end if it's the first edge
+			if(current.e==from.edge.opposite) {
+				factor = from.pos / from.edge.length;
+			} else {
+				factor = 1. - from.pos / from.edge.length;
+			}
+		}
+		DBEdge edge = current.e;
+		p.stepKCal = edge.getKKC(current.usedMode, ttt);
+		// the price computation adds the lines it charged for; the set is shared with the predecessor unless it changes
+		Set<String> paidLines = p.paidLines!=null ? new HashSet<>(p.paidLines) : new HashSet<>();
+		p.stepPrice = edge.getPrice(current.usedMode, paidLines);
+		if(paidLines.size()!=(p.paidLines!=null ? p.paidLines.size() : 0)) {
+			p.paidLines = Collections.unmodifiableSet(paidLines);
+		}
+		p.stepCO2 = edge.getCO2(current.usedMode);
+		p.stepTT = ttt;
+		p.kcal += p.stepKCal * factor;
+		p.price += p.stepPrice * factor;
+		p.co2 += p.stepCO2 * factor;
+		if(current.line==null) {
+			p.egress += ttt * factor;
+			if(!p.hadPT) {
+				p.access += ttt * factor;
+			}
+		} else {
+			if(p.hadPT&&!current.line.trip.tripID.equals(p.lastTrip)) {
+				p.interchanges += 1.;
+				p.interchangeTime += p.egress;
+			}
+			p.interchangeTime += current.interchangeTT;
+			p.ptTravelTime += current.ttt;
+			if(current.prev==null || current.prev.line==null || !current.line.trip.equals(current.prev.line.trip)) {
+				double waitingTime = current.line.getWaitingTime(beginTime + current.prev.tt);
+				p.waitingTime += waitingTime;
+				p.ptTravelTime -= waitingTime;
+				if(!p.hadPT) {
+					p.initialWaitingTime = waitingTime;
+				}
+			}
+			p.egress = 0;
+			p.hadPT = true;
+			p.lastTrip = current.line.trip.tripID;
+		}
+		p.lines = PathPrefixes.addToSet(p.lines, current.line!=null ? current.line.trip.route.id : current.usedMode.mml);
+		return p;
+	}
+	
+	
+	/**
+	 * @brief Adds the measures of a path between an origin and a destination at the same edge
+	 * 
+	 * The path is followed backwards; the measures are not scaled by the 
+	 * origin's weight.
+	 * @param e The result to fill
+	 * @param beginTime The start time of the path
+	 * @param from The origin the path started at
+	 * @param to The destination accessed by this path
+	 * @param toEdgeEntry The last step of the path
+	 */
+	private void addSingleEdgeMeasures(ODSingleExtendedResult e, int beginTime, MapResult from, MapResult to, DijkstraEntry toEdgeEntry) {
 		HashSet<String> trips = new HashSet<>();
 		double factor = 1.;
-		boolean single = false;
+		boolean single = true;
 		if(from.edge==to.edge) {
 			if(from.pos>to.pos) {
 				factor = (from.pos - to.pos) / from.edge.length;
 			} else {
 				factor = (to.pos - from.pos) / from.edge.length;				
 			}
-			single = true;
-		} else if(from.edge.opposite==to.edge) {
+		} else {
 			if(from.pos>(from.edge.length - to.pos)) {
 				factor = (from.pos - (from.edge.length - to.pos)) / from.edge.length;
 			} else {
 				factor = ((from.edge.length - to.pos) - from.pos) / from.edge.length;				
 			}
-			single = true;
-		} else {
-			if(toEdgeEntry.wasOpposite) {
-				factor = (to.edge.length - to.pos) / to.edge.length;
-			} else {
-				factor = to.pos / to.edge.length;
-			}
 		}		
 		
 		DijkstraEntry current = toEdgeEntry;
@@ -132,15 +318,7 @@ public class ODExtendedMeasuresGenerator extends MeasurementGenerator<ODSingleEx
 			e.weightedAccess = 0;
 			e.weightedEgress = 0;
 		}
-		
-		e.weightedKCal *= e.val;
-		e.weightedPrice *= e.val; 
-		e.weightedCO2 *= e.val;
-		e.weightedInterchanges *= e.val;
-		e.weightedWaitingTime *= e.val;
-		e.weightedPTTravelTime *= e.val;
-		return e;
-	}	
+	}
 	
 	
 	/**
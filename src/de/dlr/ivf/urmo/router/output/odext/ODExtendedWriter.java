@@ -17,7 +17,6 @@ package de.dlr.ivf.urmo.router.output.odext;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Locale;
 
 import de.dlr.ivf.urmo.router.io.Utils;
 import de.dlr.ivf.urmo.router.output.AbstractResultsWriter;
@@ -28,8 +27,6 @@ import de.dlr.ivf.urmo.router.output.AbstractResultsWriter;
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  */
 public class ODExtendedWriter extends AbstractResultsWriter<ODSingleExtendedResult> {
-	/// @brief Counter of results added to the database / file so far
-	private int batchCount = 0;
 	
 	
 	/**
@@ -67,53 +64,49 @@ public class ODExtendedWriter extends AbstractResultsWriter<ODSingleExtendedResu
 	 */
 	@Override
 	public void writeResult(ODSingleExtendedResult result) throws IOException {
-		if (intoDB()) {
+		if (writesRows()) {
 			try {
-				_ps.setLong(1, result.srcID);
-				_ps.setLong(2, result.destID);
-				_ps.setFloat(3, (float) result.weightedDistance);
-				_ps.setFloat(4, (float) result.weightedTravelTime);
-				_ps.setFloat(5, (float) result.weightedSpeed);
-				_ps.setFloat(6, (float) result.connectionsWeightSum);
-				_ps.setFloat(7, (float) result.weightedValue);
-				_ps.setFloat(8, (float) result.weightedKCal);
-				_ps.setFloat(9, (float) result.weightedPrice);
-				_ps.setFloat(10, (float) result.weightedCO2);
-				_ps.setFloat(11, (float) result.weightedInterchanges);
-				_ps.setFloat(12, (float) result.weightedAccess);
-				_ps.setFloat(13, (float) result.weightedEgress);
-				_ps.setFloat(14, (float) result.weightedWaitingTime);
-				_ps.setFloat(15, (float) result.weightedInitialWaitingTime);
-				_ps.setFloat(16, (float) result.weightedPTTravelTime);
-				_ps.setFloat(17, (float) result.weightedInterchangeTime);
-				_ps.setString(18, result.lines.toString()); // modes
-				_ps.addBatch();
-				++batchCount;
-				if(batchCount>10000) {
-					_ps.executeBatch();
-					batchCount = 0;
-				}
+				setLong(1, result.srcID);
+				setLong(2, result.destID);
+				setFloat(3, (float) result.weightedDistance);
+				setFloat(4, (float) result.weightedTravelTime);
+				setFloat(5, (float) result.weightedSpeed);
+				setFloat(6, (float) result.connectionsWeightSum);
+				setFloat(7, (float) result.weightedValue);
+				setFloat(8, (float) result.weightedKCal);
+				setFloat(9, (float) result.weightedPrice);
+				setFloat(10, (float) result.weightedCO2);
+				setFloat(11, (float) result.weightedInterchanges);
+				setFloat(12, (float) result.weightedAccess);
+				setFloat(13, (float) result.weightedEgress);
+				setFloat(14, (float) result.weightedWaitingTime);
+				setFloat(15, (float) result.weightedInitialWaitingTime);
+				setFloat(16, (float) result.weightedPTTravelTime);
+				setFloat(17, (float) result.weightedInterchangeTime);
+				setString(18, result.lines.toString()); // modes
+				addRow();
 			} catch (SQLException ex) {
 				throw new IOException(ex);
 			}
 		} else {
-			_fileWriter.append(result.srcID + ";" + result.destID + ";" 
-					+ String.format(Locale.US, _FS, result.weightedDistance) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedTravelTime) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedSpeed) + ";"
-					+ String.format(Locale.US, _FS, result.connectionsWeightSum) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedValue) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedKCal) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedPrice) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedCO2) + ";"
-					+ String.format(Locale.US, _FS, result.weightedInterchanges) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedAccess) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedEgress) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedWaitingTime) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedInitialWaitingTime) + ";"
-					+ String.format(Locale.US, _FS, result.weightedPTTravelTime) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedInterchangeTime) + ";" 
-					+ result.lines.toString() + "\n");
+			StringBuilder line = beginLine();
+			line.append(result.srcID).append(';').append(result.destID).append(';');
+			appendNumber(line, result.weightedDistance).append(';');
+			appendNumber(line, result.weightedTravelTime).append(';');
+			appendNumber(line, result.weightedSpeed).append(';');
+			appendNumber(line, result.connectionsWeightSum).append(';');
+			appendNumber(line, result.weightedValue).append(';');
+			appendNumber(line, result.weightedKCal).append(';');
+			appendNumber(line, result.weightedPrice).append(';');
+			appendNumber(line, result.weightedCO2).append(';');
+			appendNumber(line, result.weightedInterchanges).append(';');
+			appendNumber(line, result.weightedAccess).append(';');
+			appendNumber(line, result.weightedEgress).append(';');
+			appendNumber(line, result.weightedWaitingTime).append(';');
+			appendNumber(line, result.weightedInitialWaitingTime).append(';');
+			appendNumber(line, result.weightedPTTravelTime).append(';');
+			appendNumber(line, result.weightedInterchangeTime).append(';').append(result.lines.toString()).append('\n');
+			writeLine(line);
 		}
 	}
 
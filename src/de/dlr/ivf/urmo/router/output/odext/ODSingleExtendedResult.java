@@ -19,8 +19,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
-import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.output.AbstractSingleResult;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 
 /**
  * @class ODSingleExtendedResult
@@ -77,15 +77,14 @@ public class ODSingleExtendedResult extends AbstractSingleResult {
 	/**
 	 * @brief Constructor 
 	 * 
-	 * Computes the distance and the travel time
+	 * Takes the distance and the travel time from the reached destination
 	 * @param srcID The id of the origin the represented trip starts at
 	 * @param destID The id of the destination the represented trip ends at
 	 * @param from The mapped source
-	 * @param to The mapped destination
-	 * @param dr The path between the source and the destination
+	 * @param reached The reached destination with the distance and travel time to it
 	 */
-	public ODSingleExtendedResult(long srcID, long destID, MapResult from, MapResult to, DijkstraResult dr) {
-		super(srcID, destID, from, to, dr);
+	public ODSingleExtendedResult(long srcID, long destID, MapResult from, ReachedDestination reached) {
+		super(srcID, destID, from, reached);
 	}
 
 	
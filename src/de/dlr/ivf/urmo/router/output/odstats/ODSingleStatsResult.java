@@ -15,11 +15,9 @@
  */
 package de.dlr.ivf.urmo.router.output.odstats;
 
-import java.util.Vector;
-
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
-import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.output.AbstractSingleResult;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 
 /**
  * @class ODSingleStatsResult
@@ -27,18 +25,18 @@ import de.dlr.ivf.urmo.router.output.AbstractSingleResult;
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  */
 public class ODSingleStatsResult extends AbstractSingleResult {
-	/// @brief A vector of all collected distances
-	protected Vector<Double> allDistances = new Vector<>();
-	/// @brief A vector of all collected travel times
-	protected Vector<Double> allTravelTimes = new Vector<>();
-	/// @brief A vector of all collected values
-	protected Vector<Double> allValues = new Vector<>();
-	/// @brief A vector of all collected kilocalories
-	protected Vector<Double> allKCals = new Vector<>();
-	/// @brief A vector of all collected prices
-	protected Vector<Double> allPrices = new Vector<>();
-	/// @brief A vector of all collected CO2
-	protected Vector<Double> allCO2s = new Vector<>();
+	/// @brief The collected distances
+	protected QuantileSketch allDistances = new QuantileSketch();
+	/// @brief The collected travel times
+	protected QuantileSketch allTravelTimes = new QuantileSketch();
+	/// @brief The collected values
+	protected QuantileSketch allValues = new QuantileSketch();
+	/// @brief The collected kilocalories
+	protected QuantileSketch allKCals = new QuantileSketch();
+	/// @brief The collected prices
+	protected QuantileSketch allPrices = new QuantileSketch();
+	/// @brief The collected CO2
+	protected QuantileSketch allCO2s = new QuantileSketch();
 	
 	
 	/**
@@ -56,31 +54,33 @@ public class ODSingleStatsResult extends AbstractSingleResult {
 	/**
 	 * @brief Constructor 
 	 * 
-	 * Computes the distance and the travel time
+	 * Takes the distance and the travel time from the reached destination
 	 * @param srcID The id of the origin the represented trip starts at
 	 * @param destID The id of the destination the represented trip ends at
 	 * @param from The mapped source
-	 * @param to The mapped destination
-	 * @param dr The path between the source and the destination
+	 * @param reached The reached destination with the distance and travel time to it
 	 */
-	public ODSingleStatsResult(long srcID, long destID, MapResult from, MapResult to, DijkstraResult dr) {
-		super(srcID, destID, from, to, dr);
+	public ODSingleStatsResult(long srcID, long destID, MapResult from, ReachedDestination reached) {
+		super(srcID, destID, from, reached);
 	}
 
 	
 	/**
 	 * @brief Adds the measures from the given result
+	 * 
+	 * Synchronized as results of several threads may be added to the same 
+	 * aggregated result.
 	 * @param asr The result to add
 	 */
 	@Override
-	public void addCounting(AbstractSingleResult asr) {
+	public synchronized void addCounting(AbstractSingleResult asr) {
 		ODSingleStatsResult ossr = (ODSingleStatsResult) asr;
-		allDistances.addAll(ossr.allDistances);
-		allTravelTimes.addAll(ossr.allTravelTimes);
-		allValues.addAll(ossr.allValues);
-		allKCals.addAll(ossr.allKCals);
-		allPrices.addAll(ossr.allPrices);
-		allCO2s.addAll(ossr.allCO2s);
+		allDistances.merge(ossr.allDistances);
+		allTravelTimes.merge(ossr.allTravelTimes);
+		allValues.merge(ossr.allValues);
+		allKCals.merge(ossr.allKCals);
+		allPrices.merge(ossr.allPrices);
+		allCO2s.merge(ossr.allCO2s);
 	}
 
 
@@ -91,14 +91,14 @@ public class ODSingleStatsResult extends AbstractSingleResult {
 	 * @return The normed result
 	 */
 	@Override
-	public AbstractSingleResult getNormed(int numSources, double sourcesWeight) {
+	public synchronized AbstractSingleResult getNormed(int numSources, double sourcesWeight) {
 		ODSingleStatsResult srnm = new ODSingleStatsResult(srcID, destID);
-		srnm.allDistances = new Vector<Double>(allDistances);
-		srnm.allTravelTimes = new Vector<Double>(allTravelTimes);
-		srnm.allValues = new Vector<Double>(allValues);
-		srnm.allKCals = new Vector<Double>(allKCals);
-		srnm.allPrices = new Vector<Double>(allPrices);
-		srnm.allCO2s = new Vector<Double>(allCO2s);
+		srnm.allDistances = new QuantileSketch(allDistances);
+		srnm.allTravelTimes = new QuantileSketch(allTravelTimes);
+		srnm.allValues = new QuantileSketch(allValues);
+		srnm.allKCals = new QuantileSketch(allKCals);
+		srnm.allPrices = new QuantileSketch(allPrices);
+		srnm.allCO2s = new QuantileSketch(allCO2s);
 		return srnm;
 	}
 
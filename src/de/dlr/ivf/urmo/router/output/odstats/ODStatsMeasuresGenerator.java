@@ -22,6 +22,7 @@ import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.output.MeasurementGenerator;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 import de.dlr.ivf.urmo.router.shapes.DBEdge;
 
 /**
@@ -35,13 +36,14 @@ public class ODStatsMeasuresGenerator extends MeasurementGenerator<ODSingleStats
 	 * @brief Interprets the path to build an ODSingleStatsResult
 	 * @param beginTime The start time of the path
 	 * @param from The origin the path started at
-	 * @param to The destination accessed by this path
+	 * @param reached The destination accessed by this path with the distance and travel time to it
 	 * @param dr The routing result
 	 * @return An ODSingleStatsResult computed using the given path
 	 */
-	public ODSingleStatsResult buildResult(int beginTime, MapResult from, MapResult to, DijkstraResult dr) {
+	public ODSingleStatsResult buildResult(int beginTime, MapResult from, ReachedDestination reached, DijkstraResult dr) {
+		MapResult to = reached.to;
 		DijkstraEntry toEdgeEntry = dr.getEdgeInfo(to.edge);
-		ODSingleStatsResult e = new ODSingleStatsResult(from.em.getOuterID(), to.em.getOuterID(), from, to, dr);
+		ODSingleStatsResult e = new ODSingleStatsResult(from.em.getOuterID(), to.em.getOuterID(), from, reached);
 		double factor = 1.;
 		boolean single = false;
 		if(from.edge==to.edge) {
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2016-2022 DLR Institute of Transport Research
+ * All rights reserved.
+ * 
+ * This file is part of the "UrMoAC" accessibility tool
+ * http://github.com/DLR-VF/UrMoAC
+ * Licensed under the GNU General Public License v3.0
+ * 
+ * German Aerospace Center (DLR)
+ * Institute of Transport Research (VF)
+ * Rutherfordstrae 2
+ * 12489 Berlin
+ * Germany
+ * http://www.dlr.de/vf
+ */
+package de.dlr.ivf.urmo.router.output.odstats;
+
+import java.util.Arrays;
+
+/**
+ * @class QuantileSketch
+ * @brief Collects values to compute their average, minimum, maximum and quantiles
+ *
+ * Up to EXACT_LIMIT values are stored as they are and the quantiles are
+ * exact. When more values are added, the values are summarised by a merging
+ * t-digest: a sorted list of centroids (mean and weight) whose weights are
+ * bounded so that the quantiles near the tails stay accurate. The memory
+ * used does not depend on the number of values anymore then.
+ *
+ * Sketches can be merged, so that values collected by different threads or
+ * for different origins can be combined.
+ * @author Daniel Krajzewicz (c) 2022 German Aerospace Center, Institute of Transport Research
+ */
+public class QuantileSketch {
+	/// @brief The number of values that are stored exactly
+	private static final int EXACT_LIMIT = 1024;
+	/// @brief The compression of the digest (the higher, the more centroids)
+	private static final double COMPRESSION = 100;
+	/// @brief The number of values collected before they are merged into the digest
+	private static final int BUFFER_SIZE = 512;
+
+	/// @brief The number of added values
+	private long count = 0;
+	/// @brief The sum of the added values
+	private double sum = 0;
+	/// @brief The minimum value
+	private double min = 0;
+	/// @brief The maximum value
+	private double max = 0;
+	/// @brief The values, null if the digest is used
+	private double[] values = new double[4];
+	/// @brief The number of stored values
+	private int numValues = 0;
+	/// @brief Whether the stored values are sorted
+	private boolean sorted = true;
+	/// @brief The means of the digest's centroids
+	private double[] means = null;
+	/// @brief The weights of the digest's centroids
+	private double[] weights = null;
+	/// @brief The number of centroids
+	private int numCentroids = 0;
+	/// @brief The sum of the centroids' weights
+	private double digestWeight = 0;
+	/// @brief Values not yet merged into the digest
+	private double[] buffer = null;
+	/// @brief The number of buffered values
+	private int numBuffered = 0;
+
+
+	/** @brief Constructor
+	 */
+	public QuantileSketch() {
+	}
+
+
+	/** @brief Copy constructor
+	 * @param other The sketch to copy
+	 */
+	public QuantileSketch(QuantileSketch other) {
+		count = other.count;
+		sum = other.sum;
+		min = other.min;
+		max = other.max;
+		values = other.values!=null ? Arrays.copyOf(other.values, other.values.length) : null;
+		numValues = other.numValues;
+		sorted = other.sorted;
+		means = other.means!=null ? Arrays.copyOf(other.means, other.means.length) : null;
+		weights = other.weights!=null ? Arrays.copyOf(other.weights, other.weights.length) : null;
+		numCentroids = other.numCentroids;
+		digestWeight = other.digestWeight;
+		buffer = other.buffer!=null ? Arrays.copyOf(other.buffer, other.buffer.length) : null;
+		numBuffered = other.numBuffered;
+	}
+
+
+	/** @brief Adds a value
+	 * @param value The value to add
+	 */
+	public void add(double value) {
+		if(count==0) {
+			min = value;
+			max = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		++count;
+		sum += value;
+		insert(value);
+	}
+
+
+	/** @brief Adds the values of the given sketch
+	 * @param other The sketch to merge into this one
+	 */
+	public void merge(QuantileSketch other) {
+		if(other.count==0) {
+			return;
+		}
+		if(count==0) {
+			min = other.min;
+			max = other.max;
+		} else {
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+		count += other.count;
+		sum += other.sum;
+		if(other.values!=null) {
+			for(int i=0; i<other.numValues; ++i) {
+				insert(other.values[i]);
+			}
+			return;
+		}
+		toDigest();
+		flush();
+		mergeCentroids(other.means, other.weights, other.numCentroids);
+		for(int i=0; i<other.numBuffered; ++i) {
+			insert(other.buffer[i]);
+		}
+	}
+
+
+	/** @brief Returns the number of added values
+	 * @return The number of values
+	 */
+	public long size() {
+		return count;
+	}
+
+
+	/** @brief Returns the average of the added values
+	 * @return The average, 0 if no value was added
+	 */
+	public double getMean() {
+		return count!=0 ? sum / (double) count : 0;
+	}
+
+
+	/** @brief Returns the minimum of the added values
+	 * @return The minimum, 0 if no value was added
+	 */
+	public double getMin() {
+		return min;
+	}
+
+
+	/** @brief Returns the maximum of the added values
+	 * @return The maximum, 0 if no value was added
+	 */
+	public double getMax() {
+		return max;
+	}
+
+
+	/** @brief Returns the given quantile of the added values
+	 *
+	 * When the values are stored exactly, the value at position
+	 * (int) (q * number of values) of the sorted values is returned.
+	 * Otherwise, the quantile is interpolated between the centroids.
+	 * @param q The quantile (between 0 and 1)
+	 * @return The quantile, 0 if no value was added
+	 */
+	public double getQuantile(double q) {
+		if(count==0) {
+			return 0;
+		}
+		if(values!=null) {
+			if(!sorted) {
+				Arrays.sort(values, 0, numValues);
+				sorted = true;
+			}
+			int index = Math.max(0, Math.min(numValues - 1, (int) ((double) numValues * q)));
+			return values[index];
+		}
+		flush();
+		double index = q * digestWeight;
+		if(numCentroids==1 || index<=weights[0]/2.) {
+			double left = weights[0] / 2.;
+			return numCentroids==1 || left<=0 ? means[0] : min + (means[0] - min) * (index / left);
+		}
+		double cumulated = 0;
+		for(int i=0; i<numCentroids-1; ++i) {
+			double left = cumulated + weights[i] / 2.;
+			double right = cumulated + weights[i] + weights[i+1] / 2.;
+			if(index<right) {
+				return means[i] + (means[i+1] - means[i]) * (index - left) / (right - left);
+			}
+			cumulated += weights[i];
+		}
+		int last = numCentroids - 1;
+		double left = digestWeight - weights[last] / 2.;
+		double value = means[last] + (max - means[last]) * (index - left) / (digestWeight - left);
+		return Math.min(max, value);
+	}
+
+
+	/** @brief Stores a value without updating the statistics
+	 * @param value The value to store
+	 */
+	private void insert(double value) {
+		if(values!=null) {
+			if(numValues<EXACT_LIMIT) {
+				if(numValues==values.length) {
+					values = Arrays.copyOf(values, Math.min(EXACT_LIMIT, values.length*2));
+				}
+				sorted &= numValues==0 || values[numValues-1]<=value;
+				values[numValues++] = value;
+				return;
+			}
+			toDigest();
+		}
+		buffer[numBuffered++] = value;
+		if(numBuffered==BUFFER_SIZE) {
+			flush();
+		}
+	}
+
+
+	/** @brief Switches from storing the values to the digest
+	 */
+	private void toDigest() {
+		if(values==null) {
+			return;
+		}
+		means = new double[2*(int) COMPRESSION];
+		weights = new double[means.length];
+		buffer = new double[BUFFER_SIZE];
+		Arrays.sort(values, 0, numValues);
+		mergeCentroids(values, null, numValues);
+		values = null;
+		numValues = 0;
+	}
+
+
+	/** @brief Merges the buffered values into the digest
+	 */
+	private void flush() {
+		if(numBuffered==0) {
+			return;
+		}
+		Arrays.sort(buffer, 0, numBuffered);
+		mergeCentroids(buffer, null, numBuffered);
+		numBuffered = 0;
+	}
+
+
+	/** @brief Merges the given sorted centroids into the digest
+	 *
+	 * Neighbouring centroids are combined as long as the combined weight does
+	 * not exceed 4 * w * q * (1-q) / COMPRESSION, with w being the sum of
+	 * weights and q the quantile at the combined centroid's center.
+	 * @param addMeans The means of the centroids to add, sorted
+	 * @param addWeights The weights of the centroids to add, null if all are 1
+	 * @param num The number of centroids to add
+	 */
+	private void mergeCentroids(double[] addMeans, double[] addWeights, int num) {
+		if(num==0) {
+			return;
+		}
+		// merge both sorted lists
+		int total = numCentroids + num;
+		double[] mergedMeans = new double[total];
+		double[] mergedWeights = new double[total];
+		int i = 0;
+		int j = 0;
+		for(int k=0; k<total; ++k) {
+			if(j>=num || (i<numCentroids && means[i]<=addMeans[j])) {
+				mergedMeans[k] = means[i];
+				mergedWeights[k] = weights[i];
+				++i;
+			} else {
+				mergedMeans[k] = addMeans[j];
+				mergedWeights[k] = addWeights!=null ? addWeights[j] : 1.;
+				digestWeight += mergedWeights[k];
+				++j;
+			}
+		}
+		// combine neighbouring centroids
+		if(means.length<total) {
+			means = new double[total];
+			weights = new double[total];
+		}
+		int n = 0;
+		double weightBefore = 0;
+		means[0] = mergedMeans[0];
+		weights[0] = mergedWeights[0];
+		for(int k=1; k<total; ++k) {
+			double proposed = weights[n] + mergedWeights[k];
+			double q = (weightBefore + proposed / 2.) / digestWeight;
+			if(proposed<=4. * digestWeight * q * (1. - q) / COMPRESSION) {
+				means[n] += (mergedMeans[k] - means[n]) * mergedWeights[k] / proposed;
+				weights[n] = proposed;
+			} else {
+				weightBefore += weights[n];
+				++n;
+				means[n] = mergedMeans[k];
+				weights[n] = mergedWeights[k];
+			}
+		}
+		numCentroids = n + 1;
+	}
+
+}
@@ -15,61 +15,132 @@
  */
 package de.dlr.ivf.urmo.router.output.ptod;
 
-import java.util.HashSet;
+import java.util.Set;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.MapResult;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraEntry;
 import de.dlr.ivf.urmo.router.algorithms.routing.DijkstraResult;
 import de.dlr.ivf.urmo.router.output.MeasurementGenerator;
+import de.dlr.ivf.urmo.router.output.PathPrefixes;
+import de.dlr.ivf.urmo.router.output.ReachedDestination;
 import de.dlr.ivf.urmo.router.shapes.LayerObject;
 
 /**
  * @class PTODMeasuresGenerator
  * @brief Interprets a path to build an PTODSingleResult
+ *
+ * A path is split into segments at changes between walking/driving and 
+ * public transport trips. The segments are collected once per step of the 
+ * shortest path tree as prefixes along the paths (see PathPrefixes).
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  * @param <T>
  */
 public class PTODMeasuresGenerator extends MeasurementGenerator<PTODSingleResult> {
+	/**
+	 * @class Prefix
+	 * @brief The segments of a path from the origin to a step of the tree
+	 *
+	 * The first step is reduced by the part of the origin's edge that is 
+	 * not used.
+	 */
+	private static class Prefix {
+		/// @brief The sum of interchange times
+		double interchangeTT = 0;
+		/// @brief The used lines / modes, not including the first step
+		Set<String> lines = null;
+		/// @brief The used trips, not including the first step
+		Set<String> trips = null;
+		/// @brief Whether the path consists of more than one segment
+		boolean split = false;
+		/// @brief Whether the first segment is a public transport trip
+		boolean firstIsPT = false;
+		/// @brief The distance of the first segment
+		double firstDist = 0;
+		/// @brief The travel time of the first segment
+		double firstTT = 0;
+		/// @brief The distance of further public transport segments, not including the last one
+		double ptDist = 0;
+		/// @brief The travel time of further public transport segments, not including the last one
+		double ptTT = 0;
+		/// @brief The distance of further non-public transport segments, not including the last one
+		double interchangeDist = 0;
+		/// @brief The travel time of further non-public transport segments, not including the last one
+		double interchangeTravelTime = 0;
+		/// @brief The distance of the last segment
+		double segDist = 0;
+		/// @brief The travel time of the last segment
+		double segTT = 0;
+		/// @brief The waiting time
+		double waitingTime = 0;
+		/// @brief The waiting time at the first boarding
+		double initialWaitingTime = 0;
+		/// @brief Whether a boarding was passed
+		boolean boarded = false;
+
+
+		/** @brief Constructor
+		 * @param prev The prefix to continue, null if this is the first step
+		 */
+		Prefix(Prefix prev) {
+			if(prev==null) {
+				return;
+			}
+			interchangeTT = prev.interchangeTT;
+			lines = prev.lines;
+			trips = prev.trips;
+			split = prev.split;
+			firstIsPT = prev.firstIsPT;
+			firstDist = prev.firstDist;
+			firstTT = prev.firstTT;
+			ptDist = prev.ptDist;
+			ptTT = prev.ptTT;
+			interchangeDist = prev.interchangeDist;
+			interchangeTravelTime = prev.interchangeTravelTime;
+			segDist = prev.segDist;
+			segTT = prev.segTT;
+			waitingTime = prev.waitingTime;
+			initialWaitingTime = prev.initialWaitingTime;
+			boarded = prev.boarded;
+		}
+	}
+
+
+	/// @brief The prefixes computed for the processed origins
+	private PathPrefixes<Prefix> prefixes = new PathPrefixes<>();
+
+
 	/**
 	 * @brief Interprets the path to build an PTODSingleResult
 	 * @param beginTime The start time of the path
 	 * @param from The origin the path started at
-	 * @param to The destination accessed by this path
+	 * @param reached The destination accessed by this path with the distance and travel time to it
 	 * @param dr The routing result
 	 * @return An PTODSingleResult computed using the given path
 	 */
-	public PTODSingleResult buildResult(int beginTime, MapResult from, MapResult to, DijkstraResult dr) {
-		PTODSingleResult e = new PTODSingleResult(from.em.getOuterID(), to.em.getOuterID(), from, to, dr);
-		int step = 0;
+	public PTODSingleResult buildResult(int beginTime, MapResult from, ReachedDestination reached, DijkstraResult dr) {
+		MapResult to = reached.to;
+		PTODSingleResult e = new PTODSingleResult(from.em.getOuterID(), to.em.getOuterID(), from, reached);
 		DijkstraEntry current = dr.getEdgeInfo(to.edge);
-		double tt = 0;
-		double dist = 0;
-		HashSet<String> trips = new HashSet<>();
-		if(current.line!=null) {
-			e.lines.add(current.line.trip.route.id);
-			trips.add(current.line.trip.tripID);
-		} else {
-			e.lines.add(current.usedMode.mml);
-		}
-		if(from.edge==to.edge) {
-			tt = current.first.ttt;
-			if(from.pos>to.pos) {
-				dist = from.pos - to.pos;
-			} else {
-				dist = to.pos - from.pos;				
+		Set<String> trips = null;
+		if(from.edge==to.edge || from.edge.opposite==to.edge) {
+			// single edge; only the used line is regarded
+			e.lines = PathPrefixes.addToSet(null, getLineID(current));
+			if(current.line!=null) {
+				trips = PathPrefixes.addToSet(null, current.line.trip.tripID);
 			}
-			tt = tt / to.edge.length * dist;
-			step = 4;
-		} else if(from.edge.opposite==to.edge) {
-			tt = current.first.ttt;
-			if(from.pos>(to.edge.length - to.pos)) {
-				dist = from.pos - (to.edge.length - to.pos);
-			} else {
-				dist = (to.edge.length - to.pos) - from.pos;				
-			}
-			tt = tt / to.edge.length * dist;
-			step = 4;
 		} else {
+			Prefix p = prefixes.get(dr, from, current, (prev, entry) -> extend(prev, entry, beginTime, from));
+			e.lines = PathPrefixes.addToSet(p.lines, getLineID(current));
+			trips = current.line!=null ? PathPrefixes.addToSet(p.trips, current.line.trip.tripID) : p.trips;
+			e.weightedInterchangeTravelTime = p.interchangeTT + p.interchangeTravelTime;
+			e.weightedInterchangeDistance = p.interchangeDist;
+			e.weightedPTDistance = p.ptDist;
+			e.weightedPTTravelTime = p.ptTT;
+			e.weightedWaitingTime = p.waitingTime;
+			e.weightedInitialWaitingTime = p.initialWaitingTime;
+			// the last segment ends within the destination's edge
+			double dist = p.segDist;
+			double tt = p.segTT;
 			if(current.wasOpposite) {
 				dist -= to.pos;
 				tt -= current.ttt * to.pos / to.edge.length;
@@ -77,72 +148,25 @@ public class PTODMeasuresGenerator extends MeasurementGenerator<PTODSingleResult
 				dist -= (to.edge.length - to.pos);
 				tt -= (current.ttt - current.ttt * (to.pos / to.edge.length));
 			}
-			step = 0;
-			do {
-				e.weightedInterchangeTravelTime += current.interchangeTT;
-				dist += current.e.length;
-				tt += current.ttt;
-				DijkstraEntry prev = current.prev;
-				if(prev==null) {
-					current = prev;
-					continue;
-				}
-				if(current.line!=null) {
-					e.lines.add(current.line.trip.route.id);
-					trips.add(current.line.trip.tripID);
-				} else {
-					e.lines.add(current.usedMode.mml);
+			if(p.split) {
+				if(p.firstDist>0 && p.firstTT>0) {
+					addStep(e, p.firstIsPT ? 1 : 3, p.firstDist, p.firstTT);
 				}
-				if( (prev.line==null&&current.line==null) || (prev.line!=null && current.line!=null && prev.line.trip.equals(current.line.trip)) ) {
-					current = prev;
-					continue;
-				}
-				addStep(e, step, dist, tt);
-				tt = 0;
-				dist = 0;
-				if(prev.line==null) {
-					// foot->pt; 
-					step = 2; // either interchange or access 
-					double waitingTime = current.line.getWaitingTime(beginTime + prev.tt);
-					e.weightedWaitingTime += waitingTime;
-					e.weightedInitialWaitingTime = waitingTime;
-				} else {
-					// pt->foot|pt
-					if(current.line!=null) {
-						// change from pt to pt
-						double waitingTime = current.line.getWaitingTime(beginTime + prev.tt);
-						e.weightedWaitingTime += waitingTime;
-						e.weightedInitialWaitingTime = waitingTime;
-					}
-					step = 1;
-				}
-				current = prev;
-			} while(current!=null);
-			current = dr.getEdgeInfo(to.edge);
-			double firstTT = current.first.ttt;
-			if(current.first.wasOpposite) {
-				dist -= (from.edge.length - from.pos);
-				tt -= (firstTT - firstTT * (from.pos / from.edge.length));
-			} else {
-				dist -= from.pos;
-				tt -= (firstTT * (from.pos / from.edge.length));
+				addStep(e, 0, dist, tt);
+			} else if(dist>0 && tt>0) {
+				addStep(e, 0, dist, tt);
 			}
 		}
-		if(step!=4 && dist>0 && tt>0) {
-			if(step==2) {
-				step = 3;
-			}
-			addStep(e, step, dist, tt);
-		}
 		// no access / egress when no pt
-		if(trips.size()<1) {
+		int numTrips = trips!=null ? trips.size() : 0;
+		if(numTrips<1) {
 			e.weightedAccessDistance = 0;
 			e.weightedAccessTravelTime = 0;
 			e.weightedEgressDistance = 0;
 			e.weightedEgressTravelTime = 0;
 		}
 		// apply weight
-		e.weightedInterchangesNum = Math.max(0, (double) trips.size() - 1.);
+		e.weightedInterchangesNum = Math.max(0, (double) numTrips - 1.);
 		e.weightedDistance = e.dist * e.val;
 		e.weightedTravelTime = e.tt * e.val;
 		e.weightedAccessDistance *= e.val;
@@ -162,6 +186,81 @@ public class PTODMeasuresGenerator extends MeasurementGenerator<PTODSingleResult
 	}
 	
 	
+	/**
+	 * @brief Computes the prefix of a step from the prefix of its predecessor
+	 *
+	 * A new segment begins if the step changes between walking/driving and 
+	 * public transport or between public transport trips.
+	 * @param prev The prefix of the predecessor, null if the step is the first one
+	 * @param current The step
+	 * @param beginTime The start time of the path
+	 * @param from The origin the path started at
+	 * @return The step's prefix
+	 */
+	private Prefix extend(Prefix prev, DijkstraEntry current, int beginTime, MapResult from) {
+		Prefix p = new Prefix(prev);
+		p.interchangeTT += current.interchangeTT;
+		DijkstraEntry before = current.prev;
+		if(before==null) {
+			// the first segment begins within the origin's edge
+			p.segDist = current.e.length;
+			p.segTT = current.ttt;
+			if(current.wasOpposite) {
+				p.segDist -= (from.edge.length - from.pos);
+				p.segTT -= (current.ttt - current.ttt * (from.pos / from.edge.length));
+			} else {
+				p.segDist -= from.pos;
+				p.segTT -= (current.ttt * (from.pos / from.edge.length));
+			}
+			return p;
+		}
+		p.lines = PathPrefixes.addToSet(p.lines, getLineID(current));
+		if(current.line!=null) {
+			p.trips = PathPrefixes.addToSet(p.trips, current.line.trip.tripID);
+		}
+		if( (before.line==null&&current.line==null) || (before.line!=null && current.line!=null && before.line.trip.equals(current.line.trip)) ) {
+			p.segDist += current.e.length;
+			p.segTT += current.ttt;
+			return p;
+		}
+		// close the segment that ends at the predecessor
+		if(!p.split) {
+			p.split = true;
+			p.firstIsPT = before.line!=null;
+			p.firstDist = p.segDist;
+			p.firstTT = p.segTT;
+		} else if(before.line!=null) {
+			p.ptDist += p.segDist;
+			p.ptTT += p.segTT;
+		} else {
+			p.interchangeDist += p.segDist;
+			p.interchangeTravelTime += p.segTT;
+		}
+		p.segDist = current.e.length;
+		p.segTT = current.ttt;
+		if(current.line!=null) {
+			// boarding a public transport vehicle
+			double waitingTime = current.line.getWaitingTime(beginTime + before.tt);
+			p.waitingTime += waitingTime;
+			if(!p.boarded) {
+				p.initialWaitingTime = waitingTime;
+				p.boarded = true;
+			}
+		}
+		return p;
+	}
+	
+	
+	/**
+	 * @brief Returns the id of the line or mode used at the given step
+	 * @param current The step
+	 * @return The id of the used line or mode
+	 */
+	private String getLineID(DijkstraEntry current) {
+		return current.line!=null ? current.line.trip.route.id : current.usedMode.mml;
+	}
+	
+	
 	/**
 	 * @brief Builds an empty entry of type ODSingleStatsResult
 	 * @param srcID The id of the origin the path started at
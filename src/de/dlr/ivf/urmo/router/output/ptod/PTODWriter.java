@@ -17,7 +17,6 @@ package de.dlr.ivf.urmo.router.output.ptod;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Locale;
 
 import de.dlr.ivf.urmo.router.io.Utils;
 import de.dlr.ivf.urmo.router.output.AbstractResultsWriter;
@@ -28,8 +27,6 @@ import de.dlr.ivf.urmo.router.output.AbstractResultsWriter;
  * @author Daniel Krajzewicz (c) 2017 German Aerospace Center, Institute of Transport Research
  */
 public class PTODWriter extends AbstractResultsWriter<PTODSingleResult> {
-	/// @brief Counter of results added to the database / file so far
-	private int batchCount = 0;
 	
 	
 	/**
@@ -68,51 +65,48 @@ public class PTODWriter extends AbstractResultsWriter<PTODSingleResult> {
 	 */
 	@Override
 	public void writeResult(PTODSingleResult result) throws IOException {
-		if (intoDB()) {
+		if (writesRows()) {
 			try {
-				_ps.setLong(1, result.srcID);
-				_ps.setLong(2, result.destID);
-				_ps.setFloat(3, (float) result.weightedDistance);
-				_ps.setFloat(4, (float) result.weightedTravelTime);
-				_ps.setFloat(5, (float) result.weightedAccessDistance);
-				_ps.setFloat(6, (float) result.weightedAccessTravelTime);
-				_ps.setFloat(7, (float) result.weightedEgressDistance);
-				_ps.setFloat(8, (float) result.weightedEgressTravelTime);
-				_ps.setFloat(9, (float) result.weightedInterchangeDistance);
-				_ps.setFloat(10, (float) result.weightedInterchangeTravelTime);
-				_ps.setFloat(11, (float) result.weightedPTDistance);
-				_ps.setFloat(12, (float) result.weightedPTTravelTime);
-				_ps.setFloat(13, (float) result.weightedInterchangesNum);
-				_ps.setFloat(14, (float) result.weightedWaitingTime);
-				_ps.setFloat(15, (float) result.weightedInitialWaitingTime);
-				_ps.setFloat(16, (float) result.connectionsWeightSum);
-				_ps.setFloat(17, (float) result.weightedValue);
-				_ps.addBatch();
-				++batchCount;
-				if(batchCount>10000) {
-					_ps.executeBatch();
-					batchCount = 0;
-				}
+				setLong(1, result.srcID);
+				setLong(2, result.destID);
+				setFloat(3, (float) result.weightedDistance);
+				setFloat(4, (float) result.weightedTravelTime);
+				setFloat(5, (float) result.weightedAccessDistance);
+				setFloat(6, (float) result.weightedAccessTravelTime);
+				setFloat(7, (float) result.weightedEgressDistance);
+				setFloat(8, (float) result.weightedEgressTravelTime);
+				setFloat(9, (float) result.weightedInterchangeDistance);
+				setFloat(10, (float) result.weightedInterchangeTravelTime);
+				setFloat(11, (float) result.weightedPTDistance);
+				setFloat(12, (float) result.weightedPTTravelTime);
+				setFloat(13, (float) result.weightedInterchangesNum);
+				setFloat(14, (float) result.weightedWaitingTime);
+				setFloat(15, (float) result.weightedInitialWaitingTime);
+				setFloat(16, (float) result.connectionsWeightSum);
+				setFloat(17, (float) result.weightedValue);
+				addRow();
 			} catch (SQLException ex) {
 				throw new IOException(ex);
 			}
 		} else {
-			_fileWriter.append(result.srcID + ";" + result.destID + ";" 
-					+ String.format(Locale.US, _FS, result.weightedDistance) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedTravelTime) + ";"
-					+ String.format(Locale.US, _FS, result.weightedAccessDistance) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedAccessTravelTime) + ";"
-					+ String.format(Locale.US, _FS, result.weightedEgressDistance) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedEgressTravelTime) + ";"
-					+ String.format(Locale.US, _FS, result.weightedInterchangeDistance) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedInterchangeTravelTime) + ";"
-					+ String.format(Locale.US, _FS, result.weightedPTDistance) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedPTTravelTime) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedInterchangesNum) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedWaitingTime) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedInitialWaitingTime) + ";"
-					+ String.format(Locale.US, _FS, result.connectionsWeightSum) + ";" 
-					+ String.format(Locale.US, _FS, result.weightedValue) + "\n");
+			StringBuilder line = beginLine();
+			line.append(result.srcID).append(';').append(result.destID).append(';');
+			appendNumber(line, result.weightedDistance).append(';');
+			appendNumber(line, result.weightedTravelTime).append(';');
+			appendNumber(line, result.weightedAccessDistance).append(';');
+			appendNumber(line, result.weightedAccessTravelTime).append(';');
+			appendNumber(line, result.weightedEgressDistance).append(';');
+			appendNumber(line, result.weightedEgressTravelTime).append(';');
+			appendNumber(line, result.weightedInterchangeDistance).append(';');
+			appendNumber(line, result.weightedInterchangeTravelTime).append(';');
+			appendNumber(line, result.weightedPTDistance).append(';');
+			appendNumber(line, result.weightedPTTravelTime).append(';');
+			appendNumber(line, result.weightedInterchangesNum).append(';');
+			appendNumber(line, result.weightedWaitingTime).append(';');
+			appendNumber(line, result.weightedInitialWaitingTime).append(';');
+			appendNumber(line, result.connectionsWeightSum).append(';');
+			appendNumber(line, result.weightedValue).append('\n');
+			writeLine(line);
 		}
 	}
 
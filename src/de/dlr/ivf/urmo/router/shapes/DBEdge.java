@@ -15,15 +15,16 @@
  */
 package de.dlr.ivf.urmo.router.shapes;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Vector;
 
 import org.locationtech.jts.geom.LineString;
 
 import de.dlr.ivf.urmo.router.algorithms.edgemapper.EdgeMappable;
 import de.dlr.ivf.urmo.router.modes.Mode;
+import de.dlr.ivf.urmo.router.modes.Modes;
 
 /**
  * @class DBEdge
@@ -32,55 +33,6 @@ import de.dlr.ivf.urmo.router.modes.Mode;
  *         Transport Research
  */
 public class DBEdge {
-	/**
-	 * @class V
-	 * @bried The information about the speed at this edge during an interval
-	 * @author dkrajzew
-	 */
-	class V {
-		/**
-		 * @brief Constructor
-		 * @param ibegin The begin of the interval
-		 * @param iending The end of the interval
-		 * @param speed The speed during this interval
-		 */
-		public V(float ibegin, float iending, float speed) {
-			ibeg = ibegin;
-			iend = iending;
-			v = speed;
-		}
-		
-		/// @brief the time this information starts to be valid at
-		float ibeg;
-		
-		/// @brief the time this information ends to be valid at
-		float iend;
-		
-		/// @brief max speed in interval
-		float v;
-		
-	}
-	
-	
-	/**
-	 * @brief Compares intervals for sorting them in time
-	 * @author dkrajzew
-	 */
-	class VComparator implements Comparator<V> {
-		/**
-		 * @brief Compares two intervals
-		 * @param a First interval
-		 * @param b Second interval
-		 * @return Comparison
-		 */
-	    public int compare(V a, V b) {
-	    	return a.ibeg < b.ibeg ? -1 : a.ibeg == b.ibeg ? 0 : 1;
-	    }
-	}
-	
-	
-	
-	
 	/// @brief A numerical id of the edge (internal, used?!!!)
 	public long numID;
 	/// @brief The id of the edge as given in the db
@@ -99,8 +51,16 @@ public class DBEdge {
 	public double length;
 	/// @brief Objects assigned to this edge
 	public HashSet<EdgeMappable> objects = null;
-	/// @brief The list of travel time informations for this edge
-	public Vector<V> speeds = null;
+	/// @brief The begins of the intervals with known speeds (sorted by time after loading)
+	private float[] speedBegins = null;
+	/// @brief The ends of the intervals with known speeds
+	private float[] speedEnds = null;
+	/// @brief The speeds during the intervals
+	private float[] speedValues = null;
+	/// @brief The number of intervals with known speeds
+	private int numSpeeds = 0;
+	/// @brief The time-independent travel times per mode (indexed by the modes' index, <0 if not computed)
+	private double[] staticTT = null;
 	/// @brief The sum of attached values
 	public double attachedValuesSum = 0;
 	/// @brief The opposite direction
@@ -213,24 +173,110 @@ public class DBEdge {
 	 * 
 	 * As this edge is walked by continuously, the travel time is the
 	 * edge's length divided by the used speed.
+	 * 
+	 * If speeds for time intervals are given, the edge is passed with the
+	 * speed of the interval that is currently valid, switching to the next
+	 * interval's speed when it begins. This keeps the travel times FIFO-consistent:
+	 * entering the edge later never lets one leave it earlier.
+	 * The intervals are assumed not to overlap.
 	 * @param ivmax The individual's speed
 	 * @param time The time the edge is started to be passed
-	 * @return The travel time to pass this edge
+	 * @return The travel time to pass this edge (infinite if the edge can not be passed)
 	 */
 	public double getTravelTime(double ivmax, double time) {
-		if(speeds!=null) {
-			for(V v : speeds) {
-				if(v.ibeg<=time && v.iend>=time) {
-					double vg = v.v;
+		double v = Math.min(vmax, ivmax);
+		if(numSpeeds==0) {
+			return length / v;
+		}
+		if(v<=0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		// find the first interval that does not end before the current time
+		int low = 0;
+		int high = numSpeeds;
+		while(low<high) {
+			int mid = (low + high) >>> 1;
+			if(speedEnds[mid]<time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		int i = low;
+		double t = time;
+		double tt = 0;
+		double remaining = length;
+		while(true) {
+			double cv = v;
+			double until = Double.MAX_VALUE;
+			boolean inInterval = false;
+			if(i<numSpeeds) {
+				if(speedBegins[i]<=t) {
+					double vg = speedValues[i];
 					if(vg<=0) {
 						vg = 5./3.6;
 					}
-					return length / Math.min(ivmax, Math.min(vg, vmax));
+					cv = Math.min(v, vg);
+					until = speedEnds[i];
+					inInterval = true;
+				} else {
+					until = speedBegins[i];
 				}
 			}
+			if(cv<=0) {
+				return Double.POSITIVE_INFINITY;
+			}
+			double needed = remaining / cv;
+			if(t+needed<=until) {
+				return tt + needed;
+			}
+			remaining -= (until - t) * cv;
+			tt += until - t;
+			t = until;
+			if(inInterval) {
+				++i;
+			}
+		}
+	}
+
+
+	/**
+	 * @brief Returns the travel time of the given mode
+	 * 
+	 * Uses the precomputed travel time if the edge has no time-dependent
+	 * speeds.
+	 * @param mode The used mode of transport
+	 * @param time The time the edge is started to be passed
+	 * @return The travel time to pass this edge
+	 * @see precomputeTravelTimes
+	 */
+	public double getTravelTime(Mode mode, double time) {
+		if(staticTT!=null && mode.index<staticTT.length) {
+			double tt = staticTT[mode.index];
+			if(tt>=0) {
+				return tt;
+			}
+		}
+		return getTravelTime(mode.vmax, time);
+	}
+
+
+	/**
+	 * @brief Computes the travel times of the given modes if they do not depend on the time
+	 * @param modes Bitset of the modes to compute the travel times for
+	 */
+	public void precomputeTravelTimes(long modes) {
+		staticTT = null;
+		if(numSpeeds!=0) {
+			return;
+		}
+		staticTT = new double[64 - Long.numberOfLeadingZeros(modes)];
+		Arrays.fill(staticTT, -1);
+		for(Mode m : Modes.modes) {
+			if((modes&m.id)!=0) {
+				staticTT[m.index] = length / Math.min(vmax, m.vmax);
+			}
 		}
-		double v = Math.min(vmax, ivmax);
-		return length / v;
 	}
 
 
@@ -284,10 +330,32 @@ public class DBEdge {
 	 * @param speed The speed at this edge during this time interval
 	 */
 	public void addSpeedReduction(float ibegin, float iending, float speed) {
-		if(speeds==null) {
-			speeds = new Vector<>();
+		staticTT = null;
+		if(speedBegins==null) {
+			speedBegins = new float[4];
+			speedEnds = new float[4];
+			speedValues = new float[4];
+		} else if(numSpeeds==speedBegins.length) {
+			speedBegins = Arrays.copyOf(speedBegins, numSpeeds*2);
+			speedEnds = Arrays.copyOf(speedEnds, numSpeeds*2);
+			speedValues = Arrays.copyOf(speedValues, numSpeeds*2);
+		}
+		speedBegins[numSpeeds] = ibegin;
+		speedEnds[numSpeeds] = iending;
+		speedValues[numSpeeds] = speed;
+		++numSpeeds;
+	}
+	
+	
+	/**
+	 * @brief Adds the times the speed of this edge changes at to the given set
+	 * @param times The set to add the begins and ends of the speed intervals to
+	 */
+	public void collectSpeedChanges(Set<Float> times) {
+		for(int i=0; i<numSpeeds; ++i) {
+			times.add(speedBegins[i]);
+			times.add(speedEnds[i]);
 		}
-		speeds.add(new V(ibegin, iending, speed));
 	}
 	
 	
@@ -295,10 +363,30 @@ public class DBEdge {
 	 * @brief Sorts the speed limit intervals by time
 	 */
 	public void sortSpeedReductions() {
-		if(speeds==null) {
+		if(numSpeeds==0) {
 			return;
 		}
-		speeds.sort(new VComparator());
+		Integer[] order = new Integer[numSpeeds];
+		for(int i=0; i<numSpeeds; ++i) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Float.compare(speedBegins[a], speedBegins[b]);
+			}
+		});
+		float[] begins = new float[numSpeeds];
+		float[] ends = new float[numSpeeds];
+		float[] values = new float[numSpeeds];
+		for(int i=0; i<numSpeeds; ++i) {
+			begins[i] = speedBegins[order[i]];
+			ends[i] = speedEnds[order[i]];
+			values[i] = speedValues[order[i]];
+		}
+		speedBegins = begins;
+		speedEnds = ends;
+		speedValues = values;
 	}
 
 
@@ -260,6 +260,15 @@ public class DBNet {
 	}
 
 
+	/**
+	 * @brief Informs the id supplier about an id that is used
+	 * @param id The used id
+	 */
+	public void hadExternID(long id) {
+		idGiver.hadExternID(id);
+	}
+
+
 	/**
 	 * @brief Prunes this road network to the named mode !!! not implemented
 	 * @param modes The mode for which edges shall be kept
@@ -357,6 +366,17 @@ public class DBNet {
 	}
 
 	
+	/**
+	 * @brief Computes the time-independent travel times of the given modes at all edges
+	 * @param modes Bitset of the modes to compute the travel times for
+	 */
+	public void precomputeTravelTimes(long modes) {
+		for(DBEdge e : name2edge.values()) {
+			e.precomputeTravelTimes(modes);
+		}
+	}
+
+
 	/**
 	 * @brief Goes through the edges, sorts their speed reductions by time
 	 */
@@ -425,6 +445,15 @@ public class DBNet {
 		return name2edge.size();
 	}
 
+
+	/**
+	 * @brief Returns the edges of this road network
+	 * @return This road network's edges
+	 */
+	public Collection<DBEdge> getEdges() {
+		return name2edge.values();
+	}
+
 	
 	/**
 	 * @brief Returns the bounds of the network
@@ -16,6 +16,11 @@
 # creates data tables to obtain the desired initial state
 # of the database before executing UrMoAC.
 #
+# With "sys:gtfs", the GTFS tables given using --pt are
+# (re-)built from the gtfs_<table>.csv files found in the
+# test's folder; stop positions are given in the
+# projection set using --epsg.
+#
 # UrMoAC is then executed and may write to the database.
 #
 # The script generates two files collected by the TextTest
@@ -28,12 +33,40 @@
 
 
 # --- imports ---------------------------------------------
+import glob
 import os
 import subprocess
 import sys
 import psycopg2
 
 
+# --- method definitions ----------------------------------
+def build_gtfs_tables(conn, definition, epsg):
+    """Builds the GTFS tables named by the given definition from gtfs_*.csv files"""
+    cursor = conn.cursor()
+    prefix = definition[definition.find("jdbc:postgresql:"):].split(";")[1]
+    schema = prefix[:prefix.find(".")]
+    cursor.execute("CREATE SCHEMA IF NOT EXISTS %s;" % schema)
+    for fileName in sorted(glob.glob("gtfs_*.csv")):
+        table = prefix + "_" + fileName[5:-4]
+        print ("creating %s;" % table)
+        fdi = open(fileName)
+        columns = fdi.readline().strip().split(",")
+        cursor.execute("DROP TABLE IF EXISTS %s;" % table)
+        cursor.execute("CREATE TABLE %s(%s);" % (table, ",".join(["%s text" % c for c in columns])))
+        for line in fdi:
+            line = line.strip()
+            if len(line)==0:
+                continue
+            values = line.split(",")
+            cursor.execute("INSERT INTO %s VALUES(%s);" % (table, ",".join(["%s"]*len(values))), values)
+        fdi.close()
+        if table.endswith("_stops"):
+            cursor.execute("ALTER TABLE %s ADD COLUMN pos geometry;" % table)
+            cursor.execute("UPDATE %s SET pos=ST_SetSRID(ST_MakePoint(CAST(stop_lon AS double precision), CAST(stop_lat AS double precision)), %s);" % (table, epsg))
+        conn.commit()
+
+
 # --- main method -----------------------------------------
 def main(argv):
     # prepare the database first
@@ -46,12 +79,19 @@ def main(argv):
     if "sys:create" in argv:
         action = "create"
         argv.remove("sys:create")
+    # the public transport definition is an input, not an output
+    gtfs = None
+    if "--pt" in argv:
+        gtfs = argv[argv.index("--pt")+1]
+    if "sys:gtfs" in argv:
+        argv.remove("sys:gtfs")
+        build_gtfs_tables(conn, gtfs, argv[argv.index("--epsg")+1])
     for j,t in enumerate(argv):
         if j==0:
             # The first argument is the script's name, skip
             continue
-        if t.find("jdbc:postgresql:")<0:
-            # We are only interested in manipulating the database
+        if t.find("jdbc:postgresql:")<0 or t==gtfs:
+            # We are only interested in manipulating the output tables
             continue
         if t.find("jdbc:postgresql:")>0:
             t = t[t.find("jdbc:postgresql:"):]
@@ -91,8 +131,8 @@ def main(argv):
             # The first argument is the script's name, skip
             continue
         # patch/get name
-        if t.find("jdbc:postgresql:")<0:
-            # We are only interested in reading the database
+        if t.find("jdbc:postgresql:")<0 or t==gtfs:
+            # We are only interested in reading the output tables
             continue
         if t.find("jdbc:postgresql:")>0:
             t = t[t.find("jdbc:postgresql:"):]
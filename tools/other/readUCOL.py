@@ -0,0 +1,117 @@
+#!/usr/bin/env python
+# =========================================================
+# readUCOL.py
+# @author Daniel Krajzewicz
+# @date 2022
+# @copyright Institut fuer Verkehrsforschung,
+#            Deutsches Zentrum fuer Luft- und Raumfahrt
+# @brief Reads a columnar UrMoAC output (.ucol / .ucol.gz)
+#
+# Call with
+#  readUCOL.py <UCOL_FILE> [<CSV_FILE>]
+#
+# Converts the file into a ';'-separated csv file (written
+# to stdout if no csv file is given). Geometries are written
+# as hex-encoded WKB. The function "read" may be imported
+# to get the columns as lists instead.
+#
+# The layout of the file is described in ColumnarWriter.java.
+# =========================================================
+
+
+# --- imports ---------------------------------------------
+import sys, gzip, struct, binascii
+
+
+# --- constants -------------------------------------------
+MAGIC = 0x4c4f4355
+VERSION = 2
+TYPE_INT32 = 1
+TYPE_INT64 = 2
+TYPE_FLOAT32 = 3
+TYPE_FLOAT64 = 4
+TYPE_DICTIONARY = 5
+TYPE_BINARY = 6
+FORMATS = {TYPE_INT32: "i", TYPE_INT64: "q", TYPE_FLOAT32: "f", TYPE_FLOAT64: "d"}
+
+
+# --- functionality ---------------------------------------
+def readExactly(f, num):
+  b = f.read(num)
+  if len(b)!=num:
+    raise IOError("The file is truncated.")
+  return b
+
+def readInt(f):
+  return struct.unpack("<i", readExactly(f, 4))[0]
+
+def readString(f):
+  return readExactly(f, readInt(f)).decode("utf-8")
+
+
+def read(fileName):
+  """Returns the column names and the columns (lists of values) of the given file"""
+  f = gzip.open(fileName, "rb") if fileName.endswith(".gz") else open(fileName, "rb")
+  if readInt(f)!=MAGIC:
+    raise IOError("'%s' is not a columnar UrMoAC output." % fileName)
+  version = readInt(f)
+  if version!=VERSION:
+    raise IOError("Version %s of the columnar format is not supported." % version)
+  names = []
+  types = []
+  for i in range(0, readInt(f)):
+    names.append(readString(f))
+    types.append(struct.unpack("<b", readExactly(f, 1))[0])
+  columns = [[] for t in types]
+  while True:
+    numRows = readInt(f)
+    if numRows==0:
+      break
+    # the dictionaries of the row group
+    dictionaries = {}
+    for i,t in enumerate(types):
+      if t==TYPE_DICTIONARY:
+        dictionaries[i] = [readString(f) for j in range(0, readInt(f))]
+    # the values
+    for i,t in enumerate(types):
+      if t in FORMATS:
+        fmt = "<%s%s" % (numRows, FORMATS[t])
+        columns[i].extend(struct.unpack(fmt, readExactly(f, struct.calcsize(fmt))))
+      elif t==TYPE_DICTIONARY:
+        indices = struct.unpack("<%si" % numRows, readExactly(f, 4*numRows))
+        columns[i].extend([dictionaries[i][j] if j>=0 else None for j in indices])
+      elif t==TYPE_BINARY:
+        offsets = struct.unpack("<%si" % (numRows+1), readExactly(f, 4*(numRows+1)))
+        data = readExactly(f, offsets[-1])
+        columns[i].extend([data[offsets[j]:offsets[j+1]] for j in range(0, numRows)])
+      else:
+        raise IOError("Unknown column type %s." % t)
+  f.close()
+  return names, columns
+
+
+def toString(value):
+  if value is None:
+    return ""
+  if isinstance(value, bytes):
+    return binascii.hexlify(value).decode("ascii")
+  return str(value)
+
+
+def main(argv):
+  if len(argv)<2 or len(argv)>3:
+    print ("Usage: readUCOL.py <UCOL_FILE> [<CSV_FILE>]")
+    return 1
+  names, columns = read(argv[1])
+  out = open(argv[2], "w") if len(argv)>2 else sys.stdout
+  out.write(";".join(names) + "\n")
+  for row in zip(*columns):
+    out.write(";".join([toString(v) for v in row]) + "\n")
+  if out!=sys.stdout:
+    out.close()
+  return 0
+
+
+# -- main check
+if __name__ == '__main__':
+  sys.exit(main(sys.argv))